@@ -25,6 +25,9 @@
 *	10/20/04 
 *		- Brent Hills <bhills@openshores.com>
 *		- Added Range and MYNAME;
+*	10/18/26
+*		- Added BOOTID_UPNP_ORG, CONFIGID_UPNP_ORG and NEXTBOOTID_UPNP_ORG.
+*		- Added SVCID and LVL for the multicast events.
 *	
 ******************************************************************/
 
@@ -92,6 +95,12 @@ public class HTTP
 	public final static String TIMEOUT = "TIMEOUT";
 	// Thanks for Brent Hills (10/20/04)
 	public final static String MYNAME = "MYNAME";
+	// UPnP Device Architecture 1.1
+	public static final String BOOTID_UPNP_ORG = "BOOTID.UPNP.ORG";
+	public static final String CONFIGID_UPNP_ORG = "CONFIGID.UPNP.ORG";
+	public static final String NEXTBOOTID_UPNP_ORG = "NEXTBOOTID.UPNP.ORG";
+	public static final String SVCID = "SVCID";
+	public static final String LVL = "LVL";
 
 	public static final String REQEST_LINE_DELIM = " ";
 	public static final String HEADER_LINE_DELIM = " :";
@@ -0,0 +1,265 @@
+/******************************************************************
+*
+*	CyberHTTP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: HTTPConnectionPool.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.http;
+
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Iterator;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.cybergarage.util.Debug;
+
+/**
+ * Keeps the connections of HTTPRequest.post() alive per host and port, and reuses them
+ * for the next requests to the same host.
+ * <p>
+ * A connection is returned to the pool only when its response has been read completely and
+ * the server allows the connection to be kept alive. A connection which has been idle for a
+ * while is checked whether the server has closed it before it is reused.
+ */
+public class HTTPConnectionPool
+{
+	public final static int DEFAULT_MAX_IDLE_CONNECTIONS = 4;
+	public final static long DEFAULT_IDLE_TIMEOUT = 30000;
+	public final static long DEFAULT_VALIDATE_TIME = 1000;
+
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	private ConcurrentMap<String, Vector<IdleConnection>> idleMap = new ConcurrentHashMap<String, Vector<IdleConnection>>();
+
+	public HTTPConnectionPool()
+	{
+	}
+
+	////////////////////////////////////////////////
+	//	Parameters
+	////////////////////////////////////////////////
+
+	private int maxIdleConnections = DEFAULT_MAX_IDLE_CONNECTIONS;
+	private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+	private long validateTime = DEFAULT_VALIDATE_TIME;
+
+	/**
+	 * Sets the number of the idle connections kept per host and port.
+	 */
+	public void setMaxIdleConnections(int n)
+	{
+		maxIdleConnections = n;
+	}
+
+	public int getMaxIdleConnections()
+	{
+		return maxIdleConnections;
+	}
+
+	public void setIdleTimeout(long mtime)
+	{
+		idleTimeout = mtime;
+	}
+
+	public long getIdleTimeout()
+	{
+		return idleTimeout;
+	}
+
+	/**
+	 * Sets the idle time after which a connection is checked before it is reused.
+	 */
+	public void setValidateTime(long mtime)
+	{
+		validateTime = mtime;
+	}
+
+	public long getValidateTime()
+	{
+		return validateTime;
+	}
+
+	////////////////////////////////////////////////
+	//	post
+	////////////////////////////////////////////////
+
+	/**
+	 * Posts the request on an idle connection to the host, or on a new connection when no
+	 * idle connection is available.
+	 */
+	public HTTPResponse post(HTTPRequest httpReq, String host, int port)
+	{
+		httpReq.setPostSocket(getIdleConnection(host, port));
+		HTTPResponse httpRes = httpReq.post(host, port, true);
+		Socket sock = httpReq.getPostSocket();
+		httpReq.setPostSocket(null);
+		// The connection has been closed after an error.
+		if (sock == null)
+			return httpRes;
+		if (isReusable(httpRes) == true && sock.isClosed() == false)
+			putIdleConnection(host, port, sock);
+		else
+			close(sock);
+		return httpRes;
+	}
+
+	private static boolean isReusable(HTTPResponse httpRes)
+	{
+		String firstLine = httpRes.getFirstLine();
+		if (firstLine == null || firstLine.length() <= 0)
+			return false;
+		if (httpRes.isCloseConnection() == true)
+			return false;
+		if (firstLine.startsWith("HTTP/" + HTTP.VERSION_11) == false && httpRes.isKeepAliveConnection() == false)
+			return false;
+		// The content without the length is read until the connection is closed.
+		if (httpRes.hasHeader(HTTP.CONTENT_LENGTH) == false && httpRes.isChunked() == false)
+			return false;
+		return true;
+	}
+
+	////////////////////////////////////////////////
+	//	Idle Connection
+	////////////////////////////////////////////////
+
+	private static class IdleConnection
+	{
+		Socket sock;
+		long idleTime;
+
+		IdleConnection(Socket sock, long idleTime)
+		{
+			this.sock = sock;
+			this.idleTime = idleTime;
+		}
+	}
+
+	private static String toKey(String host, int port)
+	{
+		return host + ":" + port;
+	}
+
+	private Socket getIdleConnection(String host, int port)
+	{
+		Vector<IdleConnection> idleList = idleMap.get(toKey(host, port));
+		if (idleList == null)
+			return null;
+		while (true) {
+			IdleConnection conn;
+			synchronized (idleList) {
+				if (idleList.size() <= 0)
+					return null;
+				// The last used connection is the least likely to be closed by the server.
+				conn = idleList.remove(idleList.size() - 1);
+			}
+			long idleMTime = System.currentTimeMillis() - conn.idleTime;
+			if (idleTimeout <= idleMTime || conn.sock.isClosed() == true) {
+				close(conn.sock);
+				continue;
+			}
+			if (validateTime <= idleMTime && isStale(conn.sock) == true) {
+				close(conn.sock);
+				continue;
+			}
+			return conn.sock;
+		}
+	}
+
+	private void putIdleConnection(String host, int port, Socket sock)
+	{
+		String key = toKey(host, port);
+		Vector<IdleConnection> idleList = idleMap.get(key);
+		if (idleList == null) {
+			idleList = new Vector<IdleConnection>();
+			Vector<IdleConnection> oldList = idleMap.putIfAbsent(key, idleList);
+			if (oldList != null)
+				idleList = oldList;
+		}
+		IdleConnection oldConn = null;
+		synchronized (idleList) {
+			idleList.add(new IdleConnection(sock, System.currentTimeMillis()));
+			if (maxIdleConnections < idleList.size())
+				oldConn = idleList.remove(0);
+		}
+		if (oldConn != null)
+			close(oldConn.sock);
+	}
+
+	/**
+	 * Returns true if the server has closed the connection or sent unexpected data.
+	 */
+	private static boolean isStale(Socket sock)
+	{
+		try {
+			int soTimeout = sock.getSoTimeout();
+			sock.setSoTimeout(1);
+			try {
+				InputStream in = sock.getInputStream();
+				in.read();
+				return true;
+			}
+			catch (SocketTimeoutException e) {
+				return false;
+			}
+			finally {
+				sock.setSoTimeout(soTimeout);
+			}
+		}
+		catch (Exception e) {
+			return true;
+		}
+	}
+
+	private static void close(Socket sock)
+	{
+		try {
+			sock.close();
+		}
+		catch (Exception e) {
+			Debug.warning(e);
+		}
+	}
+
+	public int getIdleConnectionCount()
+	{
+		int connCnt = 0;
+		Iterator<Vector<IdleConnection>> idleLists = idleMap.values().iterator();
+		while (idleLists.hasNext() == true) {
+			Vector<IdleConnection> idleList = idleLists.next();
+			connCnt += idleList.size();
+		}
+		return connCnt;
+	}
+
+	/**
+	 * Closes all the idle connections. The connections in use are closed after their requests.
+	 */
+	public void clear()
+	{
+		Iterator<Vector<IdleConnection>> idleLists = idleMap.values().iterator();
+		while (idleLists.hasNext() == true) {
+			Vector<IdleConnection> idleList = idleLists.next();
+			IdleConnection conns[];
+			synchronized (idleList) {
+				conns = idleList.toArray(new IdleConnection[0]);
+				idleList.clear();
+			}
+			for (int n=0; n<conns.length; n++)
+				close(conns[n].sock);
+		}
+	}
+}
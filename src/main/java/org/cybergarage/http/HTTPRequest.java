@@ -49,11 +49,16 @@
 *	07/07/05
 *		- Lee Peik Feng <pflee@users.sourceforge.net>
 *		- Fixed post() to output the chunk size as a hex string.
+*	10/18/26
+*		- Added setConnectTimeout() and setReadTimeout() for post().
+*		- Added setPostSocket(), getPostSocket() and abortPost() for the pooled connections, and
+*		  changed post() to close the connection after an error even when it is kept alive.
 *
 ******************************************************************/
 
 package org.cybergarage.http;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -386,8 +391,66 @@ public class HTTPRequest extends HTTPPacket
 	//	POST (Request)
 	////////////////////////////////////////////////
 	
-	private Socket postSocket = null;
+	private volatile Socket postSocket = null;
+	private int connectTimeout = HTTPServer.DEFAULT_TIMEOUT;
+	private int readTimeout = 0;
 	
+	public void setConnectTimeout(int mtime)
+	{
+		connectTimeout = mtime;
+	}
+
+	public int getConnectTimeout()
+	{
+		return connectTimeout;
+	}
+
+	/**
+	 * Sets the timeout to read the response in post(), 0 means to wait forever.
+	 */
+	public void setReadTimeout(int mtime)
+	{
+		readTimeout = mtime;
+	}
+
+	public int getReadTimeout()
+	{
+		return readTimeout;
+	}
+
+	/**
+	 * Sets the connection which is used by the next post(), or null to connect again.
+	 */
+	public void setPostSocket(Socket sock)
+	{
+		postSocket = sock;
+	}
+
+	/**
+	 * Returns the connection kept alive by post(), or null if it has been closed.
+	 */
+	public Socket getPostSocket()
+	{
+		return postSocket;
+	}
+
+	/**
+	 * Closes the connection of post() from another thread, and post() returns
+	 * an error response.
+	 */
+	public void abortPost()
+	{
+		Socket sock = postSocket;
+		if (sock == null)
+			return;
+		try {
+			sock.close();
+		}
+		catch (Exception e) {
+			Debug.warning(e);
+		}
+	}
+
 	public HTTPResponse post(String host, int port, boolean isKeepAlive)
 	{
 		HTTPResponse httpRes = new HTTPResponse();
@@ -400,16 +463,19 @@ public class HTTPRequest extends HTTPPacket
 		
 		OutputStream out = null;
 		InputStream in = null;
+		boolean isFailed = false;
 		
  		try {
  			if (postSocket == null){
  				// Thanks for Hao Hu 
 				postSocket = new Socket();
-				postSocket.connect(new InetSocketAddress(host, port), HTTPServer.DEFAULT_TIMEOUT);
+				postSocket.connect(new InetSocketAddress(host, port), connectTimeout);
  			}
+			postSocket.setSoTimeout(readTimeout);
 
 			out = postSocket.getOutputStream();
-			PrintStream pout = new PrintStream(out);
+			// The request is written at once, otherwise the pieces wait for the delayed ACKs on a kept-alive connection.
+			PrintStream pout = new PrintStream(new BufferedOutputStream(out));
 			pout.print(getHeader());
 			pout.print(HTTP.CRLF);
 			
@@ -443,14 +509,17 @@ public class HTTPRequest extends HTTPPacket
 			httpRes.set(in, isHeaderRequest);		
 		} catch (SocketException e) {
 			httpRes.setStatusCode(HTTPStatus.INTERNAL_SERVER_ERROR);
+			isFailed = true;
 			Debug.warning(e);
 		} catch (IOException e) {
 			//Socket create but without connection
 			//TODO Blacklistening the device
 			httpRes.setStatusCode(HTTPStatus.INTERNAL_SERVER_ERROR);
+			isFailed = true;
 			Debug.warning(e);
 		} finally {
-			if (isKeepAlive == false) {	
+			// The connection can't be reused after an error because the response may be partially read.
+			if (isKeepAlive == false || isFailed == true) {	
 				try {
 					in.close();
 				} catch (Exception e) {};
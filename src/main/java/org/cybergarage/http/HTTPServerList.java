@@ -12,12 +12,15 @@
 *		- first revision.
 *	24/03/06
 *		- Stefano Lenzi:added debug information as request by Stephen More
+*	10/18/26
+*		- Added openInterface() and closeInterface().
 *
 ******************************************************************/
 
 package org.cybergarage.http;
 
 import java.net.InetAddress;
+import java.util.Hashtable;
 import java.util.Vector;
 
 import org.cybergarage.net.HostInterface;
@@ -32,6 +35,7 @@ public class HTTPServerList extends Vector
 	
 	private InetAddress[] binds = null;
 	private int port = Device.HTTP_DEFAULT_PORT;
+	private Hashtable<String, HTTPServer> ifServerMap = new Hashtable<String, HTTPServer>();
 	
 	public HTTPServerList() {
 	}
@@ -70,6 +74,7 @@ public class HTTPServerList extends Vector
 			HTTPServer server = getHTTPServer(n);
 			server.close();
 		}
+		ifServerMap.clear();
 	}
 
 	@SuppressWarnings("unchecked")
@@ -96,6 +101,7 @@ public class HTTPServerList extends Vector
 				clear();
 			}else{
 				add(httpServer);
+				ifServerMap.put(bindAddresses[i], httpServer);
 				j++;
 			}
 		}
@@ -109,6 +115,34 @@ public class HTTPServerList extends Vector
 		return open()!=0;
 	}
 	
+	/**
+	 * Opens a server for an interface address which has been added after open().
+	 * @return The new server which isn't started yet, or null if the address has a server already or the server couldn't be opened.
+	 */
+	@SuppressWarnings("unchecked")
+	public HTTPServer openInterface(String bindAddr)
+	{
+		if (ifServerMap.containsKey(bindAddr) == true)
+			return null;
+		HTTPServer httpServer = new HTTPServer();
+		if (httpServer.open(bindAddr, port) == false)
+			return null;
+		add(httpServer);
+		ifServerMap.put(bindAddr, httpServer);
+		return httpServer;
+	}
+
+	public boolean closeInterface(String bindAddr)
+	{
+		HTTPServer httpServer = ifServerMap.remove(bindAddr);
+		if (httpServer == null)
+			return false;
+		httpServer.stop();
+		httpServer.close();
+		remove(httpServer);
+		return true;
+	}
+	
 	////////////////////////////////////////////////
 	//	start/stop
 	////////////////////////////////////////////////
@@ -22,11 +22,14 @@
 *	07/07/05
 *		- Lee Peik Feng <pflee@users.sourceforge.net>
 *		- Fixed post() to output the chunk size as a hex string.
+*	10/18/26
+*		- Changed post(HTTPResponse, byte[], ...) to write the header and the content at once.
 *	
 ******************************************************************/
 
 package org.cybergarage.http;
 
+import java.io.BufferedOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
@@ -156,7 +159,8 @@ public class HTTPSocket
 		//TODO Check for bad HTTP agents, this method may be list for IOInteruptedException and for blacklistening
 		httpRes.setDate(Calendar.getInstance());
 		
-		OutputStream out = getOutputStream();
+		// The response is written at once, otherwise the pieces wait for the delayed ACKs on a kept-alive connection.
+		OutputStream out = new BufferedOutputStream(getOutputStream());
 
 		try {
 			httpRes.setContentLength(contentLength);
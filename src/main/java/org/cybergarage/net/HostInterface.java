@@ -20,6 +20,12 @@
 *	06/30/04
 *		- Theo Beisch <theo.beisch@gmx.de>
 *		- Changed isUseAddress() to isUsableAddress().
+*	10/18/26
+*		- Changed getNHostAddresses() and getHostAddress() to use a cached HostInterfaceSnapshot
+*		  which is refreshed by refresh() or periodically while HostInterfaceListeners are added.
+*		- Changed isIPv4Address() and isIPv6Address() to parse the literal addresses only
+*		  without InetAddress.getByName().
+*		- Added addInterfaceListener() and removeInterfaceListener().
 *	
 ******************************************************************/
 
@@ -35,6 +41,7 @@ import java.util.Enumeration;
 import java.util.Vector;
 
 import org.cybergarage.util.Debug;
+import org.cybergarage.util.ListenerList;
 
 @SuppressWarnings("rawtypes")
 public class HostInterface
@@ -77,46 +84,23 @@ public class HostInterface
 
 	// Thanks for Theo Beisch (10/27/04)
 	
-	private final static boolean isUsableAddress(InetAddress addr)
+	private final static int getAddressFlags()
 	{
-		if (USE_LOOPBACK_ADDR == false) {
-			if (addr.isLoopbackAddress() == true)
-				return false;
-		}
-		if (USE_ONLY_IPV4_ADDR == true) {
-			if (addr instanceof Inet6Address)
-				return false;
-		}
-		if (USE_ONLY_IPV6_ADDR == true) {
-			if (addr instanceof Inet4Address)
-				return false;
-		}
-		return true;
+		int flags = 0;
+		if (USE_LOOPBACK_ADDR == true)
+			flags |= HostInterfaceSnapshot.USE_LOOPBACK_ADDR;
+		if (USE_ONLY_IPV4_ADDR == true)
+			flags |= HostInterfaceSnapshot.USE_ONLY_IPV4_ADDR;
+		if (USE_ONLY_IPV6_ADDR == true)
+			flags |= HostInterfaceSnapshot.USE_ONLY_IPV6_ADDR;
+		return flags;
 	}
 	
 	public final static int getNHostAddresses()
 	{
 		if (hasAssignedInterface() == true)
 			return 1;
-			
-		int nHostAddrs = 0;
-		try {
-			Enumeration nis = NetworkInterface.getNetworkInterfaces();
-			while (nis.hasMoreElements()){
-				NetworkInterface ni = (NetworkInterface)nis.nextElement();
-				Enumeration addrs = ni.getInetAddresses();
-				while (addrs.hasMoreElements()) {
-					InetAddress addr = (InetAddress)addrs.nextElement();
-					if (isUsableAddress(addr) == false)
-						continue;
-					nHostAddrs++;
-				}
-			}
-		}
-		catch(Exception e){
-			Debug.warning(e);
-		};
-		return nHostAddrs;
+		return getSnapshot().getNHostAddresses();
 	}
 
 	/**
@@ -174,58 +158,244 @@ public class HostInterface
 	{
 		if (hasAssignedInterface() == true)
 			return getInterface();
-			
-		int hostAddrCnt = 0;
-		try {
-			Enumeration nis = NetworkInterface.getNetworkInterfaces();
-			while (nis.hasMoreElements()){
-				NetworkInterface ni = (NetworkInterface)nis.nextElement();
-				Enumeration addrs = ni.getInetAddresses();
-				while (addrs.hasMoreElements()) {
-					InetAddress addr = (InetAddress)addrs.nextElement();
-					if (isUsableAddress(addr) == false)
-						continue;
-					if (hostAddrCnt < n) {
-						hostAddrCnt++;
-						continue;
-					}
-					String host = addr.getHostAddress();
-					//if (addr instanceof Inet6Address)
-					//	host = "[" + host + "]";
-					return host;
-				}
+		return getSnapshot().getHostAddress(n);
+	}
+
+	////////////////////////////////////////////////
+	//	Snapshot
+	////////////////////////////////////////////////
+
+	private static volatile HostInterfaceSnapshot snapshot = null;
+	
+	/**
+	 * Returns the current snapshot of the interface addresses.
+	 * The network interfaces are enumerated only at the first call, by refresh() and by
+	 * the monitor which runs while HostInterfaceListeners are added.
+	 */
+	public final static HostInterfaceSnapshot getSnapshot()
+	{
+		HostInterfaceSnapshot currSnapshot = snapshot;
+		if (currSnapshot == null)
+			return refresh();
+		int flags = getAddressFlags();
+		if (currSnapshot.getFlags() != flags) {
+			currSnapshot = currSnapshot.filter(flags);
+			snapshot = currSnapshot;
+		}
+		return currSnapshot;
+	}
+	
+	/**
+	 * Enumerates the network interfaces again and notifies the HostInterfaceListeners
+	 * of the added and removed addresses.
+	 */
+	public final static HostInterfaceSnapshot refresh()
+	{
+		HostInterfaceSnapshot newSnapshot = HostInterfaceSnapshot.create(getAddressFlags());
+		HostInterfaceSnapshot oldSnapshot;
+		synchronized (HostInterface.class) {
+			oldSnapshot = snapshot;
+			snapshot = newSnapshot;
+		}
+		if (oldSnapshot == null || oldSnapshot.equals(newSnapshot) == true)
+			return newSnapshot;
+		if (oldSnapshot.getFlags() != newSnapshot.getFlags())
+			oldSnapshot = oldSnapshot.filter(newSnapshot.getFlags());
+		
+		int oldAddrCnt = oldSnapshot.getNHostAddresses();
+		for (int n=0; n<oldAddrCnt; n++) {
+			String addr = oldSnapshot.getHostAddress(n);
+			if (newSnapshot.hasHostAddress(addr) == false)
+				performInterfaceRemovedListener(addr);
+		}
+		int newAddrCnt = newSnapshot.getNHostAddresses();
+		for (int n=0; n<newAddrCnt; n++) {
+			String addr = newSnapshot.getHostAddress(n);
+			if (oldSnapshot.hasHostAddress(addr) == false)
+				performInterfaceAddedListener(addr);
+		}
+		return newSnapshot;
+	}
+
+	////////////////////////////////////////////////
+	//	Listener
+	////////////////////////////////////////////////
+
+	public final static long DEFAULT_MONITORING_INTERVAL = 10 * 1000;
+	
+	private static ListenerList interfaceListenerList = new ListenerList();
+	private static HostInterfaceMonitor interfaceMonitor = null;
+	private static long monitoringInterval = DEFAULT_MONITORING_INTERVAL;
+	
+	public final static void setMonitoringInterval(long mtime)
+	{
+		monitoringInterval = mtime;
+	}
+
+	public final static long getMonitoringInterval()
+	{
+		return monitoringInterval;
+	}
+	
+	/**
+	 * Adds a listener of the interface address changes. The interfaces are monitored
+	 * while at least one listener is added.
+	 */
+	public final static synchronized void addInterfaceListener(HostInterfaceListener listener)
+	{
+		if (interfaceListenerList.contains(listener) == true)
+			return;
+		interfaceListenerList.add(listener);
+		if (interfaceMonitor == null) {
+			getSnapshot();
+			interfaceMonitor = new HostInterfaceMonitor();
+			interfaceMonitor.start();
+		}
+	}
+
+	public final static synchronized void removeInterfaceListener(HostInterfaceListener listener)
+	{
+		interfaceListenerList.remove(listener);
+		if (interfaceListenerList.size() <= 0 && interfaceMonitor != null) {
+			interfaceMonitor.stop();
+			interfaceMonitor = null;
+		}
+	}
+
+	private final static void performInterfaceAddedListener(String addr)
+	{
+		Object listeners[] = interfaceListenerList.toArray();
+		for (int n=0; n<listeners.length; n++) {
+			HostInterfaceListener listener = (HostInterfaceListener)listeners[n];
+			try {
+				listener.interfaceAdded(addr);
+			}
+			catch (Exception e) {
+				Debug.warning("HostInterfaceListener returned an error:", e);
+			}
+		}
+	}
+
+	private final static void performInterfaceRemovedListener(String addr)
+	{
+		Object listeners[] = interfaceListenerList.toArray();
+		for (int n=0; n<listeners.length; n++) {
+			HostInterfaceListener listener = (HostInterfaceListener)listeners[n];
+			try {
+				listener.interfaceRemoved(addr);
+			}
+			catch (Exception e) {
+				Debug.warning("HostInterfaceListener returned an error:", e);
 			}
 		}
-		catch(Exception e){};
-		return "";
 	}
 
 	////////////////////////////////////////////////
 	//	isIPv?Address
 	////////////////////////////////////////////////
 	
+	private final static boolean isIPv4Literal(String host, int offset, int end)
+	{
+		int nParts = 0;
+		int partLen = 0;
+		int partValue = 0;
+		for (int n=offset; n<end; n++) {
+			char c = host.charAt(n);
+			if (c == '.') {
+				if (partLen <= 0)
+					return false;
+				nParts++;
+				partLen = 0;
+				partValue = 0;
+				continue;
+			}
+			if (c < '0' || '9' < c)
+				return false;
+			partLen++;
+			partValue = (partValue * 10) + (c - '0');
+			if (3 < partLen || 255 < partValue)
+				return false;
+		}
+		if (partLen <= 0)
+			return false;
+		return ((nParts + 1) == 4) ? true : false;
+	}
+	
+	/**
+	 * Checks whether the specified string is a literal IPv6 address. The address may be enclosed
+	 * in brackets and may have a zone index such as "fe80::1%eth0". Host names are never resolved.
+	 */
 	public final static boolean isIPv6Address(String host)
 	{
-		try {
-			InetAddress addr = InetAddress.getByName(host);
-			if (addr instanceof Inet6Address)
-				return true;
+		if (host == null)
 			return false;
+		int offset = 0;
+		int end = host.length();
+		if (0 < end && host.charAt(0) == '[') {
+			if (host.charAt(end - 1) != ']')
+				return false;
+			offset = 1;
+			end--;
 		}
-		catch (Exception e) {}
-		return false;
+		int zoneIdx = host.indexOf('%', offset);
+		if (0 <= zoneIdx && zoneIdx < end)
+			end = zoneIdx;
+		if (end - offset < 2)
+			return false;
+		
+		int nGroups = 0;
+		int groupLen = 0;
+		boolean hasDoubleColon = false;
+		for (int n=offset; n<end; n++) {
+			char c = host.charAt(n);
+			if (c == ':') {
+				if (n + 1 < end && host.charAt(n + 1) == ':') {
+					if (hasDoubleColon == true)
+						return false;
+					hasDoubleColon = true;
+					if (0 < groupLen)
+						nGroups++;
+					groupLen = 0;
+					n++;
+					continue;
+				}
+				if (groupLen <= 0 || n + 1 == end)
+					return false;
+				nGroups++;
+				groupLen = 0;
+				continue;
+			}
+			if (c == '.') {
+				// IPv4-mapped or compatible address such as ::ffff:192.168.0.1
+				int ipv4Offset = n - groupLen;
+				if (isIPv4Literal(host, ipv4Offset, end) == false)
+					return false;
+				nGroups += 2;
+				groupLen = 0;
+				break;
+			}
+			if (Character.digit(c, 16) < 0)
+				return false;
+			groupLen++;
+			if (4 < groupLen)
+				return false;
+		}
+		if (0 < groupLen)
+			nGroups++;
+		if (hasDoubleColon == true)
+			return (nGroups <= 7) ? true : false;
+		return (nGroups == 8) ? true : false;
 	}
 
+	/**
+	 * Checks whether the specified string is a literal IPv4 address in the dotted decimal notation.
+	 * Host names are never resolved.
+	 */
 	public final static boolean isIPv4Address(String host)
 	{
-		try {
-			InetAddress addr = InetAddress.getByName(host);
-			if (addr instanceof Inet4Address)
-				return true;
+		if (host == null)
 			return false;
-		}
-		catch (Exception e) {}
-		return false;
+		return isIPv4Literal(host, 0, host.length());
 	}
 
 	////////////////////////////////////////////////
@@ -0,0 +1,22 @@
+/******************************************************************
+*
+*	CyberHTTP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2003
+*
+*	File: HostInterfaceListener.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*	
+******************************************************************/
+
+package org.cybergarage.net;
+
+public interface HostInterfaceListener
+{
+	public void interfaceAdded(String ifAddr);
+	public void interfaceRemoved(String ifAddr);
+}
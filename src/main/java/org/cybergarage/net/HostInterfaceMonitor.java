@@ -0,0 +1,49 @@
+/******************************************************************
+*
+*	CyberHTTP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2003
+*
+*	File: HostInterfaceMonitor.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.net;
+
+import org.cybergarage.util.ThreadCore;
+
+/**
+ * Refreshes the HostInterface snapshot periodically so that the HostInterfaceListeners
+ * are notified of the added and removed interface addresses.
+ */
+public class HostInterfaceMonitor extends ThreadCore
+{
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	public HostInterfaceMonitor()
+	{
+	}
+
+	////////////////////////////////////////////////
+	//	Thread
+	////////////////////////////////////////////////
+
+	public void run()
+	{
+		while (isRunnable() == true) {
+			try {
+				Thread.sleep(HostInterface.getMonitoringInterval());
+			} catch (InterruptedException e) {}
+			if (isRunnable() == false)
+				break;
+			HostInterface.refresh();
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/******************************************************************
+*
+*	CyberHTTP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2003
+*
+*	File: HostInterfaceSnapshot.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.net;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.util.Enumeration;
+import java.util.Vector;
+
+import org.cybergarage.util.Debug;
+
+/**
+ * Immutable list of the addresses of the network interfaces at a point of time.
+ * The usable addresses are filtered by the flags of HostInterface when the snapshot is created.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class HostInterfaceSnapshot
+{
+	public final static int USE_LOOPBACK_ADDR = 0x0001;
+	public final static int USE_ONLY_IPV4_ADDR = 0x0010;
+	public final static int USE_ONLY_IPV6_ADDR = 0x0100;
+
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	private InetAddress allAddrs[];
+	private String hostAddrs[];
+	private int flags;
+
+	private HostInterfaceSnapshot(InetAddress allAddrs[], int flags)
+	{
+		this.allAddrs = allAddrs;
+		this.flags = flags;
+
+		Vector addrList = new Vector();
+		for (int n=0; n<allAddrs.length; n++) {
+			if (isUsableAddress(allAddrs[n], flags) == false)
+				continue;
+			addrList.add(allAddrs[n].getHostAddress());
+		}
+		hostAddrs = new String[addrList.size()];
+		addrList.copyInto(hostAddrs);
+	}
+
+	public final static HostInterfaceSnapshot create(int flags)
+	{
+		Vector addrList = new Vector();
+		try {
+			Enumeration nis = NetworkInterface.getNetworkInterfaces();
+			while (nis != null && nis.hasMoreElements()){
+				NetworkInterface ni = (NetworkInterface)nis.nextElement();
+				Enumeration addrs = ni.getInetAddresses();
+				while (addrs.hasMoreElements())
+					addrList.add(addrs.nextElement());
+			}
+		}
+		catch(Exception e){
+			Debug.warning(e);
+		};
+		InetAddress allAddrs[] = new InetAddress[addrList.size()];
+		addrList.copyInto(allAddrs);
+		return new HostInterfaceSnapshot(allAddrs, flags);
+	}
+
+	/**
+	 * Returns a snapshot of the same addresses filtered by the specified flags.
+	 */
+	public HostInterfaceSnapshot filter(int flags)
+	{
+		if (this.flags == flags)
+			return this;
+		return new HostInterfaceSnapshot(allAddrs, flags);
+	}
+
+	////////////////////////////////////////////////
+	//	Flags
+	////////////////////////////////////////////////
+
+	public int getFlags()
+	{
+		return flags;
+	}
+
+	private final static boolean isUsableAddress(InetAddress addr, int flags)
+	{
+		if ((flags & USE_LOOPBACK_ADDR) == 0) {
+			if (addr.isLoopbackAddress() == true)
+				return false;
+		}
+		if ((flags & USE_ONLY_IPV4_ADDR) != 0) {
+			if (addr instanceof Inet6Address)
+				return false;
+		}
+		if ((flags & USE_ONLY_IPV6_ADDR) != 0) {
+			if (addr instanceof Inet4Address)
+				return false;
+		}
+		return true;
+	}
+
+	////////////////////////////////////////////////
+	//	Addresses
+	////////////////////////////////////////////////
+
+	public int getNHostAddresses()
+	{
+		return hostAddrs.length;
+	}
+
+	public String getHostAddress(int n)
+	{
+		if (n < 0 || hostAddrs.length <= n)
+			return "";
+		return hostAddrs[n];
+	}
+
+	public String[] getHostAddresses()
+	{
+		String addrs[] = new String[hostAddrs.length];
+		System.arraycopy(hostAddrs, 0, addrs, 0, hostAddrs.length);
+		return addrs;
+	}
+
+	public boolean hasHostAddress(String addr)
+	{
+		for (int n=0; n<hostAddrs.length; n++) {
+			if (hostAddrs[n].equals(addr) == true)
+				return true;
+		}
+		return false;
+	}
+
+	public boolean equals(Object obj)
+	{
+		if ((obj instanceof HostInterfaceSnapshot) == false)
+			return false;
+		String addrs[] = ((HostInterfaceSnapshot)obj).hostAddrs;
+		if (addrs.length != hostAddrs.length)
+			return false;
+		for (int n=0; n<addrs.length; n++) {
+			if (addrs[n].equals(hostAddrs[n]) == false)
+				return false;
+		}
+		return true;
+	}
+
+	public int hashCode()
+	{
+		int hash = 0;
+		for (int n=0; n<hostAddrs.length; n++)
+			hash = hash * 31 + hostAddrs[n].hashCode();
+		return hash;
+	}
+}
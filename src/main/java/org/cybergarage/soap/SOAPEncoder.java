@@ -0,0 +1,193 @@
+/******************************************************************
+*
+*	CyberSOAP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: SOAPEncoder.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.soap;
+
+import java.io.UnsupportedEncodingException;
+
+import org.cybergarage.xml.XML;
+
+/**
+ * Writes a SOAP message as UTF-8 bytes without building the Node tree.
+ * <p>
+ * The fixed parts of the message are written as the byte arrays which are encoded
+ * beforehand with {@link #toBytes(String)}, and the values are escaped and encoded
+ * into the buffer directly.
+ */
+public class SOAPEncoder
+{
+	private final static String INDENT = "   ";
+
+	/**
+	 * The XML header and the start tags of the envelope and the body, which are followed
+	 * by the body content at the indent level 2.
+	 */
+	public final static byte ENVELOPE_HEAD[] = toBytes(
+		SOAP.VERSION_HEADER + "\n" +
+		"<" + SOAP.XMLNS + SOAP.DELIM + SOAP.ENVELOPE +
+			" xmlns" + SOAP.DELIM + SOAP.XMLNS + "=\"" + SOAP.XMLNS_URL + "\"" +
+			" " + SOAP.XMLNS + SOAP.DELIM + "encodingStyle=\"" + SOAP.ENCSTYLE_URL + "\">\n" +
+		getIndent(1) + "<" + SOAP.XMLNS + SOAP.DELIM + SOAP.BODY + ">\n");
+
+	public final static byte ENVELOPE_TAIL[] = toBytes(
+		getIndent(1) + "</" + SOAP.XMLNS + SOAP.DELIM + SOAP.BODY + ">\n" +
+		"</" + SOAP.XMLNS + SOAP.DELIM + SOAP.ENVELOPE + ">\n");
+
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	private byte buf[];
+	private int len;
+
+	public SOAPEncoder(int capacity)
+	{
+		buf = new byte[(0 < capacity) ? capacity : 256];
+		len = 0;
+	}
+
+	public SOAPEncoder()
+	{
+		this(0);
+	}
+
+	////////////////////////////////////////////////
+	//	Template
+	////////////////////////////////////////////////
+
+	public final static String getIndent(int level)
+	{
+		StringBuffer indent = new StringBuffer();
+		for (int n=0; n<level; n++)
+			indent.append(INDENT);
+		return indent.toString();
+	}
+
+	/**
+	 * Encodes the fixed part of a message in UTF-8.
+	 */
+	public final static byte[] toBytes(String str)
+	{
+		try {
+			return str.getBytes(XML.CHARSET_UTF8);
+		}
+		catch (UnsupportedEncodingException e) {
+			return str.getBytes();
+		}
+	}
+
+	////////////////////////////////////////////////
+	//	Write
+	////////////////////////////////////////////////
+
+	private void ensureCapacity(int addLen)
+	{
+		int newLen = len + addLen;
+		if (newLen <= buf.length)
+			return;
+		int newCapacity = buf.length * 2;
+		if (newCapacity < newLen)
+			newCapacity = newLen;
+		byte newBuf[] = new byte[newCapacity];
+		System.arraycopy(buf, 0, newBuf, 0, len);
+		buf = newBuf;
+	}
+
+	public void write(byte data[])
+	{
+		ensureCapacity(data.length);
+		System.arraycopy(data, 0, buf, len, data.length);
+		len += data.length;
+	}
+
+	private void writeASCII(String str)
+	{
+		int strLen = str.length();
+		ensureCapacity(strLen);
+		for (int n=0; n<strLen; n++)
+			buf[len++] = (byte)str.charAt(n);
+	}
+
+	/**
+	 * Writes the value in UTF-8 escaping the XML special characters as XML.escapeXMLChars() does.
+	 */
+	public void writeEscaped(String value)
+	{
+		if (value == null)
+			return;
+		int valueLen = value.length();
+		// Most values are ASCII without the special characters, so the buffer is grown only once.
+		ensureCapacity(valueLen);
+		for (int n=0; n<valueLen; n++) {
+			char c = value.charAt(n);
+			switch (c) {
+			case '&': writeASCII("&amp;"); continue;
+			case '<': writeASCII("&lt;"); continue;
+			case '>': writeASCII("&gt;"); continue;
+			case '\'': writeASCII("&apos;"); continue;
+			case '"': writeASCII("&quot;"); continue;
+			}
+			if (c < 0x80) {
+				ensureCapacity(1);
+				buf[len++] = (byte)c;
+				continue;
+			}
+			if (c < 0x800) {
+				ensureCapacity(2);
+				buf[len++] = (byte)(0xC0 | (c >> 6));
+				buf[len++] = (byte)(0x80 | (c & 0x3F));
+				continue;
+			}
+			if (Character.MIN_SURROGATE <= c && c <= Character.MAX_SURROGATE) {
+				int cp = (n + 1 < valueLen) ? value.codePointAt(n) : c;
+				if (Character.isSupplementaryCodePoint(cp) == false) {
+					// An unpaired surrogate can't be encoded.
+					ensureCapacity(1);
+					buf[len++] = (byte)'?';
+					continue;
+				}
+				ensureCapacity(4);
+				buf[len++] = (byte)(0xF0 | (cp >> 18));
+				buf[len++] = (byte)(0x80 | ((cp >> 12) & 0x3F));
+				buf[len++] = (byte)(0x80 | ((cp >> 6) & 0x3F));
+				buf[len++] = (byte)(0x80 | (cp & 0x3F));
+				n++;
+				continue;
+			}
+			ensureCapacity(3);
+			buf[len++] = (byte)(0xE0 | (c >> 12));
+			buf[len++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+			buf[len++] = (byte)(0x80 | (c & 0x3F));
+		}
+	}
+
+	////////////////////////////////////////////////
+	//	Bytes
+	////////////////////////////////////////////////
+
+	public int size()
+	{
+		return len;
+	}
+
+	public byte[] toByteArray()
+	{
+		if (len == buf.length)
+			return buf;
+		byte data[] = new byte[len];
+		System.arraycopy(buf, 0, data, 0, len);
+		return data;
+	}
+}
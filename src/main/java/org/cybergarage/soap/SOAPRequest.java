@@ -15,6 +15,8 @@
 *		- Added XML header, <?xml version=\"1.0\"?> to setContent().
 *	05/11/04
 *		- Changed the XML header to <?xml version="1.0" encoding="utf-8"?> in setContent().
+*	10/18/26
+*		- Added postMessage(String, int, HTTPConnectionPool).
 *	
 ******************************************************************/
 
@@ -23,6 +25,7 @@ package org.cybergarage.soap;
 import java.io.ByteArrayInputStream;
 
 import org.cybergarage.http.HTTP;
+import org.cybergarage.http.HTTPConnectionPool;
 import org.cybergarage.http.HTTPRequest;
 import org.cybergarage.http.HTTPResponse;
 import org.cybergarage.util.Debug;
@@ -82,8 +85,19 @@ public class SOAPRequest extends HTTPRequest
 
 	public SOAPResponse postMessage(String host, int port)
 	{
-		HTTPResponse httpRes = post(host, port);
-		
+		return toSOAPResponse(post(host, port));
+	}
+
+	/**
+	 * Posts the message on a connection of the pool.
+	 */
+	public SOAPResponse postMessage(String host, int port, HTTPConnectionPool connPool)
+	{
+		return toSOAPResponse(connPool.post(this, host, port));
+	}
+
+	private SOAPResponse toSOAPResponse(HTTPResponse httpRes)
+	{
 		 SOAPResponse soapRes = new SOAPResponse(httpRes);
 
 		byte content[] = soapRes.getContent();
@@ -24,17 +24,38 @@
 *		- Changed postControlAction() to set the status code to the UPnPStatus.
 *	04/12/06
 *		- Added setUserData() and getUserData() to set a user original data object.
+*	10/18/26
+*		- Changed getArgumentList() and getService() to reuse the Argument and Service objects of the nodes.
+*		- Added getActionModel(), and changed the argument lookups and setInArgumentValues()/setOutArgumentValues()
+*		  to use it.
+*		- Added setInArgumentValues(String[], String[]) for the decoded action requests.
+*		- Added getResponseEncoder().
+*		- Added ActionInvocationListener, performActionListener(ActionRequest, ActionInvocation) and
+*		  postControlAction(ActionInvocation), and changed postControlAction() to use an ActionInvocation.
+*		- Added invokeAsync().
+*		- Changed setName() to drop the ServiceModel, and added clearActionModel() for the changed arguments.
 *
 ******************************************************************/
 
 package org.cybergarage.upnp;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.Future;
 
+import org.cybergarage.upnp.control.ActionInvocation;
+import org.cybergarage.upnp.control.ActionInvocationListener;
+import org.cybergarage.upnp.control.ActionInvoker;
 import org.cybergarage.upnp.control.ActionListener;
 import org.cybergarage.upnp.control.ActionRequest;
 import org.cybergarage.upnp.control.ActionResponse;
+import org.cybergarage.upnp.control.ActionResponseEncoder;
+import org.cybergarage.upnp.control.ActionResult;
+import org.cybergarage.upnp.control.ActionResultListener;
 import org.cybergarage.upnp.control.ControlResponse;
 import org.cybergarage.upnp.xml.ActionData;
+import org.cybergarage.upnp.xml.WrapperListCache;
 import org.cybergarage.util.Debug;
 import org.cybergarage.util.Mutex;
 import org.cybergarage.xml.Node;
@@ -61,7 +82,7 @@ public class Action
 
 	public Service getService()
 	{
-		return new Service(getServiceNode());
+		return Service.getCachedService(getServiceNode());
 	}
 	
 	@SuppressWarnings("rawtypes")
@@ -135,6 +156,7 @@ public class Action
 	public void setName(String value)
 	{
 		getActionNode().setNode(NAME, value);
+		Service.clearServiceModel(getServiceNode());
 	}
 
 	public String getName()
@@ -146,21 +168,39 @@ public class Action
 	//	argumentList
 	////////////////////////////////////////////////
 
-	@SuppressWarnings("unchecked")
-	public ArgumentList getArgumentList()
+	private final static Argument EMPTY_ARGUMENTS[] = new Argument[0];
+	
+	private Argument[] getArguments()
 	{
-		ArgumentList argumentList = new ArgumentList();
 		Node argumentListNode = getActionNode().getNode(ArgumentList.ELEM_NAME);
 		if (argumentListNode == null)
-			return argumentList;
+			return EMPTY_ARGUMENTS;
+		WrapperListCache cache = getActionData().getArgumentListCache();
+		Object cachedArgs[] = cache.get(argumentListNode);
+		if (cachedArgs != null)
+			return (Argument[])cachedArgs;
+		int modCount = argumentListNode.getModCount();
+		Vector<Argument> argList = new Vector<Argument>();
 		int nodeCnt = argumentListNode.getNNodes();
 		for (int n=0; n<nodeCnt; n++) {
 			Node node = argumentListNode.getNode(n);
 			if (Argument.isArgumentNode(node) == false)
 				continue;
-			Argument argument = new Argument(getServiceNode(), node);
-			argumentList.add(argument);
+			argList.add(Argument.getCachedArgument(getServiceNode(), node));
 		} 
+		Argument args[] = new Argument[argList.size()];
+		argList.copyInto(args);
+		cache.set(argumentListNode, modCount, args);
+		return args;
+	}
+	
+	@SuppressWarnings("unchecked")
+	public ArgumentList getArgumentList()
+	{
+		Argument args[] = getArguments();
+		ArgumentList argumentList = new ArgumentList();
+		for (int n=0; n<args.length; n++)
+			argumentList.add(args[n]);
 		return argumentList;
 	}	
 	
@@ -182,49 +222,82 @@ public class Action
 		
 	}
 
+	////////////////////////////////////////////////
+	//	ActionModel
+	////////////////////////////////////////////////
+
+	/**
+	 * Returns the compiled index of the arguments, which is compiled again
+	 * only when the argument list has changed.
+	 */
+	public ActionModel getActionModel()
+	{
+		Argument args[] = getArguments();
+		ActionData data = getActionData();
+		ActionModel model = data.getActionModel();
+		if (model != null && model.isCompiledFrom(args) == true)
+			return model;
+		model = new ActionModel(args);
+		data.setActionModel(model);
+		return model;
+	}
+
+	/**
+	 * Drops the model of the action, so that the renamed arguments or the arguments of
+	 * which the direction has changed are compiled again with the response encoder.
+	 */
+	static void clearActionModel(Node actionNode)
+	{
+		if (actionNode == null)
+			return;
+		ActionData data = (ActionData)actionNode.getUserData();
+		if (data != null)
+			data.setActionModel(null);
+	}
+
+	/**
+	 * Returns the encoder of the SOAP responses, which is compiled again after the arguments
+	 * or the serviceType are changed.
+	 */
+	public ActionResponseEncoder getResponseEncoder()
+	{
+		ActionModel model = getActionModel();
+		Service service = getService();
+		String serviceType = (service != null) ? service.getServiceType() : null;
+		ActionData data = getActionData();
+		ActionResponseEncoder encoder = data.getResponseEncoder();
+		if (encoder != null && encoder.isCompiledFrom(model, serviceType) == true)
+			return encoder;
+		encoder = new ActionResponseEncoder(this);
+		data.setResponseEncoder(encoder);
+		return encoder;
+	}
+
 	@SuppressWarnings("unchecked")
 	public ArgumentList getInputArgumentList()
 	{
-		ArgumentList allArgList = getArgumentList();
-		int allArgCnt = allArgList.size();
+		ActionModel model = getActionModel();
+		int inArgCnt = model.getNInputArguments();
 		ArgumentList argList = new ArgumentList();
-		for (int n=0; n<allArgCnt; n++) {
-			Argument arg = allArgList.getArgument(n);
-			if (arg.isInDirection() == false)
-				continue;
-			argList.add(arg);
-		}
+		for (int n=0; n<inArgCnt; n++)
+			argList.add(model.getInputArgument(n));
 		return argList;
 	}
 
 	@SuppressWarnings("unchecked")
 	public ArgumentList getOutputArgumentList()
 	{
-		ArgumentList allArgList = getArgumentList();
-		int allArgCnt = allArgList.size();
+		ActionModel model = getActionModel();
+		int outArgCnt = model.getNOutputArguments();
 		ArgumentList argList = new ArgumentList();
-		for (int n=0; n<allArgCnt; n++) {
-			Argument arg = allArgList.getArgument(n);
-			if (arg.isOutDirection() == false)
-				continue;
-			argList.add(arg);
-		}
+		for (int n=0; n<outArgCnt; n++)
+			argList.add(model.getOutputArgument(n));
 		return argList;
 	}
 	
 	public Argument getArgument(String name)
 	{
-		ArgumentList argList = getArgumentList();
-		int nArgs = argList.size();
-		for (int n=0; n<nArgs; n++) {
-			Argument arg = argList.getArgument(n);
-			String argName = arg.getName();
-			if (argName == null)
-				continue;
-			if (name.equals(argName) == true)
-				return arg;
-		}
-		return null;
+		return getActionModel().getArgument(name);
 	}
 
 	/**
@@ -244,7 +317,32 @@ public class Action
 	 */
 	public void setInArgumentValues(ArgumentList argList)
 	{
-		getArgumentList().setReqArgs(argList); 
+		ActionModel model = getActionModel();
+		int inArgCnt = model.getNInputArguments();
+		Argument inArgs[] = new Argument[inArgCnt];
+		for (int n=0; n<inArgCnt; n++)
+			inArgs[n] = model.getInputArgument(n);
+		setArgumentValues(inArgs, argList);
+	}
+	
+	/**
+	 * Sets the values of the input arguments from the names and the values of an action request.
+	 * @throws IllegalArgumentException if the names don't have one of the input arguments.
+	 */
+	public void setInArgumentValues(String names[], String values[])
+	{
+		ActionModel model = getActionModel();
+		int inArgCnt = model.getNInputArguments();
+		Argument inArgs[] = new Argument[inArgCnt];
+		for (int n=0; n<inArgCnt; n++)
+			inArgs[n] = model.getInputArgument(n);
+		Map<String, String> valueMap = new HashMap<String, String>(names.length * 2);
+		for (int n=0; n<names.length; n++) {
+			if (names[n] == null || valueMap.containsKey(names[n]) == true)
+				continue;
+			valueMap.put(names[n], values[n]);
+		}
+		setArgumentValues(inArgs, valueMap);
 	}
 	
 	/**
@@ -254,7 +352,40 @@ public class Action
 	 */
 	public void setOutArgumentValues(ArgumentList argList)
 	{
-		getArgumentList().setResArgs(argList);
+		ActionModel model = getActionModel();
+		int outArgCnt = model.getNOutputArguments();
+		Argument outArgs[] = new Argument[outArgCnt];
+		for (int n=0; n<outArgCnt; n++)
+			outArgs[n] = model.getOutputArgument(n);
+		setArgumentValues(outArgs, argList);
+	}
+	
+	/**
+	 * Sets the values of the arguments from the argument list which is matched by the names.
+	 * @throws IllegalArgumentException if the argument list doesn't have one of the arguments.
+	 */
+	private static void setArgumentValues(Argument args[], ArgumentList valueList)
+	{
+		int nValues = valueList.size();
+		Map<String, String> valueMap = new HashMap<String, String>(nValues * 2);
+		for (int n=0; n<nValues; n++) {
+			Argument valueArg = valueList.getArgument(n);
+			String name = valueArg.getName();
+			if (name == null || valueMap.containsKey(name) == true)
+				continue;
+			valueMap.put(name, valueArg.getValue());
+		}
+		setArgumentValues(args, valueMap);
+	}
+
+	private static void setArgumentValues(Argument args[], Map<String, String> valueMap)
+	{
+		for (int n=0; n<args.length; n++) {
+			String argName = args[n].getName();
+			if (valueMap.containsKey(argName) == false)
+				throw new IllegalArgumentException("Argument \"" + argName + "\" missing.");
+			args[n].setValue(valueMap.get(argName));
+		}
 	}
 	
 	public void setArgumentValue(String name, String value)
@@ -272,14 +403,10 @@ public class Action
 
 	private void clearOutputAgumentValues()
 	{
-		ArgumentList allArgList = getArgumentList();
-		int allArgCnt = allArgList.size();
-		for (int n=0; n<allArgCnt; n++) {
-			Argument arg = allArgList.getArgument(n);
-			if (arg.isOutDirection() == false)
-				continue;
-			arg.setValue("");
-		}
+		ActionModel model = getActionModel();
+		int outArgCnt = model.getNOutputArguments();
+		for (int n=0; n<outArgCnt; n++)
+			model.getOutputArgument(n).setValue("");
 	}
 	
 	public String getArgumentValue(String name)
@@ -304,7 +431,11 @@ public class Action
 
 	private ActionData getActionData()
 	{
-		Node node = getActionNode();
+		return getActionData(getActionNode());
+	}
+	
+	private static ActionData getActionData(Node node)
+	{
 		ActionData userData = (ActionData)node.getUserData();
 		if (userData == null) {
 			userData = new ActionData();
@@ -313,6 +444,24 @@ public class Action
 		}
 		return userData;
 	}
+
+	/**
+	 * Returns the Action object of the action node, which is created once and
+	 * reused as long as it belongs to the same service node.
+	 */
+	static Action getCachedAction(Node serviceNode, Node actionNode)
+	{
+		ActionData data = getActionData(actionNode);
+		Object wrapper = data.getWrapper();
+		if (wrapper instanceof Action) {
+			Action action = (Action)wrapper;
+			if (action.getServiceNode() == serviceNode && action.getActionNode() == actionNode)
+				return action;
+		}
+		Action action = new Action(serviceNode, actionNode);
+		data.setWrapper(action);
+		return action;
+	}
 	
 	////////////////////////////////////////////////
 	//	controlAction
@@ -349,6 +498,70 @@ public class Action
 		return true;
 	}
 
+	public ActionInvocationListener getActionInvocationListener() 
+	{
+		return getActionData().getActionInvocationListener();
+	}
+
+	/**
+	 * Sets the listener which handles the requests concurrently. The listener is used
+	 * instead of the ActionListener when both are set.
+	 */
+	public void setActionInvocationListener(ActionInvocationListener listener) 
+	{
+		getActionData().setActionInvocationListener(listener);
+	}
+
+	/**
+	 * Answers the request of the invocation with the ActionInvocationListener, or with the
+	 * ActionListener when only it is set.
+	 * @return false if no listener is set.
+	 */
+	public boolean performActionListener(ActionRequest actionReq, ActionInvocation inv)
+	{
+		ActionInvocationListener invListener = getActionInvocationListener();
+		ActionListener listener = getActionListener();
+		if (invListener == null && listener == null)
+			return false;
+		boolean isSucceeded;
+		if (invListener != null)
+			isSucceeded = invListener.actionInvocationReceived(inv);
+		else
+			isSucceeded = performActionListener(listener, inv);
+		ActionResponse actionRes = new ActionResponse();
+		if (isSucceeded == true) {
+			actionRes.setResponse(inv);
+		}
+		else {
+			UPnPStatus upnpStatus = inv.getStatus();
+			actionRes.setFaultResponse(upnpStatus.getCode(), upnpStatus.getDescription());
+		}
+		if (Debug.isOn() == true)
+			actionRes.print();
+		actionReq.post(actionRes);
+		return true;
+	}
+
+	private boolean performActionListener(ActionListener listener, ActionInvocation inv)
+	{
+		ActionModel model = inv.getActionModel();
+		// The ActionListener uses the shared argument nodes, so the invocations are handled one by one.
+		synchronized (getActionData()) {
+			int inArgCnt = model.getNInputArguments();
+			for (int n=0; n<inArgCnt; n++)
+				model.getInputArgument(n).setValue(inv.getInputArgumentValue(n));
+			setStatus(UPnPStatus.INVALID_ACTION);
+			clearOutputAgumentValues();
+			boolean isSucceeded = listener.actionControlReceived(this);
+			int outArgCnt = model.getNOutputArguments();
+			for (int n=0; n<outArgCnt; n++)
+				inv.setOutputArgumentValue(n, model.getOutputArgument(n).getValue());
+			UPnPStatus upnpStatus = getStatus();
+			inv.setStatus(upnpStatus.getCode(), upnpStatus.getDescription());
+			return isSucceeded;
+		}
+	}
+
 	////////////////////////////////////////////////
 	//	ActionControl
 	////////////////////////////////////////////////
@@ -375,29 +588,51 @@ public class Action
 	public boolean postControlAction()
 	{
 		// Thanks for Giordano Sassaroli <sassarol@cefriel.it> (08/30/03)
-		ArgumentList actionArgList = getArgumentList();
-		ArgumentList actionInputArgList = getInputArgumentList();		
+		ActionInvocation inv = new ActionInvocation(this, getInputArgumentList());
+		boolean isSucceeded = postControlAction(inv);
+		setControlResponse(inv.getControlResponse());
+		UPnPStatus upnpStatus = inv.getStatus();
+		setStatus(upnpStatus.getCode(), upnpStatus.getDescription());
+		if (isSucceeded == false)
+			return false;
+		ActionModel model = inv.getActionModel();
+		int outArgCnt = model.getNOutputArguments();
+		for (int n=0; n<outArgCnt; n++)
+			model.getOutputArgument(n).setValue(inv.getOutputArgumentValue(n));
+		return true;
+	}
+
+	/**
+	 * Posts the invocation, and sets the output values, the status and the response to the invocation.
+	 * The argument nodes of this action aren't changed, so the invocations are posted concurrently.
+	 */
+	public boolean postControlAction(ActionInvocation inv)
+	{
 		ActionRequest ctrlReq = new ActionRequest();
-		ctrlReq.setRequest(this, actionInputArgList);
+		ctrlReq.setRequest(inv);
 		if (Debug.isOn() == true)
 			ctrlReq.print();
 		ActionResponse ctrlRes = ctrlReq.post();
 		if (Debug.isOn() == true)
 			ctrlRes.print();
-		setControlResponse(ctrlRes);
-		// Thanks for Dimas <cyberrate@users.sourceforge.net> and Stefano Lenzi <kismet-sl@users.sourceforge.net> (07/09/04)
-		int statCode = ctrlRes.getStatusCode();
-		setStatus(statCode);
-		if (ctrlRes.isSuccessful() == false)
-			return false;
-		ArgumentList outArgList = ctrlRes.getResponse();
-        try {
-            actionArgList.setResArgs(outArgList);
-        } catch (IllegalArgumentException ex){
-            setStatus(UPnPStatus.INVALID_ARGS,"Action succesfully delivered but invalid arguments returned.");
-            return false;
-        }
-		return true;
+		return inv.setActionResponse(ctrlRes);
+	}
+
+	/**
+	 * Posts the action with the input values asynchronously by the default ActionInvoker.
+	 * The argument nodes of this action aren't changed.
+	 * @param listener The listener called with the result, or null.
+	 * @throws IllegalArgumentException if the argument list doesn't have one of the input arguments.
+	 */
+	public Future<ActionResult> invokeAsync(ArgumentList argList, ActionResultListener listener)
+	{
+		ActionInvocation inv = new ActionInvocation(this, argList);
+		return ActionInvoker.getDefaultInvoker().invoke(inv, listener);
+	}
+
+	public Future<ActionResult> invokeAsync(ArgumentList argList)
+	{
+		return invokeAsync(argList, null);
 	}
 
 	////////////////////////////////////////////////
@@ -0,0 +1,154 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: ActionModel.java
+*
+*	Revision:
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * Immutable index of the arguments of an action, which are split into the input
+ * and the output arguments in the order of the SCPD.
+ * A model is valid as long as the action returns the same argument array.
+ * Argument.setName() and setDirection() drop the model, but the description must
+ * not be changed through its nodes once the model is compiled.
+ */
+public class ActionModel
+{
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	private Argument args[];
+	private Argument inArgs[];
+	private Argument outArgs[];
+	private Map<String, Integer> argIndexMap;
+	// The index of each argument in the input or the output arguments.
+	private int dirIndexes[];
+
+	ActionModel(Argument args[])
+	{
+		this.args = args;
+		Vector<Argument> inArgList = new Vector<Argument>();
+		Vector<Argument> outArgList = new Vector<Argument>();
+		argIndexMap = new HashMap<String, Integer>(args.length * 2);
+		dirIndexes = new int[args.length];
+		for (int n=0; n<args.length; n++) {
+			Argument arg = args[n];
+			String name = arg.getName();
+			if (name != null && argIndexMap.containsKey(name) == false)
+				argIndexMap.put(name, Integer.valueOf(n));
+			if (arg.isInDirection() == true) {
+				dirIndexes[n] = inArgList.size();
+				inArgList.add(arg);
+			}
+			else {
+				dirIndexes[n] = outArgList.size();
+				outArgList.add(arg);
+			}
+		}
+		inArgs = new Argument[inArgList.size()];
+		inArgList.copyInto(inArgs);
+		outArgs = new Argument[outArgList.size()];
+		outArgList.copyInto(outArgs);
+	}
+
+	boolean isCompiledFrom(Argument args[])
+	{
+		return (this.args == args) ? true : false;
+	}
+
+	////////////////////////////////////////////////
+	//	Argument
+	////////////////////////////////////////////////
+
+	public int getNArguments()
+	{
+		return args.length;
+	}
+
+	public Argument getArgument(int n)
+	{
+		return args[n];
+	}
+
+	/**
+	 * Returns the index of the argument in the argument list, or -1 if the action doesn't have the argument.
+	 */
+	public int getArgumentIndex(String name)
+	{
+		if (name == null)
+			return -1;
+		Integer index = argIndexMap.get(name);
+		if (index == null)
+			return -1;
+		return index.intValue();
+	}
+
+	public Argument getArgument(String name)
+	{
+		int index = getArgumentIndex(name);
+		if (index < 0)
+			return null;
+		return args[index];
+	}
+
+	public int getNInputArguments()
+	{
+		return inArgs.length;
+	}
+
+	public Argument getInputArgument(int n)
+	{
+		return inArgs[n];
+	}
+
+	public int getNOutputArguments()
+	{
+		return outArgs.length;
+	}
+
+	public Argument getOutputArgument(int n)
+	{
+		return outArgs[n];
+	}
+
+	/**
+	 * Returns the index of the argument in the input arguments, or -1 if the action doesn't have the input argument.
+	 */
+	public int getInputArgumentIndex(String name)
+	{
+		int index = getArgumentIndex(name);
+		if (index < 0)
+			return -1;
+		if (dirIndexes[index] < inArgs.length && inArgs[dirIndexes[index]] == args[index])
+			return dirIndexes[index];
+		return -1;
+	}
+
+	/**
+	 * Returns the index of the argument in the output arguments, or -1 if the action doesn't have the output argument.
+	 */
+	public int getOutputArgumentIndex(String name)
+	{
+		int index = getArgumentIndex(name);
+		if (index < 0)
+			return -1;
+		if (dirIndexes[index] < outArgs.length && outArgs[dirIndexes[index]] == args[index])
+			return dirIndexes[index];
+		return -1;
+	}
+}
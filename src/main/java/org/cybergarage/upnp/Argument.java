@@ -19,6 +19,9 @@
 *		- Added the parent service node to the constructor.
 *	04/12/06
 *		- Added setUserData() and getUserData() to set a user original data object.
+*	10/18/26
+*		- Changed getService() and getAction() to reuse the Service and Action objects of the nodes.
+*		- Changed setName() and setDirection() to drop the ActionModel of the action.
 *
 ******************************************************************/
 
@@ -57,7 +60,7 @@ public class Argument
 
 	public Service getService()
 	{
-		return new Service(getServiceNode());
+		return Service.getCachedService(getServiceNode());
 	}
 	
 	void setService(Service s){
@@ -79,7 +82,10 @@ public class Argument
 	
 	public Action getAction()
 	{
-		return new Action(getServiceNode(), getActionNode());
+		Node actionNode = getActionNode();
+		if (actionNode == null)
+			return new Action(getServiceNode(), actionNode);
+		return Action.getCachedAction(getServiceNode(), actionNode);
 	}
 	
 	////////////////////////////////////////////////
@@ -128,6 +134,7 @@ public class Argument
 	public void setName(String value)
 	{
 		getArgumentNode().setNode(NAME, value);
+		Action.clearActionModel(getActionNode());
 	}
 
 	public String getName()
@@ -144,6 +151,7 @@ public class Argument
 	public void setDirection(String value)
 	{
 		getArgumentNode().setNode(DIRECTION, value);
+		Action.clearActionModel(getActionNode());
 	}
 
 	public String getDirection()
@@ -195,7 +203,11 @@ public class Argument
 
 	private ArgumentData getArgumentData()
 	{
-		Node node = getArgumentNode();
+		return getArgumentData(getArgumentNode());
+	}
+	
+	private static ArgumentData getArgumentData(Node node)
+	{
 		ArgumentData userData = (ArgumentData)node.getUserData();
 		if (userData == null) {
 			userData = new ArgumentData();
@@ -205,6 +217,24 @@ public class Argument
 		return userData;
 	}
 
+	/**
+	 * Returns the Argument object of the argument node, which is created once and
+	 * reused as long as it belongs to the same service node.
+	 */
+	static Argument getCachedArgument(Node serviceNode, Node argNode)
+	{
+		ArgumentData data = getArgumentData(argNode);
+		Object wrapper = data.getWrapper();
+		if (wrapper instanceof Argument) {
+			Argument arg = (Argument)wrapper;
+			if (arg.getServiceNode() == serviceNode && arg.getArgumentNode() == argNode)
+				return arg;
+		}
+		Argument arg = new Argument(serviceNode, argNode);
+		data.setWrapper(arg);
+		return arg;
+	}
+
 	////////////////////////////////////////////////
 	//	value
 	////////////////////////////////////////////////
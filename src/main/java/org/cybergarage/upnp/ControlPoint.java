@@ -56,47 +56,107 @@
 *		- Changed addDevice() to use Parser::parse(URL).
 *	04/12/06
 *		- Added setUserData() and getUserData() to set a user original data object.
+*	10/18/26
+*		- Added a concurrent UDN index of the root devices so that notifyReceived()
+*		  and searchResponseReceived() refresh known devices without the global lock.
+*		- Changed addDevice() to retrieve the descriptions of new devices asynchronously
+*		  using DescriptionFetcher, and added descriptionReceived().
+*		- Added setDescriptionCache() to rehydrate the devices from a persistent
+*		  cache at start(), and descriptionChanged().
+*		- Changed removeExpiredDevices() to remove the cache entries of the rehydrated
+*		  devices which expire without being confirmed.
+*		- Changed to track BOOTID.UPNP.ORG and CONFIGID.UPNP.ORG of the devices.
+*		  The description is fetched again only when the CONFIGID changes, and the
+*		  subscriptions are invalidated only when the BOOTID changes. Removed devices
+*		  are kept for a while to be added again without a fetch after a byebye/alive flap.
+*		- Changed to open and close the sockets of the interface addresses which are
+*		  added or removed while running when no bind addresses are specified.
+*		- Changed to keep the devices in DeviceRegistry instead of the NodeList of the
+*		  root nodes, and changed getDevice() and getSubscriberService() to use the indexes.
+*		- Changed removeExpiredDevices() to remove only the devices of which the lease
+*		  deadlines have passed in a TimerWheel instead of checking all devices.
+*		- Added setSCPDPrefetchEnabled().
+*		- Changed start() to renew each subscription at a fraction of the granted timeout
+*		  using RenewScheduler instead of RenewSubscriber in the NMPR mode.
+*		- Added renewSubscription() and resubscribe().
+*		- Changed httpRequestRecieved() to answer the NOTIFY requests before the event
+*		  listeners are called, and to deliver the events in the order of SEQ using EventDispatcher.
+*		- Added addEventGapListener() to be notified of the missed events.
+*		- Added addPropertySetListener() to receive all properties of an event message
+*		  at once, and changed httpRequestRecieved() not to parse the events of the
+*		  services which no listener is interested in.
+*		- Added setEventedValueCacheEnabled() to cache the evented values of the subscribed
+*		  services, and addStateChangeListener() to be notified of the changed values.
+*		- Added the multicast event sockets of UPnP Device Architecture 1.1, which deliver
+*		  the multicast events to the event listeners with the USN instead of the SID.
+*		- Added invokeAction() to invoke an action on the selected services concurrently
+*		  using ActionFanOut.
 *
 *******************************************************************/
 
 package org.cybergarage.upnp;
 
+import java.io.ByteArrayInputStream;
 import java.net.InetAddress;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.cybergarage.http.HTTPRequest;
 import org.cybergarage.http.HTTPRequestListener;
+import org.cybergarage.http.HTTPServer;
 import org.cybergarage.http.HTTPServerList;
 import org.cybergarage.net.HostInterface;
+import org.cybergarage.net.HostInterfaceListener;
+import org.cybergarage.upnp.control.ActionBatch;
+import org.cybergarage.upnp.control.ActionFanOut;
+import org.cybergarage.upnp.control.ActionResultListener;
+import org.cybergarage.upnp.control.RenewScheduler;
+import org.cybergarage.upnp.control.ServiceSelector;
 import org.cybergarage.upnp.control.RenewSubscriber;
+import org.cybergarage.upnp.device.DescriptionCache;
+import org.cybergarage.upnp.device.DescriptionFetcher;
 import org.cybergarage.upnp.device.DeviceChangeListener;
 import org.cybergarage.upnp.device.Disposer;
 import org.cybergarage.upnp.device.NotifyListener;
 import org.cybergarage.upnp.device.ST;
 import org.cybergarage.upnp.device.SearchResponseListener;
 import org.cybergarage.upnp.device.USN;
+import org.cybergarage.upnp.event.EventDispatcher;
+import org.cybergarage.upnp.event.EventGapListener;
 import org.cybergarage.upnp.event.EventListener;
+import org.cybergarage.upnp.event.EventedValue;
+import org.cybergarage.upnp.event.MulticastNotifyRequest;
 import org.cybergarage.upnp.event.NotifyRequest;
 import org.cybergarage.upnp.event.Property;
 import org.cybergarage.upnp.event.PropertyList;
+import org.cybergarage.upnp.event.PropertySet;
+import org.cybergarage.upnp.event.PropertySetListener;
+import org.cybergarage.upnp.event.StateChangeListener;
 import org.cybergarage.upnp.event.Subscription;
 import org.cybergarage.upnp.event.SubscriptionRequest;
 import org.cybergarage.upnp.event.SubscriptionResponse;
+import org.cybergarage.upnp.ssdp.MulticastEventSocket;
+import org.cybergarage.upnp.ssdp.MulticastEventSocketList;
 import org.cybergarage.upnp.ssdp.SSDP;
 import org.cybergarage.upnp.ssdp.SSDPNotifySocketList;
 import org.cybergarage.upnp.ssdp.SSDPPacket;
+import org.cybergarage.upnp.ssdp.SSDPNotifySocket;
 import org.cybergarage.upnp.ssdp.SSDPSearchRequest;
+import org.cybergarage.upnp.ssdp.SSDPSearchResponseSocket;
 import org.cybergarage.upnp.ssdp.SSDPSearchResponseSocketList;
 import org.cybergarage.util.Debug;
 import org.cybergarage.util.ListenerList;
 import org.cybergarage.util.Mutex;
+import org.cybergarage.util.TimerWheel;
 import org.cybergarage.xml.Node;
-import org.cybergarage.xml.NodeList;
-import org.cybergarage.xml.Parser;
 import org.cybergarage.xml.ParserException;
 
-public class ControlPoint implements HTTPRequestListener
+public class ControlPoint implements HTTPRequestListener, HostInterfaceListener
 {
 	private final static int DEFAULT_EVENTSUB_PORT = 8058;
 	private final static int DEFAULT_SSDP_PORT = 8008;
@@ -110,12 +170,18 @@ public class ControlPoint implements HTTPRequestListener
 	
 	private SSDPNotifySocketList ssdpNotifySocketList;
 	private SSDPSearchResponseSocketList ssdpSearchResponseSocketList;
+	private MulticastEventSocketList multicastEventSocketList;
 
 	private SSDPNotifySocketList getSSDPNotifySocketList()
 	{
 		return ssdpNotifySocketList;
 	}
 	
+	private MulticastEventSocketList getMulticastEventSocketList()
+	{
+		return multicastEventSocketList;
+	}
+	
 	private SSDPSearchResponseSocketList getSSDPSearchResponseSocketList()
 	{
 		return ssdpSearchResponseSocketList;
@@ -134,13 +200,20 @@ public class ControlPoint implements HTTPRequestListener
 	//	Constructor
 	////////////////////////////////////////////////
 
+	private InetAddress[] binds = null;
+
 	public ControlPoint(int ssdpPort, int httpPort,InetAddress[] binds){
+		this.binds = binds;
 		ssdpNotifySocketList = new SSDPNotifySocketList(binds);
 		ssdpSearchResponseSocketList = new SSDPSearchResponseSocketList(binds);
+		multicastEventSocketList = new MulticastEventSocketList(binds);
 		
 		setSSDPPort(ssdpPort);
 		setHTTPPort(httpPort);
 		
+		setDescriptionFetcher(new DescriptionFetcher(this));
+		setEventDispatcher(new EventDispatcher(this));
+		
 		setDeviceDisposer(null);
 		setExpiredDeviceMonitoringInterval(DEFAULT_EXPIRED_DEVICE_MONITORING_INTERVAL);
 
@@ -228,53 +301,224 @@ public class ControlPoint implements HTTPRequestListener
 	//	Device List
 	////////////////////////////////////////////////
 
-	private NodeList devNodeList = new NodeList();
+	private DeviceRegistry devRegistry = new DeviceRegistry();
 
-	@SuppressWarnings("unchecked")
-	private void addDevice(Node rootNode)
+	public DeviceRegistry getDeviceRegistry()
 	{
-		devNodeList.add(rootNode);
+		return devRegistry;
 	}
 
-	private synchronized void addDevice(SSDPPacket ssdpPacket)
+	/**
+	 * Refreshes the lease of an already known root device.
+	 * This is a single lookup in the UDN index and it doesn't take the ControlPoint lock,
+	 * so only the packets of unknown devices have to go through addDevice(SSDPPacket).
+	 *
+	 * @return true if the device is known and its SSDP packet was updated, otherwise false.
+	 */
+	private boolean updateDevice(SSDPPacket ssdpPacket)
 	{
-		if (ssdpPacket.isRootDevice() == false)
+		String udn = USN.getUDN(ssdpPacket.getUSN());
+		Device dev = devRegistry.getRootDevice(udn);
+		if (dev == null)
+			return false;
+		
+		rehydratedDevMap.remove(udn);
+		
+		int bootId = ssdpPacket.getBootId();
+		if (0 <= bootId && bootId != dev.getBootId()) {
+			// The device has been rebooted and it has lost our subscriptions.
+			if (0 <= dev.getBootId())
+				invalidateSubscriptions(dev);
+			dev.setBootId(bootId);
+		}
+		
+		int configId = ssdpPacket.getConfigId();
+		if (0 <= configId && configId != dev.getConfigId()) {
+			if (0 <= dev.getConfigId())
+				getDescriptionFetcher().refetch(ssdpPacket);
+			else
+				dev.setConfigId(configId);
+		}
+		
+		devRegistry.setLocation(dev, ssdpPacket.getLocation());
+		dev.setSSDPPacket(ssdpPacket);
+		scheduleExpiry(dev);
+		return true;
+	}
+
+	/**
+	 * Handles a ssdp:update of a known device, the device keeps the subscriptions
+	 * when it announces the next boot id.
+	 */
+	private void updateBootId(SSDPPacket ssdpPacket)
+	{
+		String udn = USN.getUDN(ssdpPacket.getUSN());
+		Device dev = devRegistry.getRootDevice(udn);
+		if (dev == null)
 			return;
-			
-		String usn = ssdpPacket.getUSN();
-		String udn = USN.getUDN(usn);
-		Device dev = getDevice(udn);
-		if (dev != null) {
-			dev.setSSDPPacket(ssdpPacket);
+		int nextBootId = ssdpPacket.getNextBootId();
+		if (nextBootId < 0)
 			return;
+		int bootId = ssdpPacket.getBootId();
+		if (0 <= bootId && 0 <= dev.getBootId() && bootId != dev.getBootId())
+			invalidateSubscriptions(dev);
+		dev.setBootId(nextBootId);
+	}
+
+	private void invalidateSubscriptions(Device dev)
+	{
+		ServiceList serviceList = dev.getServiceList();
+		int serviceCnt = serviceList.size();
+		for (int n=0; n<serviceCnt; n++) {
+			Service service = serviceList.getService(n);
+			if (service.hasSID() == true)
+				clearSID(service);
 		}
+		DeviceList childDevList = dev.getDeviceList();
+		int childDevCnt = childDevList.size();
+		for (int n=0; n<childDevCnt; n++)
+			invalidateSubscriptions(childDevList.getDevice(n));
+	}
+
+	private void transferSubscriptions(Device oldDev, Device newRootDev)
+	{
+		Device newDev = newRootDev.getDevice(oldDev.getUDN());
+		if (newDev == null && newRootDev.isDevice(oldDev.getUDN()) == true)
+			newDev = newRootDev;
+		if (newDev != null) {
+			ServiceList serviceList = oldDev.getServiceList();
+			int serviceCnt = serviceList.size();
+			for (int n=0; n<serviceCnt; n++) {
+				Service oldService = serviceList.getService(n);
+				if (oldService.hasSID() == false)
+					continue;
+				Service newService = newDev.getService(oldService.getServiceID());
+				if (newService == null)
+					continue;
+				newService.setSID(oldService.getSID());
+				newService.setTimeout(oldService.getTimeout());
+			}
+		}
+		DeviceList childDevList = oldDev.getDeviceList();
+		int childDevCnt = childDevList.size();
+		for (int n=0; n<childDevCnt; n++)
+			transferSubscriptions(childDevList.getDevice(n), newRootDev);
+	}
+
+	private void addDevice(SSDPPacket ssdpPacket)
+	{
+		if (ssdpPacket.isRootDevice() == false)
+			return;
 		
-		String location = ssdpPacket.getLocation();
-		try {	
-			URL locationUrl = new URL(location);
-			Parser parser = UPnP.getXMLParser();
-			Node rootNode = parser.parse(locationUrl);
-			Device rootDev = getDevice(rootNode);
+		if (updateDevice(ssdpPacket) == true)
+			return;
+		
+		if (reinstateDevice(ssdpPacket) == true)
+			return;
+		
+		getDescriptionFetcher().fetch(ssdpPacket);
+	}
+
+	////////////////////////////////////////////////
+	//	Removed Device
+	////////////////////////////////////////////////
+
+	private final static int MAX_REMOVED_DEVICES = 256;
+	
+	@SuppressWarnings("serial")
+	private Map<String, Device> removedDevMap = new LinkedHashMap<String, Device>() {
+		protected boolean removeEldestEntry(Map.Entry<String, Device> eldest) {
+			return (MAX_REMOVED_DEVICES < size()) ? true : false;
+		}
+	};
+	
+	private void addRemovedDevice(Device dev)
+	{
+		if (dev.getConfigId() < 0)
+			return;
+		synchronized (removedDevMap) {
+			removedDevMap.put(dev.getUDN(), dev);
+		}
+	}
+	
+	private Device takeRemovedDevice(String udn)
+	{
+		synchronized (removedDevMap) {
+			return removedDevMap.remove(udn);
+		}
+	}
+	
+	/**
+	 * Adds a removed device again without fetching the description when it comes
+	 * back with the same CONFIGID.UPNP.ORG.
+	 */
+	private boolean reinstateDevice(SSDPPacket ssdpPacket)
+	{
+		int configId = ssdpPacket.getConfigId();
+		if (configId < 0)
+			return false;
+		Device dev = takeRemovedDevice(USN.getUDN(ssdpPacket.getUSN()));
+		if (dev == null)
+			return false;
+		if (dev.getConfigId() != configId)
+			return false;
+		int bootId = ssdpPacket.getBootId();
+		if (bootId != dev.getBootId())
+			invalidateSubscriptions(dev);
+		descriptionReceived(ssdpPacket, dev.getRootNode());
+		return true;
+	}
+
+	/**
+	 * Called by the DescriptionFetcher when the description of a new root device has been retrieved.
+	 */
+	public void descriptionReceived(SSDPPacket ssdpPacket, Node rootNode)
+	{
+		Device rootDev;
+		synchronized (this) {
+			// The device may have been added through another location while the description was fetched.
+			if (updateDevice(ssdpPacket) == true)
+				return;
+			rootDev = getDevice(rootNode);
 			if (rootDev == null)
 				return;
 			rootDev.setSSDPPacket(ssdpPacket);
-			addDevice(rootNode);
-
-			// Thanks for Oliver Newell (2004/10/16)
-			// After node is added, invoke the AddDeviceListener to notify high-level 
-			// control point application that a new device has been added. (The 
-			// control point application must implement the DeviceChangeListener interface
-			// to receive the notifications)
-			performAddDeviceListener( rootDev );
-		}
-		catch (MalformedURLException me) {
-			Debug.warning(ssdpPacket.toString());
-			Debug.warning(me);
+			rootDev.setBootId(ssdpPacket.getBootId());
+			rootDev.setConfigId(ssdpPacket.getConfigId());
+			takeRemovedDevice(rootDev.getUDN());
+			DescriptionCache cache = getDescriptionCache();
+			if (cache != null)
+				rootDev.setDescriptionCache(cache);
+			devRegistry.add(rootDev);
+			scheduleExpiry(rootDev);
 		}
-		catch (ParserException pe) {
-			Debug.warning(ssdpPacket.toString());
-			Debug.warning(pe);
+
+		// Thanks for Oliver Newell (2004/10/16)
+		// After node is added, invoke the AddDeviceListener to notify high-level 
+		// control point application that a new device has been added. (The 
+		// control point application must implement the DeviceChangeListener interface
+		// to receive the notifications)
+		performAddDeviceListener( rootDev );
+	}
+
+	/**
+	 * Called by the DescriptionFetcher when the description of a known device has changed.
+	 * The device is removed and added again with the new description. The subscriptions
+	 * are kept unless the device has been rebooted.
+	 */
+	public void descriptionChanged(SSDPPacket ssdpPacket, Node rootNode)
+	{
+		String udn = USN.getUDN(ssdpPacket.getUSN());
+		Device oldDev = devRegistry.getRootDevice(udn);
+		Device newDev = getDevice(rootNode);
+		if (oldDev != null && newDev != null) {
+			int bootId = ssdpPacket.getBootId();
+			if (bootId < 0 || bootId == oldDev.getBootId())
+				transferSubscriptions(oldDev, newDev);
 		}
+		removeDevice(udn);
+		takeRemovedDevice(udn);
+		descriptionReceived(ssdpPacket, rootNode);
 	}
 
 	private Device getDevice(Node rootNode)
@@ -287,61 +531,84 @@ public class ControlPoint implements HTTPRequestListener
 		return new Device(rootNode, devNode);
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * Returns the root devices at this moment. The list is a snapshot which isn't
+	 * changed when the devices are added or removed later.
+	 */
 	public DeviceList getDeviceList()
 	{
-		DeviceList devList = new DeviceList();
-		int nRoots = devNodeList.size();
-		for (int n=0; n<nRoots; n++) {
-			Node rootNode = devNodeList.getNode(n);
-			Device dev = getDevice(rootNode);
-			if (dev == null)
-				continue;
-			devList.add(dev);
-		} 
-		return devList;
+		return devRegistry.getDeviceList();
 	}
 
 	public Device getDevice(String name)
 	{
-		int nRoots = devNodeList.size();
-		for (int n=0; n<nRoots; n++) {
-			Node rootNode = devNodeList.getNode(n);
-			Device dev = getDevice(rootNode);
-			if (dev == null)
-				continue;
-			if (dev.isDevice(name) == true)
-				return dev;
-			Device cdev = dev.getDevice(name);
+		if (name == null)
+			return null;
+		
+		Device dev = devRegistry.getDevice(name);
+		if (dev != null)
+			return dev;
+		Device devs[] = devRegistry.getDevicesByType(name);
+		if (0 < devs.length)
+			return devs[0];
+		dev = devRegistry.getDeviceByFriendlyName(name);
+		if (dev != null)
+			return dev;
+		
+		// The name may be a suffix match of Device::isDevice() such as a USN.
+		Device roots[] = devRegistry.getRootDevices();
+		for (int n=0; n<roots.length; n++) {
+			if (roots[n].isDevice(name) == true)
+				return roots[n];
+			Device cdev = roots[n].getDevice(name);
 			if (cdev != null)
 				return cdev;
 		} 
 		return null;
 	}
 
-	public boolean hasDevice(String name)
+	/**
+	 * Returns the root and embedded devices of the specified deviceType.
+	 */
+	public Device[] getDevices(String deviceType)
 	{
-		return (getDevice(name) != null) ? true : false;
+		return devRegistry.getDevicesByType(deviceType);
 	}
 
-	private void removeDevice(Node rootNode)
+	/**
+	 * Returns the services of the specified serviceType in all devices.
+	 */
+	public Service[] getServices(String serviceType)
 	{
-		// Thanks for Oliver Newell (2004/10/16)
-		// Invoke device removal listener prior to actual removal so Device node 
-		// remains valid for the duration of the listener (application may want
-		// to access the node)
-		Device dev = getDevice(rootNode);
-		if( dev != null && dev.isRootDevice() )
-			performRemoveDeviceListener( dev );
-	    
-		devNodeList.remove(rootNode);
+		return devRegistry.getServicesByType(serviceType);
+	}
+
+	public boolean hasDevice(String name)
+	{
+		return (getDevice(name) != null) ? true : false;
 	}
 
 	protected void removeDevice(Device dev)
 	{
 		if (dev == null)
 			return;
-		removeDevice(dev.getRootNode());
+		Device rootDev = dev.getRootDevice();
+		if (rootDev == null)
+			return;
+		rootDev = devRegistry.getRootDevice(rootDev.getUDN());
+		if (rootDev == null)
+			return;
+		
+		// Thanks for Oliver Newell (2004/10/16)
+		// Invoke device removal listener prior to actual removal so Device node 
+		// remains valid for the duration of the listener (application may want
+		// to access the node)
+		performRemoveDeviceListener( rootDev );
+		
+		expiryWheel.cancel(rootDev.getUDN());
+		rehydratedDevMap.remove(rootDev.getUDN());
+		if (devRegistry.remove(rootDev.getUDN()) != null)
+			addRemovedDevice(rootDev);
 	}
 	
 	protected void removeDevice(String name)
@@ -359,28 +626,198 @@ public class ControlPoint implements HTTPRequestListener
 		removeDevice(udn);
 	}
 	
+	////////////////////////////////////////////////
+	//	Action Fan-Out
+	////////////////////////////////////////////////
+
+	private ActionFanOut actionFanOut = new ActionFanOut();
+
+	public void setActionFanOut(ActionFanOut fanOut)
+	{
+		actionFanOut = fanOut;
+	}
+
+	public ActionFanOut getActionFanOut()
+	{
+		return actionFanOut;
+	}
+
+	/**
+	 * Invokes the action on the services of the specified serviceType in all devices concurrently.
+	 * @param timeout The time in milliseconds until all the results are returned.
+	 * @param listener The listener called with each result as it completes, or null.
+	 * @see ActionFanOut
+	 */
+	public ActionBatch invokeAction(String serviceType, String actionName, ArgumentList argList, long timeout, ActionResultListener listener)
+	{
+		Service services[] = getServices(serviceType);
+		return getActionFanOut().invoke(services, actionName, argList, timeout, listener);
+	}
+
+	/**
+	 * Invokes the action on the services selected from all devices concurrently.
+	 * @param timeout The time in milliseconds until all the results are returned.
+	 * @param listener The listener called with each result as it completes, or null.
+	 * @see ActionFanOut
+	 */
+	public ActionBatch invokeAction(ServiceSelector selector, String actionName, ArgumentList argList, long timeout, ActionResultListener listener)
+	{
+		Vector<Service> selectedServices = new Vector<Service>();
+		DeviceList devList = getDeviceList();
+		int devCnt = devList.size();
+		for (int n=0; n<devCnt; n++)
+			selectServices(devList.getDevice(n), selector, selectedServices);
+		Service services[] = selectedServices.toArray(new Service[0]);
+		return getActionFanOut().invoke(services, actionName, argList, timeout, listener);
+	}
+
+	private static void selectServices(Device dev, ServiceSelector selector, Vector<Service> selectedServices)
+	{
+		ServiceList serviceList = dev.getServiceList();
+		int serviceCnt = serviceList.size();
+		for (int n=0; n<serviceCnt; n++) {
+			Service service = serviceList.getService(n);
+			if (selector.isSelected(service) == true)
+				selectedServices.add(service);
+		}
+		DeviceList childDevList = dev.getDeviceList();
+		int childDevCnt = childDevList.size();
+		for (int n=0; n<childDevCnt; n++)
+			selectServices(childDevList.getDevice(n), selector, selectedServices);
+	}
+
+	////////////////////////////////////////////////
+	//	Description Fetcher
+	////////////////////////////////////////////////
+
+	private DescriptionFetcher descriptionFetcher;
+
+	public void setDescriptionFetcher(DescriptionFetcher fetcher)
+	{
+		descriptionFetcher = fetcher;
+	}
+
+	public DescriptionFetcher getDescriptionFetcher()
+	{
+		return descriptionFetcher;
+	}
+
+	/**
+	 * Enables to retrieve the SCPDs of a new device in parallel before the device is added,
+	 * so that DeviceChangeListener::deviceAdded() is called when all services are ready.
+	 * The SCPDs are retrieved lazily when the services are accessed by default.
+	 */
+	public void setSCPDPrefetchEnabled(boolean flag)
+	{
+		getDescriptionFetcher().setSCPDPrefetchEnabled(flag);
+	}
+
+	public boolean isSCPDPrefetchEnabled()
+	{
+		return getDescriptionFetcher().isSCPDPrefetchEnabled();
+	}
+
+	////////////////////////////////////////////////
+	//	Description Cache
+	////////////////////////////////////////////////
+
+	private DescriptionCache descriptionCache = null;
+	// The locations of the rehydrated devices which haven't been confirmed by SSDP or by the revalidation.
+	private Map<String, String> rehydratedDevMap = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * Sets a persistent cache for the device descriptions and the SCPDs.
+	 * The cached devices are added at start() and revalidated in the background.
+	 * Use <code>null</code> to disable the cache, which is the default.
+	 */
+	public void setDescriptionCache(DescriptionCache cache)
+	{
+		descriptionCache = cache;
+	}
+
+	public DescriptionCache getDescriptionCache()
+	{
+		return descriptionCache;
+	}
+
+	private void loadDescriptionCache()
+	{
+		DescriptionCache cache = getDescriptionCache();
+		if (cache == null)
+			return;
+		DescriptionCache.Entry entries[] = cache.getEntries();
+		for (int n=0; n<entries.length; n++) {
+			DescriptionCache.Entry entry = entries[n];
+			SSDPPacket ssdpPacket = entry.getSSDPPacket();
+			// A rehydrated device expires soon unless it is confirmed by SSDP or by the revalidation.
+			ssdpPacket.setTimeStamp(System.currentTimeMillis() - (ssdpPacket.getLeaseTime() * 1000));
+			try {
+				Node rootNode = UPnP.getXMLParser().parse(new ByteArrayInputStream(entry.getDescription()));
+				rehydratedDevMap.put(entry.getUDN(), entry.getLocation());
+				descriptionReceived(ssdpPacket, rootNode);
+				getDescriptionFetcher().revalidate(ssdpPacket, entry.getDescription());
+			}
+			catch (ParserException e) {
+				Debug.warning(e);
+				cache.remove(entry.getLocation(), entry.getUDN());
+			}
+		}
+	}
+
 	////////////////////////////////////////////////
 	//	Expired Device
 	////////////////////////////////////////////////
 	
+	private final static long EXPIRY_TICK_TIME = 1000;
+	private final static int EXPIRY_WHEEL_SLOTS = 512;
+	
 	private Disposer deviceDisposer;
 	private long expiredDeviceMonitoringInterval;
+	private TimerWheel<String> expiryWheel = new TimerWheel<String>(EXPIRY_TICK_TIME, EXPIRY_WHEEL_SLOTS);
+	
+	/**
+	 * Sets the deadline of the root device when Device::isExpired() becomes true.
+	 */
+	private void scheduleExpiry(Device rootDev)
+	{
+		long leaseTime = rootDev.getLeaseTime() + UPnP.DEFAULT_EXPIRED_DEVICE_EXTRA_TIME + 1;
+		expiryWheel.schedule(rootDev.getUDN(), rootDev.getTimeStamp() + (leaseTime * 1000));
+	}
 	
 	public void removeExpiredDevices()
 	{
-		DeviceList devList = getDeviceList();
-		int devCnt = devList.size();
-		Device dev[] = new Device[devCnt];
-		for (int n=0; n<devCnt; n++)
-			dev[n] = devList.getDevice(n);
-		for (int n=0; n<devCnt; n++) {
-			if (dev[n].isExpired() == true) {
-				Debug.message("Expired device = " + dev[n].getFriendlyName());
-				removeDevice(dev[n]);
+		Vector<String> udnList = expiryWheel.expire(System.currentTimeMillis());
+		int udnCnt = udnList.size();
+		for (int n=0; n<udnCnt; n++) {
+			Device dev = devRegistry.getRootDevice(udnList.get(n));
+			if (dev == null)
+				continue;
+			if (dev.isExpired() == false) {
+				scheduleExpiry(dev);
+				continue;
 			}
+			Debug.message("Expired device = " + dev.getFriendlyName());
+			String rehydratedLocation = rehydratedDevMap.remove(dev.getUDN());
+			DescriptionCache cache = getDescriptionCache();
+			// The rehydrated device has never been confirmed, don't add it again at the next start.
+			if (rehydratedLocation != null && cache != null)
+				cache.remove(rehydratedLocation, dev.getUDN());
+			removeDevice(dev);
 		}		
 	}
 	
+	/**
+	 * Returns the interval to check the expired devices in milliseconds,
+	 * which is the tick time of the lease deadlines unless a shorter interval is set.
+	 */
+	public long getExpiredDeviceCheckInterval()
+	{
+		long interval = getExpiredDeviceMonitoringInterval() * 1000;
+		if (interval <= 0 || EXPIRY_TICK_TIME < interval)
+			interval = EXPIRY_TICK_TIME;
+		return interval;
+	}
+	
 	public void setExpiredDeviceMonitoringInterval(long interval)
 	{
 		expiredDeviceMonitoringInterval = interval;
@@ -506,18 +943,59 @@ public class ControlPoint implements HTTPRequestListener
 	{
 		if (packet.isRootDevice() == true) {
 			if (packet.isAlive() == true){
-				addDevice(packet);
+				if (updateDevice(packet) == false)
+					addDevice(packet);
 			}else if (packet.isByeBye() == true){ 
 				removeDevice(packet);
+			}else if (packet.isUpdate() == true){ 
+				updateBootId(packet);
 			}
 		}
 		performNotifyListener(packet);
 	}
 
+	/**
+	 * Called for the multicast event messages of UPnP Device Architecture 1.1, which are
+	 * delivered to the event listeners in the order of SEQ with the USN instead of the SID.
+	 */
+	public void multicastEventReceived(SSDPPacket packet)
+	{
+		if (packet.isPropChange() == false)
+			return;
+		String usn = packet.getUSN();
+		String svcid = packet.getSVCID();
+		long seq = packet.getSEQ();
+		if (usn == null || usn.length() <= 0 || seq < 0)
+			return;
+		Service service = getMulticastService(usn, svcid);
+		PropertyList props = null;
+		if ((service != null && isEventedValueCacheEnabled() == true) || hasEventListener(service) == true) {
+			MulticastNotifyRequest notifyReq = new MulticastNotifyRequest();
+			notifyReq.setContent(packet.getContent());
+			props = notifyReq.getPropertyList();
+		}
+		getEventDispatcher().dispatchMulticast(usn, svcid, seq, props);
+	}
+
+	/**
+	 * Returns the service of the multicast event, or null if the device isn't known.
+	 */
+	public Service getMulticastService(String usn, String svcid)
+	{
+		if (svcid == null || svcid.length() <= 0)
+			return null;
+		Device dev = getDevice(USN.getUDN(usn));
+		if (dev == null)
+			return null;
+		return dev.getService(svcid);
+	}
+
 	public void searchResponseReceived(SSDPPacket packet)
 	{
-		if (packet.isRootDevice() == true)
-			addDevice(packet);
+		if (packet.isRootDevice() == true) {
+			if (updateDevice(packet) == false)
+				addDevice(packet);
+		}
 		performSearchResponseListener(packet);
 	}
 
@@ -573,18 +1051,16 @@ public class ControlPoint implements HTTPRequestListener
 		
 		// Thanks for Giordano Sassaroli <sassarol@cefriel.it> (09/08/03)
 		if (httpReq.isNotifyRequest() == true) {
+			// The publisher may drop the subscription when the NOTIFY isn't answered soon.
+			httpReq.returnOK();
 			NotifyRequest notifyReq = new NotifyRequest(httpReq);
 			String uuid = notifyReq.getSID();
 			long seq = notifyReq.getSEQ();
-			PropertyList props = notifyReq.getPropertyList();
-			int propCnt = props.size();
-			for (int n = 0; n < propCnt; n++) {
-				Property prop = props.getProperty(n);
-				String varName = prop.getName();
-				String varValue = prop.getValue();
-				performEventListener(uuid, seq, varName, varValue);
-			}
-			httpReq.returnOK();
+			Service service = getSubscriberService(uuid);
+			PropertyList props = null;
+			if ((service != null && isEventedValueCacheEnabled() == true) || hasEventListener(service) == true)
+				props = notifyReq.getPropertyList();
+			getEventDispatcher().dispatch(uuid, seq, props);
 			return;
  		}
 		
@@ -615,6 +1091,281 @@ public class ControlPoint implements HTTPRequestListener
 			listener.eventNotifyReceived(uuid, seq, name, value);
 		}
 	}
+
+	public void performEventListener(String uuid, long seq, PropertyList props)
+	{
+		performEventListener(uuid, seq, getSubscriberService(uuid), props);
+	}
+
+	public void performMulticastEventListener(String usn, String svcid, long seq, PropertyList props)
+	{
+		performEventListener(usn, seq, getMulticastService(usn, svcid), props);
+	}
+
+	private void performEventListener(String uuid, long seq, Service service, PropertyList props)
+	{
+		if (service != null && isEventedValueCacheEnabled() == true)
+			updateEventedValues(service, seq, props);
+
+		if (0 < propertySetListenerList.size()) {
+			PropertySet propSet = new PropertySet(uuid, seq, service, props);
+			performPropertySetListener(propSet);
+		}
+
+		int propCnt = props.size();
+		for (int n = 0; n < propCnt; n++) {
+			Property prop = props.getProperty(n);
+			String varName = prop.getName();
+			String varValue = prop.getValue();
+			performEventListener(uuid, seq, varName, varValue);
+		}
+	}
+
+	/**
+	 * Returns true if any listener receives the events of the service.
+	 * @param service The subscribed service, or null if it isn't known.
+	 */
+	public boolean hasEventListener(Service service)
+	{
+		if (0 < eventListenerList.size())
+			return true;
+		int listenerSize = propertySetListenerList.size();
+		for (int n=0; n<listenerSize; n++) {
+			PropertySetRegistration reg = (PropertySetRegistration)propertySetListenerList.get(n);
+			if (reg.isServiceMatched(service) == true)
+				return true;
+		}
+		return false;
+	}
+
+	////////////////////////////////////////////////
+	//	PropertySet Listener 
+	////////////////////////////////////////////////
+
+	private static class PropertySetRegistration
+	{
+		PropertySetListener listener;
+		String serviceType;
+		Set<String> varNames;
+
+		PropertySetRegistration(PropertySetListener listener, String serviceType, String varNames[])
+		{
+			this.listener = listener;
+			this.serviceType = serviceType;
+			if (varNames != null)
+				this.varNames = new HashSet<String>(Arrays.asList(varNames));
+		}
+
+		boolean isServiceMatched(Service service)
+		{
+			if (serviceType == null)
+				return true;
+			if (service == null)
+				return false;
+			return serviceType.equals(service.getServiceType());
+		}
+	}
+
+	private ListenerList propertySetListenerList = new ListenerList();
+
+	/**
+	 * Adds a listener which receives the properties of each event message at once.
+	 * @param serviceType The serviceType of the events to receive, or null to receive all events.
+	 * @param varNames The names of the state variables to receive, or null to receive all variables.
+	 *        The listener isn't called for the events which include none of them.
+	 */
+	public void addPropertySetListener(PropertySetListener listener, String serviceType, String varNames[])
+	{
+		propertySetListenerList.add(new PropertySetRegistration(listener, serviceType, varNames));
+	}
+
+	public void addPropertySetListener(PropertySetListener listener, String serviceType)
+	{
+		addPropertySetListener(listener, serviceType, null);
+	}
+
+	public void addPropertySetListener(PropertySetListener listener)
+	{
+		addPropertySetListener(listener, null, null);
+	}
+
+	public void removePropertySetListener(PropertySetListener listener)
+	{
+		synchronized (propertySetListenerList) {
+			for (int n=propertySetListenerList.size()-1; 0<=n; n--) {
+				PropertySetRegistration reg = (PropertySetRegistration)propertySetListenerList.get(n);
+				if (reg.listener == listener)
+					propertySetListenerList.remove(n);
+			}
+		}
+	}
+
+	public void performPropertySetListener(PropertySet propSet)
+	{
+		Object regs[] = propertySetListenerList.toArray();
+		for (int n=0; n<regs.length; n++) {
+			PropertySetRegistration reg = (PropertySetRegistration)regs[n];
+			if (reg.isServiceMatched(propSet.getService()) == false)
+				continue;
+			PropertySet regPropSet = propSet;
+			if (reg.varNames != null)
+				regPropSet = propSet.filter(reg.varNames);
+			if (regPropSet == null)
+				continue;
+			reg.listener.propertySetReceived(regPropSet);
+		}
+	}
+
+	private ListenerList eventGapListenerList = new ListenerList();
+	 	
+	public void addEventGapListener(EventGapListener listener)
+	{
+		eventGapListenerList.add(listener);
+	}		
+
+	public void removeEventGapListener(EventGapListener listener)
+	{
+		eventGapListenerList.remove(listener);
+	}		
+
+	public void performEventGapListener(String uuid, long expectedSeq, long receivedSeq)
+	{
+		int listenerSize = eventGapListenerList.size();
+		for (int n=0; n<listenerSize; n++) {
+			EventGapListener listener = (EventGapListener)eventGapListenerList.get(n);
+			listener.eventNotifyMissed(uuid, expectedSeq, receivedSeq);
+		}
+	}
+
+	////////////////////////////////////////////////
+	//	EventedValue Cache
+	////////////////////////////////////////////////
+
+	private boolean eventedValueCacheEnabled = true;
+
+	/**
+	 * Enables the cache of the values received in the event messages, which are read by
+	 * Service.getEventedValue() and StateVariable.getValue() of the subscribed services.
+	 * The StateChangeListeners are notified only when the cache is enabled.
+	 */
+	public void setEventedValueCacheEnabled(boolean flag)
+	{
+		eventedValueCacheEnabled = flag;
+	}
+
+	public boolean isEventedValueCacheEnabled()
+	{
+		return eventedValueCacheEnabled;
+	}
+
+	private void updateEventedValues(Service service, long seq, PropertyList props)
+	{
+		long now = System.currentTimeMillis();
+		boolean hasStateChangeListener = (0 < stateChangeListenerList.size()) ? true : false;
+		int propCnt = props.size();
+		for (int n = 0; n < propCnt; n++) {
+			Property prop = props.getProperty(n);
+			EventedValue newValue = new EventedValue(prop.getName(), prop.getValue(), seq, now);
+			EventedValue oldValue = service.setEventedValue(newValue);
+			if (hasStateChangeListener == false || newValue.hasSameValue(oldValue) == true)
+				continue;
+			performStateChangeListener(service, oldValue, newValue);
+		}
+	}
+
+	////////////////////////////////////////////////
+	//	StateChange Listener 
+	////////////////////////////////////////////////
+
+	private static class StateChangeRegistration
+	{
+		StateChangeListener listener;
+		String udn;
+		String serviceId;
+		String varName;
+
+		StateChangeRegistration(StateChangeListener listener, Service service, String varName)
+		{
+			this.listener = listener;
+			if (service != null) {
+				Device dev = service.getDevice();
+				udn = (dev != null) ? dev.getUDN() : null;
+				serviceId = service.getServiceID();
+			}
+			this.varName = varName;
+		}
+
+		boolean isMatched(Service service, String name)
+		{
+			if (varName != null && varName.equals(name) == false)
+				return false;
+			if (serviceId == null)
+				return true;
+			if (serviceId.equals(service.getServiceID()) == false)
+				return false;
+			Device dev = service.getDevice();
+			if (udn == null || dev == null)
+				return (udn == null && dev == null) ? true : false;
+			return udn.equals(dev.getUDN());
+		}
+	}
+
+	private ListenerList stateChangeListenerList = new ListenerList();
+
+	/**
+	 * Adds a listener which is notified when an event message changes a cached value.
+	 * The service is matched by the UDN of the device and the serviceId, so the listener
+	 * is kept after the description of the device is fetched again.
+	 * @param service The service to listen to, or null to listen to all services.
+	 * @param varName The name of the state variable to listen to, or null to listen to all variables.
+	 */
+	public void addStateChangeListener(StateChangeListener listener, Service service, String varName)
+	{
+		stateChangeListenerList.add(new StateChangeRegistration(listener, service, varName));
+	}
+
+	public void addStateChangeListener(StateChangeListener listener)
+	{
+		addStateChangeListener(listener, null, null);
+	}
+
+	public void removeStateChangeListener(StateChangeListener listener)
+	{
+		synchronized (stateChangeListenerList) {
+			for (int n=stateChangeListenerList.size()-1; 0<=n; n--) {
+				StateChangeRegistration reg = (StateChangeRegistration)stateChangeListenerList.get(n);
+				if (reg.listener == listener)
+					stateChangeListenerList.remove(n);
+			}
+		}
+	}
+
+	public void performStateChangeListener(Service service, EventedValue oldValue, EventedValue newValue)
+	{
+		Object regs[] = stateChangeListenerList.toArray();
+		for (int n=0; n<regs.length; n++) {
+			StateChangeRegistration reg = (StateChangeRegistration)regs[n];
+			if (reg.isMatched(service, newValue.getName()) == false)
+				continue;
+			reg.listener.stateVariableChanged(service, oldValue, newValue);
+		}
+	}
+
+	////////////////////////////////////////////////
+	//	EventDispatcher
+	////////////////////////////////////////////////
+
+	private EventDispatcher eventDispatcher;
+
+	public void setEventDispatcher(EventDispatcher dispatcher)
+	{
+		eventDispatcher = dispatcher;
+	}
+
+	public EventDispatcher getEventDispatcher()
+	{
+		return eventDispatcher;
+	}
 	
 	////////////////////////////////////////////////
 	//	Subscription 
@@ -652,12 +1403,11 @@ public class ControlPoint implements HTTPRequestListener
 		subReq.setSubscribeRequest(service, getEventSubCallbackURL(ifAddress), timeout);
 		SubscriptionResponse subRes = subReq.post();
 		if (subRes.isSuccessful() == true) {
-			service.setSID(subRes.getSID());
-			service.setTimeout(subRes.getTimeout());
+			setSID(service, subRes.getSID(), subRes.getTimeout());
 			return true;
 			
 		}
-		service.clearSID();
+		clearSID(service);
 		return false;
 	}
 
@@ -676,14 +1426,37 @@ public class ControlPoint implements HTTPRequestListener
 		if (Debug.isOn() == true)
 			subRes.print();	
 		if (subRes.isSuccessful() == true) {
-			service.setSID(subRes.getSID());
-			service.setTimeout(subRes.getTimeout());
+			setSID(service, subRes.getSID(), subRes.getTimeout());
 			return true;
 		}
-		service.clearSID();
+		clearSID(service);
 		return false;
 	}
 
+	/**
+	 * Renews the subscription of the service. Unlike subscribe(), the SID is kept
+	 * when the renewal fails so that the renewal can be retried.
+	 */
+	public SubscriptionResponse renewSubscription(Service service, long timeout)
+	{
+		SubscriptionRequest subReq = new SubscriptionRequest();
+		subReq.setRenewRequest(service, service.getSID(), timeout);
+		SubscriptionResponse subRes = subReq.post();
+		if (subRes.isSuccessful() == true)
+			setSID(service, subRes.getSID(), subRes.getTimeout());
+		return subRes;
+	}
+
+	/**
+	 * Drops the current SID of the service and subscribes it again.
+	 */
+	public boolean resubscribe(Service service, long timeout)
+	{
+		if (service.hasSID() == true)
+			clearSID(service);
+		return subscribe(service, timeout);
+	}
+
 	public boolean subscribe(Service service, String uuid)
 	{
 		return subscribe(service, uuid, Subscription.INFINITE_VALUE);
@@ -702,12 +1475,40 @@ public class ControlPoint implements HTTPRequestListener
 		subReq.setUnsubscribeRequest(service);
 		SubscriptionResponse subRes = subReq.post();
 		if (subRes.isSuccessful() == true) {
-			service.clearSID();
+			clearSID(service);
 			return true;
 		}
 		return false;
 	}
 
+	private void setSID(Service service, String sid, long timeout)
+	{
+		String oldSID = service.getSID();
+		RenewScheduler renewScheduler = getRenewScheduler();
+		if (oldSID != null && oldSID.equals(sid) == false) {
+			devRegistry.removeSubscriberService(oldSID, service);
+			getEventDispatcher().remove(oldSID);
+			if (renewScheduler != null)
+				renewScheduler.cancel(oldSID);
+		}
+		service.setSID(sid);
+		service.setTimeout(timeout);
+		devRegistry.addSubscriberService(service);
+		if (renewScheduler != null)
+			renewScheduler.schedule(sid, timeout);
+	}
+	
+	private void clearSID(Service service)
+	{
+		RenewScheduler renewScheduler = getRenewScheduler();
+		if (renewScheduler != null)
+			renewScheduler.cancel(service.getSID());
+		devRegistry.removeSubscriberService(service.getSID(), service);
+		getEventDispatcher().remove(service.getSID());
+		service.clearSID();
+		service.clearEventedValues();
+	}
+
 	public void unsubscribe(Device device)
 	{
 		ServiceList serviceList = device.getServiceList();
@@ -742,15 +1543,7 @@ public class ControlPoint implements HTTPRequestListener
 
 	public Service getSubscriberService(String uuid)
 	{
-		DeviceList devList = getDeviceList();
-		int devCnt = devList.size();
-		for (int n=0; n<devCnt; n++) {
-			Device dev = devList.getDevice(n);
-			Service service = dev.getSubscriberService(uuid);
-			if (service != null)
-				return service;
-		}		
-		return null;
+		return devRegistry.getSubscriberService(uuid);
 	}
 	
 	////////////////////////////////////////////////
@@ -809,6 +1602,36 @@ public class ControlPoint implements HTTPRequestListener
 	{
 		return renewSubscriber;	
 	}
+
+	private volatile RenewScheduler renewScheduler;
+
+	public void setRenewScheduler(RenewScheduler scheduler)
+	{
+		renewScheduler = scheduler;
+	}
+	
+	public RenewScheduler getRenewScheduler()
+	{
+		return renewScheduler;	
+	}
+
+	private void scheduleRenewals(Device dev)
+	{
+		RenewScheduler renewScheduler = getRenewScheduler();
+		if (renewScheduler == null)
+			return;
+		ServiceList serviceList = dev.getServiceList();
+		int serviceCnt = serviceList.size();
+		for (int n=0; n<serviceCnt; n++) {
+			Service service = serviceList.getService(n);
+			if (service.isSubscribed() == true)
+				renewScheduler.schedule(service.getSID(), service.getTimeout());
+		}
+		DeviceList cdevList = dev.getDeviceList();
+		int cdevCnt = cdevList.size();
+		for (int n=0; n<cdevCnt; n++)
+			scheduleRenewals(cdevList.getDevice(n));
+	}
 	
 	////////////////////////////////////////////////
 	//	run	
@@ -818,6 +1641,12 @@ public class ControlPoint implements HTTPRequestListener
 	{
 		stop();
 		
+		////////////////////////////////////////
+		// Event Dispatcher
+		////////////////////////////////////////
+		
+		getEventDispatcher().start();
+		
 		////////////////////////////////////////
 		// HTTP Server
 		////////////////////////////////////////
@@ -842,9 +1671,21 @@ public class ControlPoint implements HTTPRequestListener
 		SSDPNotifySocketList ssdpNotifySocketList = getSSDPNotifySocketList();
 		if (ssdpNotifySocketList.open() == false)
 			return false;
+		getDescriptionFetcher().start();
+		loadDescriptionCache();
+		
 		ssdpNotifySocketList.setControlPoint(this);			
 		ssdpNotifySocketList.start();
 		
+		////////////////////////////////////////
+		// Multicast Event Socket
+		////////////////////////////////////////
+		
+		MulticastEventSocketList multicastEventSocketList = getMulticastEventSocketList();
+		multicastEventSocketList.open();
+		multicastEventSocketList.setControlPoint(this);
+		multicastEventSocketList.start();
+		
 		////////////////////////////////////////
 		// SeachResponse Socket
 		////////////////////////////////////////
@@ -862,6 +1703,13 @@ public class ControlPoint implements HTTPRequestListener
 		ssdpSearchResponseSocketList.setControlPoint(this);
 		ssdpSearchResponseSocketList.start();
 
+		////////////////////////////////////////
+		// Interface Monitor
+		////////////////////////////////////////
+		
+		if (binds == null)
+			HostInterface.addInterfaceListener(this);
+		
 		////////////////////////////////////////
 		// search root devices
 		////////////////////////////////////////
@@ -881,9 +1729,10 @@ public class ControlPoint implements HTTPRequestListener
 		////////////////////////////////////////
 		
 		if (isNMPRMode() == true) {
-			RenewSubscriber renewSub = new RenewSubscriber(this);
-			setRenewSubscriber(renewSub);
-			renewSub.start();
+			setRenewScheduler(new RenewScheduler(this));
+			Device rootDevs[] = devRegistry.getRootDevices();
+			for (int n=0; n<rootDevs.length; n++)
+				scheduleRenewals(rootDevs[n]);
 		}
 		
 		return true;
@@ -901,6 +1750,14 @@ public class ControlPoint implements HTTPRequestListener
 	
 	public boolean stop()
 	{ 
+		HostInterface.removeInterfaceListener(this);
+		
+		RenewScheduler renewScheduler = getRenewScheduler();
+		if (renewScheduler != null) {
+			renewScheduler.stop();
+			setRenewScheduler(null);
+		}
+
 		unsubscribe();
 		
 		SSDPNotifySocketList ssdpNotifySocketList = getSSDPNotifySocketList();
@@ -908,6 +1765,10 @@ public class ControlPoint implements HTTPRequestListener
 		ssdpNotifySocketList.close();
 		ssdpNotifySocketList.clear();
 		
+		MulticastEventSocketList multicastEventSocketList = getMulticastEventSocketList();
+		multicastEventSocketList.stop();
+		multicastEventSocketList.close();
+		
 		SSDPSearchResponseSocketList ssdpSearchResponseSocketList = getSSDPSearchResponseSocketList();
 		ssdpSearchResponseSocketList.stop();
 		ssdpSearchResponseSocketList.close();
@@ -918,6 +1779,24 @@ public class ControlPoint implements HTTPRequestListener
 		httpServerList.close();
 		httpServerList.clear();
 			
+		////////////////////////////////////////
+		// Description Fetcher
+		////////////////////////////////////////
+		
+		getDescriptionFetcher().stop();
+		
+		////////////////////////////////////////
+		// Action Fan-Out
+		////////////////////////////////////////
+		
+		getActionFanOut().stop();
+		
+		////////////////////////////////////////
+		// Event Dispatcher
+		////////////////////////////////////////
+		
+		getEventDispatcher().stop();
+		
 		////////////////////////////////////////
 		// Disposer
 		////////////////////////////////////////
@@ -941,6 +1820,56 @@ public class ControlPoint implements HTTPRequestListener
 		return true;
 	}
 
+	////////////////////////////////////////////////
+	//	HostInterfaceListener
+	////////////////////////////////////////////////
+
+	public void interfaceAdded(String ifAddr)
+	{
+		if (binds != null)
+			return;
+		
+		HTTPServer httpServer = getHTTPServerList().openInterface(ifAddr);
+		if (httpServer != null) {
+			httpServer.addRequestListener(this);
+			httpServer.start();
+		}
+		
+		SSDPNotifySocket ssdpNotifySocket = getSSDPNotifySocketList().openInterface(ifAddr);
+		if (ssdpNotifySocket != null) {
+			ssdpNotifySocket.setControlPoint(this);
+			ssdpNotifySocket.start();
+		}
+		
+		MulticastEventSocket multicastEventSocket = getMulticastEventSocketList().openInterface(ifAddr);
+		if (multicastEventSocket != null) {
+			multicastEventSocket.setControlPoint(this);
+			multicastEventSocket.start();
+		}
+		
+		SSDPSearchResponseSocket ssdpSearchResponseSocket = getSSDPSearchResponseSocketList().openInterface(ifAddr, getSSDPPort());
+		if (ssdpSearchResponseSocket != null) {
+			ssdpSearchResponseSocket.setControlPoint(this);
+			ssdpSearchResponseSocket.start();
+			SSDPSearchRequest msReq = new SSDPSearchRequest(ST.ROOT_DEVICE, getSearchMx());
+			msReq.setLocalAddress(ifAddr);
+			String ssdpAddr = SSDP.ADDRESS;
+			if (HostInterface.isIPv6Address(ifAddr) == true)
+				ssdpAddr = SSDP.getIPv6Address();
+			ssdpSearchResponseSocket.post(ssdpAddr, SSDP.PORT, msReq);
+		}
+	}
+
+	public void interfaceRemoved(String ifAddr)
+	{
+		if (binds != null)
+			return;
+		getSSDPSearchResponseSocketList().closeInterface(ifAddr);
+		getSSDPNotifySocketList().closeInterface(ifAddr);
+		getMulticastEventSocketList().closeInterface(ifAddr);
+		getHTTPServerList().closeInterface(ifAddr);
+	}
+	
 	////////////////////////////////////////////////
 	//	userData
 	////////////////////////////////////////////////
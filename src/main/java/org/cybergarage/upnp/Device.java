@@ -91,6 +91,32 @@
 *		- Added setUserData() and getUserData() to set a user original data object.
 *	03/29/08
 *		- Added isRunning() to know whether the device is running.
+*	10/18/26
+*		- Added setDescriptionCache() and getDescriptionCache() for the ControlPoint.
+*		- Added setBootId(), getBootId(), setConfigId() and getConfigId(), and changed
+*		  announce(), byebye() and postSearchResponse() to send BOOTID.UPNP.ORG and
+*		  CONFIGID.UPNP.ORG.
+*		- Changed to open the sockets and announce on the interface addresses which are
+*		  added while running when no bind addresses are specified.
+*		- Changed setConfigId() to keep -1 for an unknown value, and start() to derive
+*		  the CONFIGID again from a changed description.
+*		- Changed start() to derive the CONFIGID from the SCPDs of the services too.
+*		- Changed getDeviceList(), getServiceList(), getRootDevice() and getParentDevice()
+*		  to reuse the Device and Service objects of the nodes.
+*		- Changed deviceActionControlRecieved() and deviceQueryControlRecieved() to look up
+*		  the action, the arguments and the state variable in the ServiceModel.
+*		- Changed start() and stop() to start and stop the EventNotifier which sends
+*		  the event messages asynchronously, and added getEventNotifier().
+*		- Changed deviceEventNewSubscriptionRecieved() to send the initial event message
+*		  only to the new subscriber.
+*		- Changed deviceEventRenewSubscriptionRecieved() to use Service.renewSubscriber().
+*		- Added postMulticastEvent() which opens the multicast event sockets at the first event,
+*		  and changed stop() to close them.
+*		- Changed stop() to clear the moderation state of the state variables.
+*		- Changed deviceActionControlRecieved() to decode the action requests using
+*		  ActionRequestDecoder instead of the Node tree of the envelope.
+*		- Changed deviceActionControlRecieved() to pass the arguments as an ActionInvocation
+*		  instead of setting them to the shared argument nodes.
 * 
 ******************************************************************/
 
@@ -101,41 +127,52 @@ import java.io.InputStream;
 import java.net.InetAddress;
 import java.net.URI;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Vector;
 
 import org.cybergarage.http.HTTP;
 import org.cybergarage.http.HTTPRequest;
 import org.cybergarage.http.HTTPRequestListener;
 import org.cybergarage.http.HTTPResponse;
+import org.cybergarage.http.HTTPServer;
 import org.cybergarage.http.HTTPServerList;
 import org.cybergarage.http.HTTPStatus;
 import org.cybergarage.net.HostInterface;
+import org.cybergarage.net.HostInterfaceListener;
 import org.cybergarage.soap.SOAPResponse;
+import org.cybergarage.upnp.control.ActionInvocation;
 import org.cybergarage.upnp.control.ActionListener;
 import org.cybergarage.upnp.control.ActionRequest;
+import org.cybergarage.upnp.control.ActionRequestDecoder;
 import org.cybergarage.upnp.control.ActionResponse;
 import org.cybergarage.upnp.control.ControlRequest;
 import org.cybergarage.upnp.control.ControlResponse;
 import org.cybergarage.upnp.control.QueryListener;
 import org.cybergarage.upnp.control.QueryRequest;
 import org.cybergarage.upnp.device.Advertiser;
+import org.cybergarage.upnp.device.DescriptionCache;
 import org.cybergarage.upnp.device.Description;
 import org.cybergarage.upnp.device.InvalidDescriptionException;
 import org.cybergarage.upnp.device.NTS;
 import org.cybergarage.upnp.device.ST;
 import org.cybergarage.upnp.device.SearchListener;
 import org.cybergarage.upnp.device.USN;
+import org.cybergarage.upnp.event.EventNotifier;
 import org.cybergarage.upnp.event.Subscriber;
 import org.cybergarage.upnp.event.Subscription;
 import org.cybergarage.upnp.event.SubscriptionRequest;
 import org.cybergarage.upnp.event.SubscriptionResponse;
 import org.cybergarage.upnp.ssdp.SSDPNotifyRequest;
+import org.cybergarage.upnp.ssdp.MulticastEventSocketList;
 import org.cybergarage.upnp.ssdp.SSDPNotifySocket;
 import org.cybergarage.upnp.ssdp.SSDPPacket;
 import org.cybergarage.upnp.ssdp.SSDPSearchResponse;
 import org.cybergarage.upnp.ssdp.SSDPSearchResponseSocket;
+import org.cybergarage.upnp.ssdp.SSDPSearchSocket;
 import org.cybergarage.upnp.ssdp.SSDPSearchSocketList;
 import org.cybergarage.upnp.xml.DeviceData;
+import org.cybergarage.upnp.xml.WrapperListCache;
 import org.cybergarage.util.Debug;
 import org.cybergarage.util.FileUtil;
 import org.cybergarage.util.Mutex;
@@ -145,7 +182,7 @@ import org.cybergarage.xml.Parser;
 import org.cybergarage.xml.ParserException;
 import org.cybergarage.xml.XML;
 
-public class Device implements HTTPRequestListener, SearchListener
+public class Device implements HTTPRequestListener, SearchListener, HostInterfaceListener
 {
 	////////////////////////////////////////////////
 	//	Constants
@@ -454,7 +491,7 @@ public class Device implements HTTPRequestListener, SearchListener
 		Node devNode = rootNode.getNode(Device.ELEM_NAME);
 		if (devNode == null)
 			return null;
-		return new Device(rootNode, devNode);
+		return getCachedDevice(rootNode, devNode);
 	}
 
 	////////////////////////////////////////////////
@@ -476,7 +513,7 @@ public class Device implements HTTPRequestListener, SearchListener
 		Node aux = null;
 		//<device><deviceList><device>
 		aux = devNode.getParentNode().getParentNode();
-		return new Device(aux);
+		return getCachedDevice(null, aux);
 	}
 	/**
 	 * Add a Service to device without checking for duplicate or syntax error
@@ -535,7 +572,11 @@ public class Device implements HTTPRequestListener, SearchListener
 
 	private DeviceData getDeviceData()
 	{
-		Node node = getDeviceNode();
+		return getDeviceData(getDeviceNode());
+	}
+	
+	private static DeviceData getDeviceData(Node node)
+	{
 		DeviceData userData = (DeviceData)node.getUserData();
 		if (userData == null) {
 			userData = new DeviceData();
@@ -545,6 +586,79 @@ public class Device implements HTTPRequestListener, SearchListener
 		return userData;
 	}
 	
+	////////////////////////////////////////////////
+	//	Wrapper
+	////////////////////////////////////////////////
+
+	private final static Device EMPTY_DEVICES[] = new Device[0];
+	private final static Service EMPTY_SERVICES[] = new Service[0];
+	
+	/**
+	 * Returns the Device object of the device node, which is created once and
+	 * reused as long as it has the same root node.
+	 */
+	static Device getCachedDevice(Node rootNode, Node devNode)
+	{
+		DeviceData data = getDeviceData(devNode);
+		Object wrapper = data.getWrapper();
+		if (wrapper instanceof Device) {
+			Device dev = (Device)wrapper;
+			if (dev.getDeviceNode() == devNode && (rootNode == null || dev.getRootNode() == rootNode))
+				return dev;
+		}
+		Device dev = new Device(rootNode, devNode);
+		data.setWrapper(dev);
+		return dev;
+	}
+	
+	private Device[] getDevices()
+	{
+		Node devListNode = getDeviceNode().getNode(DeviceList.ELEM_NAME);
+		if (devListNode == null)
+			return EMPTY_DEVICES;
+		WrapperListCache cache = getDeviceData().getDeviceListCache();
+		Object cachedDevs[] = cache.get(devListNode);
+		if (cachedDevs != null)
+			return (Device[])cachedDevs;
+		int modCount = devListNode.getModCount();
+		Vector<Device> devList = new Vector<Device>();
+		int nNode = devListNode.getNNodes();
+		for (int n=0; n<nNode; n++) {
+			Node node = devListNode.getNode(n);
+			if (Device.isDeviceNode(node) == false)
+				continue;
+			devList.add(getCachedDevice(null, node));
+		} 
+		Device devs[] = new Device[devList.size()];
+		devList.copyInto(devs);
+		cache.set(devListNode, modCount, devs);
+		return devs;
+	}
+	
+	private Service[] getServices()
+	{
+		Node serviceListNode = getDeviceNode().getNode(ServiceList.ELEM_NAME);
+		if (serviceListNode == null)
+			return EMPTY_SERVICES;
+		WrapperListCache cache = getDeviceData().getServiceListCache();
+		Object cachedServices[] = cache.get(serviceListNode);
+		if (cachedServices != null)
+			return (Service[])cachedServices;
+		int modCount = serviceListNode.getModCount();
+		Vector<Service> serviceList = new Vector<Service>();
+		int nNode = serviceListNode.getNNodes();
+		for (int n=0; n<nNode; n++) {
+			Node node = serviceListNode.getNode(n);
+			if (Service.isServiceNode(node) == false)
+				continue;
+			serviceList.add(Service.getCachedService(node));
+		} 
+		Service services[] = new Service[serviceList.size()];
+		serviceList.copyInto(services);
+		cache.set(serviceListNode, modCount, services);
+		return services;
+	}
+	
 	////////////////////////////////////////////////
 	//	Description
 	////////////////////////////////////////////////
@@ -703,6 +817,87 @@ public class Device implements HTTPRequestListener, SearchListener
 		return getDeviceData().getSSDPPacket();
 	}
 	
+	////////////////////////////////////////////////
+	//	BOOTID.UPNP.ORG/CONFIGID.UPNP.ORG
+	////////////////////////////////////////////////
+
+	private DeviceData getRootDeviceData()
+	{
+		Device rootDev = getRootDevice();
+		if (rootDev == null)
+			return getDeviceData();
+		return rootDev.getDeviceData();
+	}
+
+	/**
+	 * Sets the BOOTID.UPNP.ORG value of the root device.
+	 * A device is given a new boot id by start(), a control point records the value
+	 * advertised by the device.
+	 */
+	public void setBootId(int id)
+	{
+		getRootDeviceData().setBootId(id);
+	}
+
+	/**
+	 * @return The BOOTID.UPNP.ORG value of the root device, or -1 when it is unknown.
+	 */
+	public int getBootId()
+	{
+		return getRootDeviceData().getBootId();
+	}
+
+	/**
+	 * Sets the CONFIGID.UPNP.ORG value of the root device, or -1 when it is unknown.
+	 * Unless a value is set, the device derives one from its description and the SCPDs
+	 * of its services each time it is started.
+	 */
+	public void setConfigId(int id)
+	{
+		DeviceData devData = getRootDeviceData();
+		// CONFIGID.UPNP.ORG is a 24-bit value.
+		devData.setConfigId((0 <= id) ? (id & 0xffffff) : -1);
+		devData.setConfigIdDerived(false);
+	}
+
+	/**
+	 * @return The CONFIGID.UPNP.ORG value of the root device, or -1 when it is unknown.
+	 */
+	public int getConfigId()
+	{
+		return getRootDeviceData().getConfigId();
+	}
+
+	private int getSCPDHashCode()
+	{
+		int hashCode = 0;
+		ServiceList serviceList = getServiceList();
+		int serviceCnt = serviceList.size();
+		for (int n=0; n<serviceCnt; n++)
+			hashCode = 31 * hashCode + Arrays.hashCode(serviceList.getService(n).getSCPDData());
+		DeviceList childDevList = getDeviceList();
+		int childDevCnt = childDevList.size();
+		for (int n=0; n<childDevCnt; n++)
+			hashCode = 31 * hashCode + childDevList.getDevice(n).getSCPDHashCode();
+		return hashCode;
+	}
+
+	////////////////////////////////////////////////
+	//	DescriptionCache
+	////////////////////////////////////////////////
+
+	void setDescriptionCache(DescriptionCache cache)
+	{
+		getDeviceData().setDescriptionCache(cache);
+	}
+
+	DescriptionCache getDescriptionCache()
+	{
+		if (isRootDevice() == false)
+			return null;
+		return getDeviceData().getDescriptionCache();
+	}
+	
 	////////////////////////////////////////////////
 	//	Location 
 	////////////////////////////////////////////////
@@ -1018,18 +1213,10 @@ public class Device implements HTTPRequestListener, SearchListener
 	@SuppressWarnings("unchecked")
 	public DeviceList getDeviceList()
 	{
+		Device devs[] = getDevices();
 		DeviceList devList = new DeviceList();
-		Node devListNode = getDeviceNode().getNode(DeviceList.ELEM_NAME);
-		if (devListNode == null)
-			return devList;
-		int nNode = devListNode.getNNodes();
-		for (int n=0; n<nNode; n++) {
-			Node node = devListNode.getNode(n);
-			if (Device.isDeviceNode(node) == false)
-				continue;
-			Device dev = new Device(node);
-			devList.add(dev);
-		} 
+		for (int n=0; n<devs.length; n++)
+			devList.add(devs[n]);
 		return devList;
 	}
 
@@ -1048,10 +1235,10 @@ public class Device implements HTTPRequestListener, SearchListener
 	
 	public Device getDevice(String name)
 	{
-		DeviceList devList = getDeviceList();
-		int devCnt = devList.size();
+		Device devs[] = getDevices();
+		int devCnt = devs.length;
 		for (int n=0; n<devCnt; n++) {
-			Device dev = devList.getDevice(n);
+			Device dev = devs[n];
 			if (dev.isDevice(name) == true)
 				return dev;
 			Device cdev = dev.getDevice(name);
@@ -1063,10 +1250,10 @@ public class Device implements HTTPRequestListener, SearchListener
 	
 	public Device getDeviceByDescriptionURI(String uri)
 	{
-		DeviceList devList = getDeviceList();
-		int devCnt = devList.size();
+		Device devs[] = getDevices();
+		int devCnt = devs.length;
 		for (int n=0; n<devCnt; n++) {
-			Device dev = devList.getDevice(n);
+			Device dev = devs[n];
 			if (dev.isDescriptionURI(uri) == true)
 				return dev;
 			Device cdev = dev.getDeviceByDescriptionURI(uri);
@@ -1083,35 +1270,27 @@ public class Device implements HTTPRequestListener, SearchListener
 	@SuppressWarnings("unchecked")
 	public ServiceList getServiceList()
 	{
+		Service services[] = getServices();
 		ServiceList serviceList = new ServiceList();
-		Node serviceListNode = getDeviceNode().getNode(ServiceList.ELEM_NAME);
-		if (serviceListNode == null)
-			return serviceList;
-		int nNode = serviceListNode.getNNodes();
-		for (int n=0; n<nNode; n++) {
-			Node node = serviceListNode.getNode(n);
-			if (Service.isServiceNode(node) == false)
-				continue;
-			Service service = new Service(node);
-			serviceList.add(service);
-		} 
+		for (int n=0; n<services.length; n++)
+			serviceList.add(services[n]);
 		return serviceList;
 	}
 
 	public Service getService(String name)
 	{
-		ServiceList serviceList = getServiceList();
-		int serviceCnt = serviceList.size();
+		Service services[] = getServices();
+		int serviceCnt = services.length;
 		for (int n=0; n<serviceCnt; n++) {
-			Service service = serviceList.getService(n);
+			Service service = services[n];
 			if (service.isService(name) == true)
 				return service;
 		}
 		
-		DeviceList devList = getDeviceList();
-		int devCnt = devList.size();
+		Device devs[] = getDevices();
+		int devCnt = devs.length;
 		for (int n=0; n<devCnt; n++) {
-			Device dev = devList.getDevice(n);
+			Device dev = devs[n];
 			Service service = dev.getService(name);
 			if (service != null)
 				return service;
@@ -1122,18 +1301,18 @@ public class Device implements HTTPRequestListener, SearchListener
 
 	public Service getServiceBySCPDURL(String searchUrl)
 	{
-		ServiceList serviceList = getServiceList();
-		int serviceCnt = serviceList.size();
+		Service services[] = getServices();
+		int serviceCnt = services.length;
 		for (int n=0; n<serviceCnt; n++) {
-			Service service = serviceList.getService(n);
+			Service service = services[n];
 			if (service.isSCPDURL(searchUrl) == true)
 				return service;
 		}
 		
-		DeviceList devList = getDeviceList();
-		int devCnt = devList.size();
+		Device devs[] = getDevices();
+		int devCnt = devs.length;
 		for (int n=0; n<devCnt; n++) {
-			Device dev = devList.getDevice(n);
+			Device dev = devs[n];
 			Service service = dev.getServiceBySCPDURL(searchUrl);
 			if (service != null)
 				return service;
@@ -1144,18 +1323,18 @@ public class Device implements HTTPRequestListener, SearchListener
 
 	public Service getServiceByControlURL(String searchUrl)
 	{
-		ServiceList serviceList = getServiceList();
-		int serviceCnt = serviceList.size();
+		Service services[] = getServices();
+		int serviceCnt = services.length;
 		for (int n=0; n<serviceCnt; n++) {
-			Service service = serviceList.getService(n);
+			Service service = services[n];
 			if (service.isControlURL(searchUrl) == true)
 				return service;
 		}
 		
-		DeviceList devList = getDeviceList();
-		int devCnt = devList.size();
+		Device devs[] = getDevices();
+		int devCnt = devs.length;
 		for (int n=0; n<devCnt; n++) {
-			Device dev = devList.getDevice(n);
+			Device dev = devs[n];
 			Service service = dev.getServiceByControlURL(searchUrl);
 			if (service != null)
 				return service;
@@ -1166,18 +1345,18 @@ public class Device implements HTTPRequestListener, SearchListener
 
 	public Service getServiceByEventSubURL(String searchUrl)
 	{
-		ServiceList serviceList = getServiceList();
-		int serviceCnt = serviceList.size();
+		Service services[] = getServices();
+		int serviceCnt = services.length;
 		for (int n=0; n<serviceCnt; n++) {
-			Service service = serviceList.getService(n);
+			Service service = services[n];
 			if (service.isEventSubURL(searchUrl) == true)
 				return service;
 		}
 		
-		DeviceList devList = getDeviceList();
-		int devCnt = devList.size();
+		Device devs[] = getDevices();
+		int devCnt = devs.length;
 		for (int n=0; n<devCnt; n++) {
-			Device dev = devList.getDevice(n);
+			Device dev = devs[n];
 			Service service = dev.getServiceByEventSubURL(searchUrl);
 			if (service != null)
 				return service;
@@ -1188,19 +1367,19 @@ public class Device implements HTTPRequestListener, SearchListener
 
 	public Service getSubscriberService(String uuid)
 	{
-		ServiceList serviceList = getServiceList();
-		int serviceCnt = serviceList.size();
+		Service services[] = getServices();
+		int serviceCnt = services.length;
 		for (int n=0; n<serviceCnt; n++) {
-			Service service = serviceList.getService(n);
+			Service service = services[n];
 			String sid = service.getSID();
 			if (uuid.equals(sid) == true)
 				return service;
 		}
 		
-		DeviceList devList = getDeviceList();
-		int devCnt = devList.size();
+		Device devs[] = getDevices();
+		int devCnt = devs.length;
 		for (int n=0; n<devCnt; n++) {
-			Device dev = devList.getDevice(n);
+			Device dev = devs[n];
 			Service service = dev.getSubscriberService(uuid);
 			if (service != null)
 				return service;
@@ -1218,10 +1397,10 @@ public class Device implements HTTPRequestListener, SearchListener
 		if (serviceType == null && name == null)
 			return null;
 		
-		ServiceList serviceList = getServiceList();
-		int serviceCnt = serviceList.size();
+		Service services[] = getServices();
+		int serviceCnt = services.length;
 		for (int n=0; n<serviceCnt; n++) {
-			Service service = serviceList.getService(n);
+			Service service = services[n];
 			// Thanks for Theo Beisch (11/09/04)
 			if (serviceType != null) {
 				if (service.getServiceType().equals(serviceType) == false)
@@ -1232,10 +1411,10 @@ public class Device implements HTTPRequestListener, SearchListener
 				return stateVar;
 		}
 		
-		DeviceList devList = getDeviceList();
-		int devCnt = devList.size();
+		Device devs[] = getDevices();
+		int devCnt = devs.length;
 		for (int n=0; n<devCnt; n++) {
-			Device dev = devList.getDevice(n);
+			Device dev = devs[n];
 			StateVariable stateVar = dev.getStateVariable(serviceType, name);
 			if (stateVar != null)
 				return stateVar;
@@ -1255,10 +1434,10 @@ public class Device implements HTTPRequestListener, SearchListener
 
 	public Action getAction(String name)
 	{
-		ServiceList serviceList = getServiceList();
-		int serviceCnt = serviceList.size();
+		Service services[] = getServices();
+		int serviceCnt = services.length;
 		for (int n=0; n<serviceCnt; n++) {
-			Service service = serviceList.getService(n);
+			Service service = services[n];
 			ActionList actionList = service.getActionList();
 			int actionCnt = actionList.size();
 			for (int i=0; i<actionCnt; i++) {
@@ -1271,10 +1450,10 @@ public class Device implements HTTPRequestListener, SearchListener
 			}
 		}
 		
-		DeviceList devList = getDeviceList();
-		int devCnt = devList.size();
+		Device devs[] = getDevices();
+		int devCnt = devs.length;
 		for (int n=0; n<devCnt; n++) {
-			Device dev = devList.getDevice(n);
+			Device dev = devs[n];
 			Action action = dev.getAction(name);
 			if (action != null)
 				return action;
@@ -1379,6 +1558,8 @@ public class Device implements HTTPRequestListener, SearchListener
 		ssdpReq.setLeaseTime(getLeaseTime());
 		ssdpReq.setLocation(devLocation);
 		ssdpReq.setNTS(NTS.ALIVE);
+		ssdpReq.setBootId(getBootId());
+		ssdpReq.setConfigId(getConfigId());
 		
 		// uuid:device-UUID(::upnp:rootdevice)* 
 		if (isRootDevice() == true) {
@@ -1404,10 +1585,10 @@ public class Device implements HTTPRequestListener, SearchListener
 		// Thanks for Mikael Hakman (04/25/05)
 		ssdpSock.close();
 		
-		ServiceList serviceList = getServiceList();
-		int serviceCnt = serviceList.size();
+		Service services[] = getServices();
+		int serviceCnt = services.length;
 		for (int n=0; n<serviceCnt; n++) {
-			Service service = serviceList.getService(n);
+			Service service = services[n];
 			service.announce(bindAddr);
 		}
 
@@ -1451,6 +1632,8 @@ public class Device implements HTTPRequestListener, SearchListener
 		
 		SSDPNotifyRequest ssdpReq = new SSDPNotifyRequest();
 		ssdpReq.setNTS(NTS.BYEBYE);
+		ssdpReq.setBootId(getBootId());
+		ssdpReq.setConfigId(getConfigId());
 		
 		// uuid:device-UUID(::upnp:rootdevice)* 
 		if (isRootDevice() == true) {
@@ -1471,10 +1654,10 @@ public class Device implements HTTPRequestListener, SearchListener
 		// Thanks for Mikael Hakman (04/25/05)
 		ssdpSock.close();
 		
-		ServiceList serviceList = getServiceList();
-		int serviceCnt = serviceList.size();
+		Service services[] = getServices();
+		int serviceCnt = services.length;
 		for (int n=0; n<serviceCnt; n++) {
-			Service service = serviceList.getService(n);
+			Service service = services[n];
 			service.byebye(bindAddr);
 		}
 
@@ -1531,6 +1714,8 @@ public class Device implements HTTPRequestListener, SearchListener
 		ssdpRes.setLocation(rootDevLocation);
 		// Thanks for Brent Hills (10/20/04)
 		ssdpRes.setMYNAME(getFriendlyName());
+		ssdpRes.setBootId(getBootId());
+		ssdpRes.setConfigId(getConfigId());
 
 		int mx = ssdpPacket.getMX();
 		TimerUtil.waitRandom(mx * 1000);
@@ -1584,10 +1769,10 @@ public class Device implements HTTPRequestListener, SearchListener
 			}
 		}
 		
-		ServiceList serviceList = getServiceList();
-		int serviceCnt = serviceList.size();
+		Service services[] = getServices();
+		int serviceCnt = services.length;
 		for (int n=0; n<serviceCnt; n++) {
-			Service service = serviceList.getService(n);
+			Service service = services[n];
 			service.serviceSearchResponse(ssdpPacket);
 		}
 		
@@ -1804,21 +1989,33 @@ public class Device implements HTTPRequestListener, SearchListener
 		if (Debug.isOn() == true)
 			ctlReq.print();
 			
-		String actionName = ctlReq.getActionName();
-		Action action = service.getAction(actionName);
+		ActionRequestDecoder decodedReq = null;
+		try {
+			decodedReq = ActionRequestDecoder.decode(ctlReq.getContent());
+		}
+		catch (ParserException e) {
+			Debug.warning(e);
+			invalidActionControlRecieved(ctlReq);
+			return;
+		}
+		
+		String actionName = (decodedReq != null) ? decodedReq.getActionName() : ctlReq.getActionName();
+		Action action = service.getServiceModel().getAction(actionName);
 		if (action == null) {
 			invalidActionControlRecieved(ctlReq);
 			return;
 		}
-		ArgumentList actionArgList = action.getArgumentList();
-		ArgumentList reqArgList = ctlReq.getArgumentList();
+		ActionInvocation inv;
         try {
-            actionArgList.setReqArgs(reqArgList);
+			if (decodedReq != null)
+				inv = new ActionInvocation(action, decodedReq.getArgumentNames(), decodedReq.getArgumentValues());
+			else
+				inv = new ActionInvocation(action, ctlReq.getArgumentList());
         } catch (IllegalArgumentException ex){
             invalidArgumentsControlRecieved(ctlReq);
             return;
        }
-		if (action.performActionListener(ctlReq) == false)
+		if (action.performActionListener(ctlReq, inv) == false)
 			invalidActionControlRecieved(ctlReq);
 	}
 
@@ -1827,11 +2024,11 @@ public class Device implements HTTPRequestListener, SearchListener
 		if (Debug.isOn() == true)
 			ctlReq.print();
 		String varName = ctlReq.getVarName();
-		if (service.hasStateVariable(varName) == false) {
+		StateVariable stateVar = service.getServiceModel().getStateVariable(varName);
+		if (stateVar == null) {
 			invalidActionControlRecieved(ctlReq);
 			return;
 		}
-		StateVariable stateVar = getStateVariable(varName);
 		if (stateVar.performQueryListener(ctlReq) == false)
 			invalidActionControlRecieved(ctlReq);
 	}
@@ -1912,7 +2109,7 @@ public class Device implements HTTPRequestListener, SearchListener
 		if (Debug.isOn() == true)
 			subRes.print();
 		
-		service.notifyAllStateVariables();
+		service.notifyAllStateVariables(sub);
 	}
 
 	private void deviceEventRenewSubscriptionRecieved(Service service, SubscriptionRequest subReq)
@@ -1926,8 +2123,7 @@ public class Device implements HTTPRequestListener, SearchListener
 		}
 
 		long timeOut = subReq.getTimeout();
-		sub.setTimeOut(timeOut);
-		sub.renew();
+		service.renewSubscriber(sub, timeOut);
 				
 		SubscriptionResponse subRes = new SubscriptionResponse();
 		subRes.setStatusCode(HTTPStatus.OK);
@@ -2052,10 +2248,79 @@ public class Device implements HTTPRequestListener, SearchListener
 		return getDeviceData().getAdvertiser();
 	}
 
+	/**
+	 * Sets the EventNotifier of the root device, which is started by start().
+	 */
+	public void setEventNotifier(EventNotifier notifier) 
+	{
+		Device rootDev = getRootDevice();
+		if (rootDev == null)
+			rootDev = this;
+		rootDev.getDeviceData().setEventNotifier(notifier);
+	}
+
+	/**
+	 * Returns the EventNotifier of the root device.
+	 */
+	public EventNotifier getEventNotifier() 
+	{
+		Device rootDev = getRootDevice();
+		if (rootDev == null)
+			rootDev = this;
+		return rootDev.getDeviceData().getEventNotifier();
+	}
+
+	private MulticastEventSocketList getMulticastEventSocketList() 
+	{
+		Device rootDev = getRootDevice();
+		if (rootDev == null)
+			rootDev = this;
+		return rootDev.getDeviceData().getMulticastEventSocketList();
+	}
+
+	/**
+	 * Sends the multicast event message from all interfaces of the root device. The sockets
+	 * are opened at the first message and closed by stop().
+	 */
+	public boolean postMulticastEvent(HTTPRequest req)
+	{
+		MulticastEventSocketList eventSockList = getMulticastEventSocketList();
+		synchronized (eventSockList) {
+			if (eventSockList.size() <= 0)
+				eventSockList.open();
+		}
+		return eventSockList.post(req);
+	}
+
 	public boolean start()
 	{
 		stop(true);
 		
+		////////////////////////////////////////
+		// BOOTID.UPNP.ORG/CONFIGID.UPNP.ORG
+		////////////////////////////////////////
+		
+		setBootId((int)((System.currentTimeMillis() / 1000) & 0x7fffffff));
+		// The device element doesn't include URLBase which is updated for each interface.
+		// A derived value is updated at each start so that a changed description or SCPD gets a new one.
+		DeviceData rootDevData = getRootDeviceData();
+		if (rootDevData.getConfigId() < 0 || rootDevData.isConfigIdDerived() == true) {
+			int descHashCode = 31 * getDeviceNode().toString().hashCode() + getSCPDHashCode();
+			rootDevData.setConfigId(descHashCode & 0xffffff);
+			rootDevData.setConfigIdDerived(true);
+		}
+		
+		////////////////////////////////////////
+		// Event Notifier
+		////////////////////////////////////////
+		
+		EventNotifier eventNotifier = getEventNotifier();
+		if (eventNotifier == null) {
+			eventNotifier = new EventNotifier();
+			setEventNotifier(eventNotifier);
+		}
+		eventNotifier.start();
+		
 		////////////////////////////////////////
 		// HTTP Server
 		////////////////////////////////////////
@@ -2097,11 +2362,20 @@ public class Device implements HTTPRequestListener, SearchListener
 		setAdvertiser(adv);
 		adv.start();
 		
+		////////////////////////////////////////
+		// Interface Monitor
+		////////////////////////////////////////
+		
+		if (isInterfaceMonitored() == true)
+			HostInterface.addInterfaceListener(this);
+		
 		return true;
 	}
 
 	private boolean stop(boolean doByeBye)
 	{
+		HostInterface.removeInterfaceListener(this);
+		
 		if (doByeBye == true)
 			byebye();
 		
@@ -2121,6 +2395,14 @@ public class Device implements HTTPRequestListener, SearchListener
 			setAdvertiser(null);
 		}
 
+		EventNotifier eventNotifier = getEventNotifier();
+		if (eventNotifier != null)
+			eventNotifier.stop();
+		// The moderated events scheduled in the stopped notifier are never sent.
+		clearNotifiedValues();
+
+		getMulticastEventSocketList().close();
+
 		return true;
 	}
 	
@@ -2129,11 +2411,72 @@ public class Device implements HTTPRequestListener, SearchListener
 		return stop(true);
 	}
 
+	private void clearNotifiedValues()
+	{
+		ServiceList serviceList = getServiceList();
+		int serviceCnt = serviceList.size();
+		for (int n=0; n<serviceCnt; n++)
+			serviceList.getService(n).clearNotifiedValues();
+		DeviceList childDevList = getDeviceList();
+		int childDevCnt = childDevList.size();
+		for (int n=0; n<childDevCnt; n++)
+			childDevList.getDevice(n).clearNotifiedValues();
+	}
+
 	public boolean isRunning()
 	{
 		return (getAdvertiser() != null) ? true : false;
 	}
 
+	////////////////////////////////////////////////
+	// HostInterfaceListener
+	////////////////////////////////////////////////
+
+	private boolean isInterfaceMonitored()
+	{
+		DeviceData data = getDeviceData();
+		return (data.getHTTPBindAddress() == null && data.getSSDPBindAddress() == null) ? true : false;
+	}
+	
+	public void interfaceAdded(String ifAddr)
+	{
+		if (isInterfaceMonitored() == false)
+			return;
+		
+		HTTPServer httpServer = getHTTPServerList().openInterface(ifAddr);
+		if (httpServer != null) {
+			httpServer.addRequestListener(this);
+			httpServer.start();
+		}
+		
+		SSDPSearchSocket ssdpSearchSock = getSSDPSearchSocketList().openInterface(ifAddr);
+		if (ssdpSearchSock != null) {
+			ssdpSearchSock.addSearchListener(this);
+			ssdpSearchSock.start();
+		}
+		
+		MulticastEventSocketList eventSockList = getMulticastEventSocketList();
+		synchronized (eventSockList) {
+			if (0 < eventSockList.size())
+				eventSockList.openInterface(ifAddr);
+		}
+		
+		if (httpServer == null)
+			return;
+		int ssdpCount = getSSDPAnnounceCount();
+		for (int i=0; i<ssdpCount; i++)
+			announce(ifAddr);
+	}
+
+	public void interfaceRemoved(String ifAddr)
+	{
+		if (isInterfaceMonitored() == false)
+			return;
+		getSSDPSearchSocketList().closeInterface(ifAddr);
+		getMulticastEventSocketList().closeInterface(ifAddr);
+		getHTTPServerList().closeInterface(ifAddr);
+	}
+	
 	////////////////////////////////////////////////
 	// Interface Address
 	////////////////////////////////////////////////
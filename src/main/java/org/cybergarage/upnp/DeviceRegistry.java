@@ -0,0 +1,375 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: DeviceRegistry.java
+*
+*	Revision:
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Root devices known by a ControlPoint, indexed by UDN, deviceType, friendlyName,
+ * serviceType, location and the SID of the subscribed services.
+ * <p>
+ * The indexes of the device tree are rebuilt into an immutable snapshot when a root
+ * device is added or removed, so the lookups and the iteration take no lock and
+ * always return the same Device and Service objects for a device.
+ */
+public class DeviceRegistry
+{
+	private final static Device EMPTY_DEVICES[] = new Device[0];
+	private final static Service EMPTY_SERVICES[] = new Service[0];
+
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	private volatile Snapshot snapshot = new Snapshot(EMPTY_DEVICES);
+	private Map<String, Service> sidMap = new ConcurrentHashMap<String, Service>();
+	private Map<String, Device> locationMap = new ConcurrentHashMap<String, Device>();
+
+	public DeviceRegistry()
+	{
+	}
+
+	////////////////////////////////////////////////
+	//	Root Device
+	////////////////////////////////////////////////
+
+	/**
+	 * Adds a root device, replacing the root device which has the same UDN.
+	 */
+	public synchronized void add(Device rootDev)
+	{
+		String udn = rootDev.getUDN();
+		Device roots[] = snapshot.roots;
+		Vector<Device> rootList = new Vector<Device>(roots.length + 1);
+		for (int n=0; n<roots.length; n++) {
+			if (udn.equals(roots[n].getUDN()) == true) {
+				removeIndexes(roots[n]);
+				continue;
+			}
+			rootList.add(roots[n]);
+		}
+		rootList.add(rootDev);
+		Device newRoots[] = new Device[rootList.size()];
+		rootList.copyInto(newRoots);
+		Snapshot newSnapshot = new Snapshot(newRoots);
+		snapshot = newSnapshot;
+
+		String location = rootDev.getLocation();
+		if (location != null && 0 < location.length())
+			locationMap.put(location, rootDev);
+		Service services[] = newSnapshot.getServices(rootDev);
+		for (int n=0; n<services.length; n++) {
+			if (services[n].hasSID() == true)
+				sidMap.put(services[n].getSID(), services[n]);
+		}
+	}
+
+	/**
+	 * Removes the root device which has the specified UDN.
+	 * @return The removed root device, or null if the device isn't registered.
+	 */
+	public synchronized Device remove(String udn)
+	{
+		Snapshot oldSnapshot = snapshot;
+		Device rootDev = oldSnapshot.rootMap.get(udn);
+		if (rootDev == null)
+			return null;
+		Device roots[] = oldSnapshot.roots;
+		Device newRoots[] = new Device[roots.length - 1];
+		int i = 0;
+		for (int n=0; n<roots.length; n++) {
+			if (roots[n] != rootDev)
+				newRoots[i++] = roots[n];
+		}
+		removeIndexes(rootDev);
+		snapshot = new Snapshot(newRoots);
+		return rootDev;
+	}
+
+	private void removeIndexes(Device rootDev)
+	{
+		Iterator<Device> locIt = locationMap.values().iterator();
+		while (locIt.hasNext() == true) {
+			if (locIt.next() == rootDev)
+				locIt.remove();
+		}
+		Service services[] = snapshot.getServices(rootDev);
+		for (int n=0; n<services.length; n++) {
+			if (services[n].hasSID() == true)
+				removeSubscriberService(services[n].getSID(), services[n]);
+		}
+	}
+
+	public synchronized void clear()
+	{
+		snapshot = new Snapshot(EMPTY_DEVICES);
+		sidMap.clear();
+		locationMap.clear();
+	}
+
+	public Device getRootDevice(String udn)
+	{
+		if (udn == null)
+			return null;
+		return snapshot.rootMap.get(udn);
+	}
+
+	/**
+	 * Returns the root devices at this moment. The returned array isn't changed
+	 * by the later additions and removals.
+	 */
+	public Device[] getRootDevices()
+	{
+		Device roots[] = snapshot.roots;
+		Device devs[] = new Device[roots.length];
+		System.arraycopy(roots, 0, devs, 0, roots.length);
+		return devs;
+	}
+
+	@SuppressWarnings("unchecked")
+	public DeviceList getDeviceList()
+	{
+		Device roots[] = snapshot.roots;
+		DeviceList devList = new DeviceList();
+		for (int n=0; n<roots.length; n++)
+			devList.add(roots[n]);
+		return devList;
+	}
+
+	public int size()
+	{
+		return snapshot.roots.length;
+	}
+
+	////////////////////////////////////////////////
+	//	Device
+	////////////////////////////////////////////////
+
+	/**
+	 * Returns the root or embedded device which has the specified UDN.
+	 */
+	public Device getDevice(String udn)
+	{
+		if (udn == null)
+			return null;
+		return snapshot.udnMap.get(udn);
+	}
+
+	public Device getDeviceByFriendlyName(String name)
+	{
+		if (name == null)
+			return null;
+		return snapshot.nameMap.get(name);
+	}
+
+	/**
+	 * Returns the root and embedded devices of the specified deviceType.
+	 */
+	public Device[] getDevicesByType(String deviceType)
+	{
+		if (deviceType == null)
+			return EMPTY_DEVICES;
+		Device devs[] = snapshot.typeMap.get(deviceType);
+		if (devs == null)
+			return EMPTY_DEVICES;
+		Device copyDevs[] = new Device[devs.length];
+		System.arraycopy(devs, 0, copyDevs, 0, devs.length);
+		return copyDevs;
+	}
+
+	/**
+	 * Returns the root device of which the description was retrieved from the specified location.
+	 */
+	public Device getDeviceByLocation(String location)
+	{
+		if (location == null)
+			return null;
+		return locationMap.get(location);
+	}
+
+	/**
+	 * Adds a location of a registered root device which has moved to another address.
+	 */
+	public void setLocation(Device rootDev, String location)
+	{
+		if (location == null || location.length() <= 0)
+			return;
+		if (locationMap.get(location) == rootDev)
+			return;
+		if (snapshot.rootMap.get(rootDev.getUDN()) != rootDev)
+			return;
+		locationMap.put(location, rootDev);
+	}
+
+	////////////////////////////////////////////////
+	//	Service
+	////////////////////////////////////////////////
+
+	/**
+	 * Returns the services of the specified serviceType in the root and embedded devices.
+	 */
+	public Service[] getServicesByType(String serviceType)
+	{
+		if (serviceType == null)
+			return EMPTY_SERVICES;
+		Service services[] = snapshot.serviceTypeMap.get(serviceType);
+		if (services == null)
+			return EMPTY_SERVICES;
+		Service copyServices[] = new Service[services.length];
+		System.arraycopy(services, 0, copyServices, 0, services.length);
+		return copyServices;
+	}
+
+	////////////////////////////////////////////////
+	//	Subscriber Service
+	////////////////////////////////////////////////
+
+	/**
+	 * Indexes a service by the current SID, call this after the SID of the service is changed.
+	 */
+	public void addSubscriberService(Service service)
+	{
+		if (service.hasSID() == false)
+			return;
+		sidMap.put(service.getSID(), service);
+	}
+
+	/**
+	 * Removes the SID from the index if it is still mapped to the specified service.
+	 */
+	public void removeSubscriberService(String sid, Service service)
+	{
+		if (sid == null)
+			return;
+		Service mappedService = sidMap.get(sid);
+		if (mappedService == null)
+			return;
+		if (mappedService.getServiceNode() != service.getServiceNode())
+			return;
+		sidMap.remove(sid);
+	}
+
+	public Service getSubscriberService(String sid)
+	{
+		if (sid == null)
+			return null;
+		Service service = sidMap.get(sid);
+		if (service == null)
+			return null;
+		// The SID has been cleared or replaced without the registry.
+		if (sid.equals(service.getSID()) == false) {
+			removeSubscriberService(sid, service);
+			return null;
+		}
+		return service;
+	}
+
+	////////////////////////////////////////////////
+	//	Snapshot
+	////////////////////////////////////////////////
+
+	private static class Snapshot
+	{
+		Device roots[];
+		Map<String, Device> rootMap = new HashMap<String, Device>();
+		Map<String, Device> udnMap = new HashMap<String, Device>();
+		Map<String, Device> nameMap = new HashMap<String, Device>();
+		Map<String, Device[]> typeMap = new HashMap<String, Device[]>();
+		Map<String, Service[]> serviceTypeMap = new HashMap<String, Service[]>();
+		Map<Device, Service[]> rootServiceMap = new HashMap<Device, Service[]>();
+
+		Snapshot(Device roots[])
+		{
+			this.roots = roots;
+			Map<String, Vector<Device>> typeLists = new HashMap<String, Vector<Device>>();
+			Map<String, Vector<Service>> serviceTypeLists = new HashMap<String, Vector<Service>>();
+			for (int n=0; n<roots.length; n++) {
+				rootMap.put(roots[n].getUDN(), roots[n]);
+				Vector<Service> rootServices = new Vector<Service>();
+				addDevice(roots[n], typeLists, serviceTypeLists, rootServices);
+				Service services[] = new Service[rootServices.size()];
+				rootServices.copyInto(services);
+				rootServiceMap.put(roots[n], services);
+			}
+			Iterator<Map.Entry<String, Vector<Device>>> typeIt = typeLists.entrySet().iterator();
+			while (typeIt.hasNext() == true) {
+				Map.Entry<String, Vector<Device>> entry = typeIt.next();
+				Device devs[] = new Device[entry.getValue().size()];
+				entry.getValue().copyInto(devs);
+				typeMap.put(entry.getKey(), devs);
+			}
+			Iterator<Map.Entry<String, Vector<Service>>> serviceTypeIt = serviceTypeLists.entrySet().iterator();
+			while (serviceTypeIt.hasNext() == true) {
+				Map.Entry<String, Vector<Service>> entry = serviceTypeIt.next();
+				Service services[] = new Service[entry.getValue().size()];
+				entry.getValue().copyInto(services);
+				serviceTypeMap.put(entry.getKey(), services);
+			}
+		}
+
+		private void addDevice(Device dev, Map<String, Vector<Device>> typeLists, Map<String, Vector<Service>> serviceTypeLists, Vector<Service> rootServices)
+		{
+			String udn = dev.getUDN();
+			if (udn != null && udnMap.containsKey(udn) == false)
+				udnMap.put(udn, dev);
+			String name = dev.getFriendlyName();
+			if (name != null && nameMap.containsKey(name) == false)
+				nameMap.put(name, dev);
+			String type = dev.getDeviceType();
+			if (type != null) {
+				Vector<Device> typeList = typeLists.get(type);
+				if (typeList == null) {
+					typeList = new Vector<Device>();
+					typeLists.put(type, typeList);
+				}
+				typeList.add(dev);
+			}
+
+			ServiceList serviceList = dev.getServiceList();
+			int serviceCnt = serviceList.size();
+			for (int n=0; n<serviceCnt; n++) {
+				Service service = serviceList.getService(n);
+				rootServices.add(service);
+				String serviceType = service.getServiceType();
+				if (serviceType == null)
+					continue;
+				Vector<Service> serviceTypeList = serviceTypeLists.get(serviceType);
+				if (serviceTypeList == null) {
+					serviceTypeList = new Vector<Service>();
+					serviceTypeLists.put(serviceType, serviceTypeList);
+				}
+				serviceTypeList.add(service);
+			}
+
+			DeviceList childDevList = dev.getDeviceList();
+			int childDevCnt = childDevList.size();
+			for (int n=0; n<childDevCnt; n++)
+				addDevice(childDevList.getDevice(n), typeLists, serviceTypeLists, rootServices);
+		}
+
+		Service[] getServices(Device rootDev)
+		{
+			Service services[] = rootServiceMap.get(rootDev);
+			if (services == null)
+				return EMPTY_SERVICES;
+			return services;
+		}
+	}
+}
@@ -66,30 +66,59 @@
 *		- Added setUserData() and getUserData() to set a user original data object.
 *	09/18/2010 Robin V. <robinsp@gmail.com>
 *		- Fixed getSCPDNode() not to occur recursive http get requests.
+*	10/18/26
+*		- Changed getSCPDNode() to use the DescriptionCache of the root device, which stores
+*		  the SCPDs as they are retrieved.
+*		- Changed announce() and byebye() to send BOOTID.UPNP.ORG and CONFIGID.UPNP.ORG.
+*		- Changed getActionList(), getServiceStateTable() and getDevice() to reuse
+*		  the Action, StateVariable and Device objects of the nodes.
+*		- Added getServiceModel(), and changed getAction() and getStateVariable() to use it.
+*		- Added getEventedValue() to read the values received in the event messages.
+*		  The values are set to the state variables only when the SCPD has been loaded.
+*		- Changed notify() to queue the event messages to the EventNotifier of the device
+*		  instead of sending them in the calling thread.
+*		- Changed notifyAllStateVariables() to send all variables in one message, and
+*		  added notifyAllStateVariables(Subscriber) for the initial event message.
+*		- Changed to keep the subscribers in SubscriberRegistry, and notify() to iterate
+*		  a snapshot of the subscribers and to remove only the expired subscribers.
+*		- Added renewSubscriber().
+*		- Added notifyMulticast() to send the multicast event of a state variable.
+*		  It sends nothing unless the device is running.
+*		- Deprecated getSubscriberList(), which returns a copy of the subscribers.
+*		- Added clearServiceModel() for the renamed actions and state variables.
 *
 ******************************************************************/
 
 package org.cybergarage.upnp;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.Iterator;
+import java.util.Vector;
 
 import org.cybergarage.http.HTTP;
-import org.cybergarage.http.HTTPResponse;
 import org.cybergarage.upnp.control.ActionListener;
 import org.cybergarage.upnp.control.QueryListener;
+import org.cybergarage.upnp.device.DescriptionCache;
+import org.cybergarage.upnp.device.DescriptionFetcher;
 import org.cybergarage.upnp.device.InvalidDescriptionException;
 import org.cybergarage.upnp.device.NTS;
 import org.cybergarage.upnp.device.ST;
-import org.cybergarage.upnp.event.NotifyRequest;
+import org.cybergarage.upnp.event.EventNotifier;
+import org.cybergarage.upnp.event.EventedValue;
+import org.cybergarage.upnp.event.MulticastNotifyRequest;
+import org.cybergarage.upnp.event.Property;
+import org.cybergarage.upnp.event.PropertyList;
 import org.cybergarage.upnp.event.Subscriber;
 import org.cybergarage.upnp.event.SubscriberList;
+import org.cybergarage.upnp.event.SubscriberRegistry;
 import org.cybergarage.upnp.ssdp.SSDPNotifyRequest;
 import org.cybergarage.upnp.ssdp.SSDPNotifySocket;
 import org.cybergarage.upnp.ssdp.SSDPPacket;
 import org.cybergarage.upnp.xml.ServiceData;
+import org.cybergarage.upnp.xml.WrapperListCache;
 import org.cybergarage.util.Debug;
 import org.cybergarage.util.Mutex;
 import org.cybergarage.util.StringUtil;
@@ -201,7 +230,10 @@ public class Service
 
 	public Device getDevice()
 	{
-		return new Device(getRootNode(), getDeviceNode());
+		Node devNode = getDeviceNode();
+		if (devNode == null)
+			return new Device(getRootNode(), devNode);
+		return Device.getCachedDevice(getRootNode(), devNode);
 	}
 
 	public Device getRootDevice()
@@ -426,8 +458,40 @@ public class Service
 			}
 		}
 
+		DescriptionCache cache = rootDev.getDescriptionCache();
+		if (cache != null) {
+			byte scpdData[] = cache.getSCPD(rootDev.getLocation(), rootDev.getUDN(), scpdURLStr);
+			if (scpdData != null) {
+				try {
+					scpdNode = UPnP.getXMLParser().parse(new ByteArrayInputStream(scpdData));
+				}
+				catch (ParserException e) {
+					Debug.warning(e);
+				}
+				if (scpdNode != null) {
+					data.setSCPDNode(scpdNode);
+					return scpdNode;
+				}
+			}
+		}
+
 		try {
 			URL scpdUrl = new URL(rootDev.getAbsoluteURL(scpdURLStr));
+			if (cache != null) {
+				// The SCPD is cached as it was sent by the device, as DescriptionFetcher does.
+				try {
+					byte scpdData[] = DescriptionFetcher.getContent(scpdUrl, DescriptionFetcher.DEFAULT_CONNECT_TIMEOUT, DescriptionFetcher.DEFAULT_READ_TIMEOUT);
+					scpdNode = UPnP.getXMLParser().parse(new ByteArrayInputStream(scpdData));
+					if (scpdNode != null) {
+						data.setSCPDNode(scpdNode);
+						cache.putSCPD(rootDev.getLocation(), rootDev.getUDN(), scpdURLStr, scpdData);
+						return scpdNode;
+					}
+				}
+				catch (Exception e) {
+					Debug.warning(e);
+				}
+			}
 			scpdNode = getSCPDNode(scpdUrl);		
 			if (scpdNode != null) {
 				data.setSCPDNode(scpdNode);
@@ -465,40 +529,48 @@ public class Service
 	//	actionList
 	////////////////////////////////////////////////
 
-	@SuppressWarnings("unchecked")
-	public ActionList getActionList()
+	private final static Action EMPTY_ACTIONS[] = new Action[0];
+	
+	private Action[] getActions()
 	{
-		ActionList actionList = new ActionList();
 		Node scdpNode = getSCPDNode();
 		if (scdpNode == null)
-			return actionList;
+			return EMPTY_ACTIONS;
 		Node actionListNode = scdpNode.getNode(ActionList.ELEM_NAME);
 		if (actionListNode == null)
-			return actionList;
+			return EMPTY_ACTIONS;
+		WrapperListCache cache = getServiceData().getActionListCache();
+		Object cachedActions[] = cache.get(actionListNode);
+		if (cachedActions != null)
+			return (Action[])cachedActions;
+		int modCount = actionListNode.getModCount();
+		Vector<Action> actionList = new Vector<Action>();
 		int nNode = actionListNode.getNNodes();
 		for (int n=0; n<nNode; n++) {
 			Node node = actionListNode.getNode(n);
 			if (Action.isActionNode(node) == false)
 				continue;
-			Action action = new Action(serviceNode, node);
-			actionList.add(action);
+			actionList.add(Action.getCachedAction(serviceNode, node));
 		} 
+		Action actions[] = new Action[actionList.size()];
+		actionList.copyInto(actions);
+		cache.set(actionListNode, modCount, actions);
+		return actions;
+	}
+	
+	@SuppressWarnings("unchecked")
+	public ActionList getActionList()
+	{
+		Action actions[] = getActions();
+		ActionList actionList = new ActionList();
+		for (int n=0; n<actions.length; n++)
+			actionList.add(actions[n]);
 		return actionList;
 	}
 
 	public Action getAction(String actionName)
 	{
-		ActionList actionList = getActionList();
-		int nActions = actionList.size();
-		for (int n=0; n<nActions; n++) {
-			Action action = actionList.getAction(n);
-			String name = action.getName();
-			if (name == null)
-				continue;
-			if (name.equals(actionName) == true)
-				return action;
-		}
-		return null;
+		return getServiceModel().getAction(actionName);
 	}
 	
 	@SuppressWarnings("rawtypes")
@@ -522,38 +594,82 @@ public class Service
 	//	serviceStateTable
 	////////////////////////////////////////////////
 
-	@SuppressWarnings("unchecked")
-	public ServiceStateTable getServiceStateTable()
+	private final static StateVariable EMPTY_STATE_VARIABLES[] = new StateVariable[0];
+	
+	private StateVariable[] getStateVariables()
 	{
-		ServiceStateTable stateTable = new ServiceStateTable();
-		Node stateTableNode = getSCPDNode().getNode(ServiceStateTable.ELEM_NAME);
+		Node scdpNode = getSCPDNode();
+		if (scdpNode == null)
+			return EMPTY_STATE_VARIABLES;
+		Node stateTableNode = scdpNode.getNode(ServiceStateTable.ELEM_NAME);
 		if (stateTableNode == null)
-			return stateTable;
+			return EMPTY_STATE_VARIABLES;
+		WrapperListCache cache = getServiceData().getServiceStateTableCache();
+		Object cachedVars[] = cache.get(stateTableNode);
+		if (cachedVars != null)
+			return (StateVariable[])cachedVars;
+		int modCount = stateTableNode.getModCount();
 		Node serviceNode = getServiceNode();
+		Vector<StateVariable> varList = new Vector<StateVariable>();
 		int nNode = stateTableNode.getNNodes();
 		for (int n=0; n<nNode; n++) {
 			Node node = stateTableNode.getNode(n);
 			if (StateVariable.isStateVariableNode(node) == false)
 				continue;
-			StateVariable serviceVar = new StateVariable(serviceNode, node);
-			stateTable.add(serviceVar);
+			varList.add(StateVariable.getCachedStateVariable(serviceNode, node));
 		} 
+		StateVariable vars[] = new StateVariable[varList.size()];
+		varList.copyInto(vars);
+		cache.set(stateTableNode, modCount, vars);
+		return vars;
+	}
+	
+	@SuppressWarnings("unchecked")
+	public ServiceStateTable getServiceStateTable()
+	{
+		StateVariable vars[] = getStateVariables();
+		ServiceStateTable stateTable = new ServiceStateTable();
+		for (int n=0; n<vars.length; n++)
+			stateTable.add(vars[n]);
 		return stateTable;
 	}
 
 	public StateVariable getStateVariable(String name)
 	{
-		ServiceStateTable stateTable = getServiceStateTable();
-		int tableSize = stateTable.size();
-		for (int n=0; n<tableSize; n++) {
-			StateVariable var = stateTable.getStateVariable(n);
-			String varName = var.getName();
-			if (varName == null)
-				continue;
-			if (varName.equals(name) == true)
-				return var;
-		}
-		return null;
+		return getServiceModel().getStateVariable(name);
+	}
+
+	////////////////////////////////////////////////
+	//	ServiceModel
+	////////////////////////////////////////////////
+
+	/**
+	 * Returns the compiled index of the actions and the state variables, which is
+	 * compiled again only when the action list or the state table has changed.
+	 */
+	public ServiceModel getServiceModel()
+	{
+		Action actions[] = getActions();
+		StateVariable vars[] = getStateVariables();
+		ServiceData data = getServiceData();
+		ServiceModel model = data.getServiceModel();
+		if (model != null && model.isCompiledFrom(actions, vars) == true)
+			return model;
+		model = new ServiceModel(actions, vars);
+		data.setServiceModel(model);
+		return model;
+	}
+
+	/**
+	 * Drops the model of the service, so that the renamed actions and state variables are compiled again.
+	 */
+	static void clearServiceModel(Node serviceNode)
+	{
+		if (serviceNode == null)
+			return;
+		ServiceData data = (ServiceData)serviceNode.getUserData();
+		if (data != null)
+			data.setServiceModel(null);
 	}
 	
 	public boolean hasStateVariable(String name)
@@ -582,7 +698,11 @@ public class Service
 
 	private ServiceData getServiceData()
 	{
-		Node node = getServiceNode();
+		return getServiceData(getServiceNode());
+	}
+	
+	private static ServiceData getServiceData(Node node)
+	{
 		ServiceData userData = (ServiceData)node.getUserData();
 		if (userData == null) {
 			userData = new ServiceData();
@@ -592,6 +712,23 @@ public class Service
 		return userData;
 	}
 
+	/**
+	 * Returns the Service object of the service node, which is created once and reused.
+	 */
+	static Service getCachedService(Node serviceNode)
+	{
+		ServiceData data = getServiceData(serviceNode);
+		Object wrapper = data.getWrapper();
+		if (wrapper instanceof Service) {
+			Service service = (Service)wrapper;
+			if (service.getServiceNode() == serviceNode)
+				return service;
+		}
+		Service service = new Service(serviceNode);
+		data.setWrapper(service);
+		return service;
+	}
+
 	////////////////////////////////////////////////
 	//	Notify
 	////////////////////////////////////////////////
@@ -621,6 +758,8 @@ public class Service
 		ssdpReq.setLeaseTime(dev.getLeaseTime());
 		ssdpReq.setLocation(devLocation);
 		ssdpReq.setNTS(NTS.ALIVE);
+		ssdpReq.setBootId(dev.getBootId());
+		ssdpReq.setConfigId(dev.getConfigId());
 		ssdpReq.setNT(serviceNT);
 		ssdpReq.setUSN(serviceUSN);
 
@@ -638,6 +777,9 @@ public class Service
 		
 		SSDPNotifyRequest ssdpReq = new SSDPNotifyRequest();
 		ssdpReq.setNTS(NTS.BYEBYE);
+		Device dev = getDevice();
+		ssdpReq.setBootId(dev.getBootId());
+		ssdpReq.setConfigId(dev.getConfigId());
 		ssdpReq.setNT(devNT);
 		ssdpReq.setUSN(devUSN);
 
@@ -676,10 +818,10 @@ public class Service
 
 	public void setQueryListener(QueryListener queryListener) 
 	{
-		ServiceStateTable stateTable = getServiceStateTable();
-		int tableSize = stateTable.size();
+		StateVariable vars[] = getStateVariables();
+		int tableSize = vars.length;
 		for (int n=0; n<tableSize; n++) {
-			StateVariable var = stateTable.getStateVariable(n);
+			StateVariable var = vars[n];
 			var.setQueryListener(queryListener);
 		}
 	}
@@ -688,88 +830,88 @@ public class Service
 	//	Subscription
 	////////////////////////////////////////////////
 
+	/**
+	 * Returns a snapshot of the subscribers. Adding or removing the subscribers of the
+	 * returned list doesn't change the subscribers of the service.
+	 * @deprecated Use getSubscriberRegistry(), or addSubscriber() and removeSubscriber()
+	 * to change the subscribers.
+	 */
+	@Deprecated
 	public SubscriberList getSubscriberList() 
 	{
 		return getServiceData().getSubscriberList();
 	}
 
-	@SuppressWarnings("unchecked")
+	public SubscriberRegistry getSubscriberRegistry() 
+	{
+		return getServiceData().getSubscriberRegistry();
+	}
+
 	public void addSubscriber(Subscriber sub) 
 	{
-		getSubscriberList().add(sub);
+		getSubscriberRegistry().add(sub);
 	}
 
 	public void removeSubscriber(Subscriber sub) 
 	{
-		getSubscriberList().remove(sub);
+		getSubscriberRegistry().remove(sub);
+		EventNotifier notifier = getEventNotifier();
+		if (notifier != null)
+			notifier.remove(sub);
+	}
+
+	/**
+	 * Renews the subscription of the subscriber with the specified timeout in seconds.
+	 */
+	public void renewSubscriber(Subscriber sub, long timeout) 
+	{
+		sub.setTimeOut(timeout);
+		sub.renew();
+		getSubscriberRegistry().schedule(sub);
+	}
+
+	private void removeExpiredSubscribers()
+	{
+		Vector<Subscriber> expiredSubs = getSubscriberRegistry().removeExpired(System.currentTimeMillis());
+		int expiredCnt = expiredSubs.size();
+		if (expiredCnt <= 0)
+			return;
+		EventNotifier notifier = getEventNotifier();
+		if (notifier == null)
+			return;
+		for (int n=0; n<expiredCnt; n++)
+			notifier.remove(expiredSubs.get(n));
+	}
+
+	private EventNotifier getEventNotifier()
+	{
+		Device dev = getDevice();
+		if (dev == null)
+			return null;
+		return dev.getEventNotifier();
 	}
 
 	public Subscriber getSubscriber(String name) 
 	{
-		SubscriberList subList = getSubscriberList();
-		int subListCnt = subList.size();
-		for (int n=0; n<subListCnt; n++) {
-			Subscriber sub = subList.getSubscriber(n);
-			if (sub == null)
-				continue;
-			String sid = sub.getSID();
-			if (sid == null)
-				continue;
-			if (sid.equals(name) == true)
-				return sub;
-		}
-		return null;
+		return getSubscriberRegistry().getSubscriber(name);
 	}
 
-	private boolean notify(Subscriber sub, StateVariable stateVar)
+	private boolean notify(Subscriber sub, PropertyList props)
 	{
-		String varName = stateVar.getName();
-		String value = stateVar.getValue();
-		
-		String host = sub.getDeliveryHost();
-		int port = sub.getDeliveryPort();
-		
-		NotifyRequest notifyReq = new NotifyRequest();
-		notifyReq.setRequest(sub, varName, value);
-		
-		HTTPResponse res = notifyReq.post(host, port);
-		if (res.isSuccessful() == false)
-			return false;
-			
-		sub.incrementNotifyCount();		
+		EventNotifier notifier = getEventNotifier();
+		if (notifier != null && notifier.notify(sub, props) == true)
+			return true;
 		
-		return true;
+		return EventNotifier.post(sub, props, EventNotifier.DEFAULT_CONNECT_TIMEOUT, EventNotifier.DEFAULT_READ_TIMEOUT);
 	}
 
-	public void notify(StateVariable stateVar)
+	private void notify(PropertyList props)
 	{
-		SubscriberList subList = getSubscriberList();
-		int subListCnt;
-		Subscriber subs[];
+		removeExpiredSubscribers();
 		
-		// Remove expired subscribers.
-		subListCnt = subList.size();
-		subs = new Subscriber[subListCnt];
-		for (int n=0; n<subListCnt; n++)
-			subs[n] = subList.getSubscriber(n);
-		for (int n=0; n<subListCnt; n++) {
-			Subscriber sub = subs[n];
-			if (sub == null)
-				continue;
-			if (sub.isExpired() == true)
-				removeSubscriber(sub);
-		}
-		
-		// Notify to subscribers.
-		subListCnt = subList.size();
-		subs = new Subscriber[subListCnt];
-		for (int n=0; n<subListCnt; n++)
-			subs[n] = subList.getSubscriber(n);
-		for (int n=0; n<subListCnt; n++) {
-			Subscriber sub = subs[n];
-			if (sub == null)
-				continue;
-			if (notify(sub, stateVar) == false) {
+		Subscriber subs[] = getSubscriberRegistry().getSubscribers();
+		for (int n=0; n<subs.length; n++) {
+			if (notify(subs[n], props) == false) {
 				/* Don't remove for NMPR specification.
 				removeSubscriber(sub);
 				*/
@@ -777,15 +919,68 @@ public class Service
 		}
 	}
 
-	public void notifyAllStateVariables()
+	public void notify(StateVariable stateVar)
+	{
+		notify(EventNotifier.toPropertyList(stateVar.getName(), stateVar.getValue()));
+	}
+
+	/**
+	 * Sends the value of the state variable to the multicast group of UPnP Device Architecture 1.1
+	 * from all interfaces of the device. Only a running local device sends the events, the
+	 * values set to the services of the devices found by a control point aren't sent.
+	 */
+	public boolean notifyMulticast(StateVariable stateVar)
+	{
+		EventNotifier notifier = getEventNotifier();
+		if (notifier == null || notifier.isRunnable() == false)
+			return false;
+		PropertyList props = EventNotifier.toPropertyList(stateVar.getName(), stateVar.getValue());
+		MulticastNotifyRequest notifyReq = new MulticastNotifyRequest();
+		long seq = getServiceData().getNextMulticastSEQ();
+		if (notifyReq.setRequest(this, seq, MulticastNotifyRequest.LVL_INFO, props) == false)
+			return false;
+		return getDevice().postMulticastEvent(notifyReq);
+	}
+
+	@SuppressWarnings("unchecked")
+	private PropertyList getEventedPropertyList()
 	{
-		ServiceStateTable stateTable = getServiceStateTable();
-		int tableSize = stateTable.size();
+		PropertyList props = new PropertyList();
+		StateVariable vars[] = getStateVariables();
+		int tableSize = vars.length;
 		for (int n=0; n<tableSize; n++) {
-			StateVariable var = stateTable.getStateVariable(n);
-			if (var.isSendEvents() == true)
-				notify(var);
+			StateVariable var = vars[n];
+			if (var.isSendEvents() == false)
+				continue;
+			Property prop = new Property();
+			prop.setName(var.getName());
+			prop.setValue(var.getValue());
+			props.add(prop);
 		}
+		return props;
+	}
+
+	/**
+	 * Sends all evented state variables to each subscriber in one message.
+	 */
+	public void notifyAllStateVariables()
+	{
+		PropertyList props = getEventedPropertyList();
+		if (props.size() <= 0)
+			return;
+		notify(props);
+	}
+
+	/**
+	 * Sends all evented state variables to the subscriber in one message, which is used
+	 * for the initial event message of a new subscription.
+	 */
+	public boolean notifyAllStateVariables(Subscriber sub)
+	{
+		PropertyList props = getEventedPropertyList();
+		if (props.size() <= 0)
+			return true;
+		return notify(sub, props);
 	}
 
 	////////////////////////////////////////////////
@@ -818,6 +1013,61 @@ public class Service
 		return hasSID();
 	}
 	
+	////////////////////////////////////////////////
+	// EventedValue
+	////////////////////////////////////////////////
+
+	/**
+	 * Returns the last value of the state variable received in the event messages
+	 * of the subscription, or null if it isn't received yet.
+	 */
+	public EventedValue getEventedValue(String name) 
+	{
+		if (name == null)
+			return null;
+		return getServiceData().getEventedValueMap().get(name);
+	}
+
+	public EventedValue[] getEventedValues() 
+	{
+		return getServiceData().getEventedValueMap().values().toArray(new EventedValue[0]);
+	}
+
+	/**
+	 * Caches the evented value, and sets it to the state variable of the same name when
+	 * the SCPD has been loaded. The SCPD isn't retrieved here because the events are
+	 * delivered in order by a few threads shared by all subscriptions.
+	 * @return The previous evented value.
+	 */
+	EventedValue setEventedValue(EventedValue value) 
+	{
+		ServiceData data = getServiceData();
+		if (data.getSCPDNode() != null) {
+			StateVariable var = getStateVariable(value.getName());
+			if (var != null)
+				var.getStateVariableData().setValue(value.getValue());
+		}
+		return data.getEventedValueMap().put(value.getName(), value);
+	}
+
+	void clearEventedValues() 
+	{
+		getServiceData().getEventedValueMap().clear();
+	}
+
+	/**
+	 * Clears the moderation state of the state variables when the EventNotifier is stopped.
+	 */
+	void clearNotifiedValues() 
+	{
+		// The variables of a SCPD which hasn't been loaded have never been evented.
+		if (getServiceData().getSCPDNode() == null)
+			return;
+		StateVariable vars[] = getStateVariables();
+		for (int n=0; n<vars.length; n++)
+			vars[n].getStateVariableData().clearNotified();
+	}
+	
 	////////////////////////////////////////////////
 	// Timeout
 	////////////////////////////////////////////////
@@ -838,10 +1088,10 @@ public class Service
 	
 	public void setActionListener(ActionListener listener)
 	{
-		ActionList actionList = getActionList();
-		int nActions = actionList.size();
+		Action actions[] = getActions();
+		int nActions = actions.length;
 		for (int n=0; n<nActions; n++) {
-			Action action = actionList.getAction(n);
+			Action action = actions[n];
 			action.setActionListener(listener);
 		}
 	}
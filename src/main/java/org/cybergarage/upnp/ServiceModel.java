@@ -0,0 +1,105 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: ServiceModel.java
+*
+*	Revision:
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable index of the actions and the state variables of a SCPD.
+ * A model is compiled from the action and state variable arrays of a service and
+ * it is valid as long as the service returns the same arrays. Action.setName() and
+ * StateVariable.setName() drop the model, but the description must not be changed
+ * through its nodes once the model is compiled.
+ */
+public class ServiceModel
+{
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	private Action actions[];
+	private StateVariable stateVars[];
+	private Map<String, Action> actionMap;
+	private Map<String, StateVariable> stateVarMap;
+
+	ServiceModel(Action actions[], StateVariable stateVars[])
+	{
+		this.actions = actions;
+		this.stateVars = stateVars;
+		actionMap = new HashMap<String, Action>(actions.length * 2);
+		for (int n=0; n<actions.length; n++) {
+			String name = actions[n].getName();
+			if (name == null || actionMap.containsKey(name) == true)
+				continue;
+			actionMap.put(name, actions[n]);
+		}
+		stateVarMap = new HashMap<String, StateVariable>(stateVars.length * 2);
+		for (int n=0; n<stateVars.length; n++) {
+			String name = stateVars[n].getName();
+			if (name == null || stateVarMap.containsKey(name) == true)
+				continue;
+			stateVarMap.put(name, stateVars[n]);
+		}
+	}
+
+	boolean isCompiledFrom(Action actions[], StateVariable stateVars[])
+	{
+		return (this.actions == actions && this.stateVars == stateVars) ? true : false;
+	}
+
+	////////////////////////////////////////////////
+	//	Action
+	////////////////////////////////////////////////
+
+	public int getNActions()
+	{
+		return actions.length;
+	}
+
+	public Action getAction(int n)
+	{
+		return actions[n];
+	}
+
+	public Action getAction(String name)
+	{
+		if (name == null)
+			return null;
+		return actionMap.get(name);
+	}
+
+	////////////////////////////////////////////////
+	//	StateVariable
+	////////////////////////////////////////////////
+
+	public int getNStateVariables()
+	{
+		return stateVars.length;
+	}
+
+	public StateVariable getStateVariable(int n)
+	{
+		return stateVars[n];
+	}
+
+	public StateVariable getStateVariable(String name)
+	{
+		if (name == null)
+			return null;
+		return stateVarMap.get(name);
+	}
+}
@@ -41,6 +41,14 @@
 *		- Changed getAllowedValueList() to use AllowedValue instead of String as the member.
 *	04/12/06
 *		- Added setUserData() and getUserData() to set a user original data object.
+*	10/18/26
+*		- Changed getService() to reuse the Service object of the node.
+*		- Added setMaximumRate() and setMinimumDelta(), and changed setValue() to moderate
+*		  the events by maximumRate and minimumDelta.
+*		- Added setMulticast() and isMulticast(), and changed setValue() to send the multicast
+*		  event of the multicast variables.
+*		- Changed setValue() to moderate the multicast events in the same way as the unicast ones.
+*		- Changed setName() to drop the ServiceModel.
 *	
 ******************************************************************/
 
@@ -50,6 +58,7 @@ import java.util.Iterator;
 import org.cybergarage.upnp.control.QueryListener;
 import org.cybergarage.upnp.control.QueryRequest;
 import org.cybergarage.upnp.control.QueryResponse;
+import org.cybergarage.upnp.event.EventNotifier;
 import org.cybergarage.upnp.xml.NodeData;
 import org.cybergarage.upnp.xml.StateVariableData;
 import org.cybergarage.util.Debug;
@@ -84,7 +93,7 @@ public class StateVariable extends NodeData
 		Node serviceNode = getServiceNode();
 		if (serviceNode == null)
 			return null;
-		return new Service(serviceNode);
+		return Service.getCachedService(serviceNode);
 	}
 
 	public Node getStateVariableNode()
@@ -126,6 +135,7 @@ public class StateVariable extends NodeData
 	public void setName(String value)
 	{
 		getStateVariableNode().setNode(NAME, value);
+		Service.clearServiceModel(getServiceNode());
 	}
 
 	public String getName()
@@ -172,6 +182,178 @@ public class StateVariable extends NodeData
 		return false;
 	}
 	
+	////////////////////////////////////////////////
+	// multicast
+	////////////////////////////////////////////////
+
+	private final static String MULTICAST = "multicast";
+	private final static String MULTICAST_YES = "yes";
+	private final static String MULTICAST_NO = "no";
+
+	/**
+	 * Sets whether the changes of the variable are sent to the multicast group of UPnP
+	 * Device Architecture 1.1 in addition to the subscribers.
+	 */
+	public void setMulticast(boolean state)
+	{
+		getStateVariableNode().setAttribute(MULTICAST, (state == true) ? MULTICAST_YES : MULTICAST_NO);
+	}
+	
+	public boolean isMulticast()
+	{
+		String state = getStateVariableNode().getAttributeValue(MULTICAST);
+		if (state == null)
+			return false;
+		if (state.equalsIgnoreCase(MULTICAST_YES) == true)
+			return true;
+		return false;
+	}
+	
+	////////////////////////////////////////////////
+	// Moderation
+	////////////////////////////////////////////////
+
+	private final static String MAXIMUMRATE = "maximumRate";
+	private final static String MINIMUMDELTA = "minimumDelta";
+
+	private String getModerationValue(String name)
+	{
+		Node stateVarNode = getStateVariableNode();
+		String value = stateVarNode.getAttributeValue(name);
+		if (value != null && 0 < value.length())
+			return value;
+		return stateVarNode.getNodeValue(name);
+	}
+
+	/**
+	 * Sets the minimum interval in milliseconds between the events of the variable.
+	 * The intermediate values are not sent, and the latest value is sent at the end of the interval.
+	 * A negative value means to use the maximumRate of the description in seconds.
+	 */
+	public void setMaximumRate(long mtime)
+	{
+		getStateVariableData().setMaximumRate(mtime);
+	}
+
+	public long getMaximumRate()
+	{
+		long mtime = getStateVariableData().getMaximumRate();
+		if (0 <= mtime)
+			return mtime;
+		String value = getModerationValue(MAXIMUMRATE);
+		if (value == null || value.length() <= 0)
+			return 0;
+		try {
+			return (long)(Double.parseDouble(value.trim()) * 1000);
+		}
+		catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Sets the minimum change of the numeric value to send an event in the steps of the
+	 * allowedValueRange, or in 1 when the variable has no step.
+	 * A negative value means to use the minimumDelta of the description.
+	 */
+	public void setMinimumDelta(double delta)
+	{
+		getStateVariableData().setMinimumDelta(delta);
+	}
+
+	public double getMinimumDelta()
+	{
+		double delta = getStateVariableData().getMinimumDelta();
+		if (0 <= delta)
+			return delta;
+		String value = getModerationValue(MINIMUMDELTA);
+		if (value == null || value.length() <= 0)
+			return 0;
+		try {
+			return Double.parseDouble(value.trim());
+		}
+		catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private boolean isDeltaExceeded(String notifiedValue, String value)
+	{
+		double minDelta = getMinimumDelta();
+		if (minDelta <= 0 || notifiedValue == null)
+			return true;
+		double step = 1;
+		AllowedValueRange valueRange = getAllowedValueRange();
+		if (valueRange != null) {
+			try {
+				step = Double.parseDouble(valueRange.getStep().trim());
+			}
+			catch (Exception e) {}
+		}
+		try {
+			double delta = Double.parseDouble(value.trim()) - Double.parseDouble(notifiedValue.trim());
+			return (minDelta * step <= Math.abs(delta)) ? true : false;
+		}
+		catch (NumberFormatException e) {
+			// The delta is applied only to the numeric variables.
+			return true;
+		}
+	}
+
+	private void notifyModerated(final Service service)
+	{
+		StateVariableData data = getStateVariableData();
+		long maxRate = getMaximumRate();
+		synchronized (data) {
+			if (data.isNotifyPending() == true)
+				return;
+			if (isDeltaExceeded(data.getNotifiedValue(), data.getValue()) == false)
+				return;
+			long now = System.currentTimeMillis();
+			long delay = data.getNotifiedTime() + maxRate - now;
+			if (0 < maxRate && 0 < delay) {
+				Device dev = service.getDevice();
+				EventNotifier notifier = (dev != null) ? dev.getEventNotifier() : null;
+				if (notifier != null) {
+					Runnable flushTask = new Runnable() {
+						public void run() {
+							flushModerated(service);
+						}
+					};
+					if (notifier.schedule(flushTask, delay) == true) {
+						data.setNotifyPending(true);
+						return;
+					}
+				}
+			}
+			data.setNotified(data.getValue(), now);
+		}
+		notifyEvent(service);
+	}
+
+	private void flushModerated(Service service)
+	{
+		StateVariableData data = getStateVariableData();
+		synchronized (data) {
+			data.setNotifyPending(false);
+			String value = data.getValue();
+			if (value.equals(data.getNotifiedValue()) == true)
+				return;
+			if (isDeltaExceeded(data.getNotifiedValue(), value) == false)
+				return;
+			data.setNotified(value, System.currentTimeMillis());
+		}
+		notifyEvent(service);
+	}
+
+	private void notifyEvent(Service service)
+	{
+		if (isSendEvents() == true)
+			service.notify(this);
+		if (isMulticast() == true)
+			service.notifyMulticast(this);
+	}
+
 	////////////////////////////////////////////////
 	// set
 	////////////////////////////////////////////////
@@ -182,6 +364,7 @@ public class StateVariable extends NodeData
 		setValue(stateVar.getValue());
 		setDataType(stateVar.getDataType());
 		setSendEvents(stateVar.isSendEvents());
+		setMulticast(stateVar.isMulticast());
 	}
 	
 	////////////////////////////////////////////////
@@ -190,7 +373,11 @@ public class StateVariable extends NodeData
 
 	public StateVariableData getStateVariableData ()
 	{
-		Node node = getStateVariableNode();
+		return getStateVariableData(getStateVariableNode());
+	}
+	
+	private static StateVariableData getStateVariableData(Node node)
+	{
 		StateVariableData userData = (StateVariableData)node.getUserData();
 		if (userData == null) {
 			userData = new StateVariableData();
@@ -200,6 +387,24 @@ public class StateVariable extends NodeData
 		return userData;
 	}
 
+	/**
+	 * Returns the StateVariable object of the stateVariable node, which is created once and
+	 * reused as long as it belongs to the same service node.
+	 */
+	static StateVariable getCachedStateVariable(Node serviceNode, Node stateVarNode)
+	{
+		StateVariableData data = getStateVariableData(stateVarNode);
+		Object wrapper = data.getWrapper();
+		if (wrapper instanceof StateVariable) {
+			StateVariable var = (StateVariable)wrapper;
+			if (var.getServiceNode() == serviceNode && var.getStateVariableNode() == stateVarNode)
+				return var;
+		}
+		StateVariable var = new StateVariable(serviceNode, stateVarNode);
+		data.setWrapper(var);
+		return var;
+	}
+
 	////////////////////////////////////////////////
 	//	Value
 	////////////////////////////////////////////////
@@ -218,9 +423,9 @@ public class StateVariable extends NodeData
 		Service service = getService();
 		if (service == null)
 			return;
-		if (isSendEvents() == false)
+		if (isSendEvents() == false && isMulticast() == false)
 			return;
-		service.notify(this);
+		notifyModerated(service);
 	}
 
 	public void setValue(int value)
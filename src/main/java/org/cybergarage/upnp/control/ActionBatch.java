@@ -0,0 +1,205 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: ActionBatch.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.control;
+
+import java.util.LinkedList;
+import java.util.Vector;
+
+import org.cybergarage.upnp.Service;
+import org.cybergarage.upnp.ServiceList;
+import org.cybergarage.util.Debug;
+
+/**
+ * The invocations of an action on many services started by ActionFanOut.
+ * <p>
+ * The results are returned in the order they complete, by poll() and by the listener
+ * of the batch. All the results are returned by the deadline of the batch, and the
+ * invocations which haven't completed by then are returned as timed out.
+ */
+public class ActionBatch
+{
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	private ActionFanOut fanOut;
+	private long deadline;
+	private ActionResultListener listener;
+	private Vector<ActionFanOut.Target> targets = new Vector<ActionFanOut.Target>();
+	private ServiceList skippedServices = new ServiceList();
+
+	ActionBatch(ActionFanOut fanOut, long deadline, ActionResultListener listener)
+	{
+		this.fanOut = fanOut;
+		this.deadline = deadline;
+		this.listener = listener;
+	}
+
+	/**
+	 * Returns the time in milliseconds by which all the results are returned.
+	 */
+	public long getDeadline()
+	{
+		return deadline;
+	}
+
+	////////////////////////////////////////////////
+	//	Target
+	////////////////////////////////////////////////
+
+	void addTarget(ActionFanOut.Target target)
+	{
+		targets.add(target);
+	}
+
+	Vector<ActionFanOut.Target> getTargets()
+	{
+		return targets;
+	}
+
+	/**
+	 * Returns the number of the invocations, which is the number of the results returned
+	 * unless the batch is cancelled.
+	 */
+	public int getNInvocations()
+	{
+		return targets.size();
+	}
+
+	@SuppressWarnings("unchecked")
+	void addSkippedService(Service service)
+	{
+		skippedServices.add(service);
+	}
+
+	/**
+	 * Returns the selected services on which the action isn't invoked because they don't
+	 * have the action or the arguments don't have one of the input arguments of the action.
+	 */
+	public ServiceList getSkippedServices()
+	{
+		return skippedServices;
+	}
+
+	////////////////////////////////////////////////
+	//	Result
+	////////////////////////////////////////////////
+
+	private LinkedList<ActionResult> results = new LinkedList<ActionResult>();
+	private int nResults = 0;
+	private boolean isCancelled = false;
+
+	void resultReceived(ActionResult result)
+	{
+		synchronized (this) {
+			if (isCancelled == true)
+				return;
+			results.add(result);
+			nResults++;
+			notifyAll();
+		}
+		if (listener == null)
+			return;
+		try {
+			listener.actionResultReceived(result);
+		}
+		catch (Exception e) {
+			Debug.warning(e);
+		}
+	}
+
+	/**
+	 * Returns the number of the results received so far.
+	 */
+	public synchronized int getNResults()
+	{
+		return nResults;
+	}
+
+	/**
+	 * Returns true if all the results have been received or the batch has been cancelled.
+	 */
+	public synchronized boolean isDone()
+	{
+		return (isCancelled == true || getNInvocations() <= nResults) ? true : false;
+	}
+
+	public synchronized boolean isCancelled()
+	{
+		return isCancelled;
+	}
+
+	/**
+	 * Returns the next result in the order of completion, waiting for it at most the specified time.
+	 * @return The result, or null if no result has been received in time or all the results have been returned.
+	 */
+	public synchronized ActionResult poll(long mtime) throws InterruptedException
+	{
+		long waitDeadline = System.currentTimeMillis() + mtime;
+		while (results.size() <= 0) {
+			if (isDone() == true)
+				return null;
+			long waitTime = waitDeadline - System.currentTimeMillis();
+			if (waitTime <= 0)
+				return null;
+			wait(waitTime);
+		}
+		return results.removeFirst();
+	}
+
+	public synchronized ActionResult poll()
+	{
+		if (results.size() <= 0)
+			return null;
+		return results.removeFirst();
+	}
+
+	/**
+	 * Waits until all the results have been received or the batch has been cancelled.
+	 * @return true if the batch is done.
+	 */
+	public synchronized boolean waitForCompletion(long mtime) throws InterruptedException
+	{
+		long waitDeadline = System.currentTimeMillis() + mtime;
+		while (isDone() == false) {
+			long waitTime = waitDeadline - System.currentTimeMillis();
+			if (waitTime <= 0)
+				return false;
+			wait(waitTime);
+		}
+		return true;
+	}
+
+	////////////////////////////////////////////////
+	//	cancel
+	////////////////////////////////////////////////
+
+	/**
+	 * Cancels the invocations which haven't completed, and closes their connections.
+	 * No more results are returned by the listener, but the results received before
+	 * are still returned by poll().
+	 */
+	public void cancel()
+	{
+		synchronized (this) {
+			if (isDone() == true)
+				return;
+			isCancelled = true;
+			notifyAll();
+		}
+		fanOut.cancel(this);
+	}
+}
@@ -0,0 +1,305 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: ActionFanOut.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.control;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+
+import org.cybergarage.http.HTTP;
+import org.cybergarage.upnp.Action;
+import org.cybergarage.upnp.ArgumentList;
+import org.cybergarage.upnp.Service;
+
+/**
+ * Invokes an action on many services concurrently, such as GetExternalIPAddress on all
+ * the gateways, and returns the results as they complete in an ActionBatch.
+ * <p>
+ * At most {@link #getMaxInvocations()} invocations are in progress at a time, and at most
+ * {@link #getMaxHostInvocations()} of them to the same host. The other invocations of the
+ * host wait until one of the host completes, so that a slow host doesn't take all the
+ * threads from the other hosts. Each batch has a deadline, and the invocations which
+ * haven't completed by then, including the waiting ones, are returned as timed out.
+ */
+public class ActionFanOut
+{
+	public final static int DEFAULT_MAX_INVOCATIONS = 16;
+	public final static int DEFAULT_MAX_HOST_INVOCATIONS = 2;
+
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	private ActionInvoker invoker = new ActionInvoker();
+
+	public ActionFanOut()
+	{
+		invoker.setMaxThreads(DEFAULT_MAX_INVOCATIONS);
+	}
+
+	public ActionInvoker getActionInvoker()
+	{
+		return invoker;
+	}
+
+	////////////////////////////////////////////////
+	//	Parameters
+	////////////////////////////////////////////////
+
+	private int maxHostInvocations = DEFAULT_MAX_HOST_INVOCATIONS;
+
+	/**
+	 * Sets the number of the invocations in progress at a time of all the batches.
+	 * It is applied after stop().
+	 */
+	public void setMaxInvocations(int n)
+	{
+		invoker.setMaxThreads(n);
+	}
+
+	public int getMaxInvocations()
+	{
+		return invoker.getMaxThreads();
+	}
+
+	/**
+	 * Sets the number of the invocations in progress at a time to the same host.
+	 */
+	public void setMaxHostInvocations(int n)
+	{
+		maxHostInvocations = n;
+	}
+
+	public int getMaxHostInvocations()
+	{
+		return maxHostInvocations;
+	}
+
+	////////////////////////////////////////////////
+	//	invoke
+	////////////////////////////////////////////////
+
+	private Map<String, HostQueue> hostQueues = new HashMap<String, HostQueue>();
+	private Vector<ActionBatch> batches = new Vector<ActionBatch>();
+
+	/**
+	 * Invokes the action of the specified name on the services with the same input values.
+	 * @param timeout The time in milliseconds until all the results are returned.
+	 * @param listener The listener called with each result as it completes, or null.
+	 */
+	public ActionBatch invoke(Service services[], String actionName, ArgumentList argList, long timeout, ActionResultListener listener)
+	{
+		ActionBatch batch = new ActionBatch(this, System.currentTimeMillis() + timeout, listener);
+
+		for (int n=0; n<services.length; n++) {
+			Service service = services[n];
+			Action action = service.getAction(actionName);
+			if (action == null) {
+				batch.addSkippedService(service);
+				continue;
+			}
+			ActionInvocation inv;
+			try {
+				inv = new ActionInvocation(action, argList);
+			}
+			catch (IllegalArgumentException e) {
+				batch.addSkippedService(service);
+				continue;
+			}
+			String host = HTTP.getHost(ControlRequest.getPostURL(service));
+			batch.addTarget(new Target(batch, inv, host));
+		}
+
+		Vector<Target> targets = batch.getTargets();
+		if (targets.size() <= 0)
+			return batch;
+
+		synchronized (this) {
+			batches.add(batch);
+			int targetCnt = targets.size();
+			for (int n=0; n<targetCnt; n++) {
+				Target target = targets.get(n);
+				HostQueue hostQueue = hostQueues.get(target.host);
+				if (hostQueue == null) {
+					hostQueue = new HostQueue();
+					hostQueues.put(target.host, hostQueue);
+				}
+				if (hostQueue.activeCount < maxHostInvocations) {
+					hostQueue.activeCount++;
+					dispatch(target);
+				}
+				else {
+					hostQueue.waitingTargets.add(target);
+					scheduleTimeout(target);
+				}
+			}
+		}
+
+		return batch;
+	}
+
+	private void dispatch(Target target)
+	{
+		cancelTimeout(target);
+		long remainingTime = target.batch.getDeadline() - System.currentTimeMillis();
+		if (remainingTime < 0)
+			remainingTime = 0;
+		target.future = invoker.invoke(target.inv, remainingTime, target);
+	}
+
+	private synchronized void invocationCompleted(Target target)
+	{
+		HostQueue hostQueue = hostQueues.get(target.host);
+		if (hostQueue == null)
+			return;
+		Target nextTarget = hostQueue.waitingTargets.poll();
+		if (nextTarget != null) {
+			dispatch(nextTarget);
+			return;
+		}
+		hostQueue.activeCount--;
+		if (hostQueue.activeCount <= 0)
+			hostQueues.remove(target.host);
+	}
+
+	private synchronized void batchCompleted(ActionBatch batch)
+	{
+		batches.remove(batch);
+	}
+
+	/**
+	 * Returns the waiting target as timed out at the deadline of its batch, even if the
+	 * invocations of its host don't complete by then.
+	 */
+	private void scheduleTimeout(final Target target)
+	{
+		long remainingTime = target.batch.getDeadline() - System.currentTimeMillis();
+		if (remainingTime < 0)
+			remainingTime = 0;
+		Runnable timeoutTask = new Runnable() {
+			public void run() {
+				waitingTimedOut(target);
+			}
+		};
+		target.timer = invoker.schedule(timeoutTask, remainingTime);
+	}
+
+	private void cancelTimeout(Target target)
+	{
+		ScheduledFuture<?> timer = target.timer;
+		if (timer == null)
+			return;
+		target.timer = null;
+		invoker.cancelTimer(timer);
+	}
+
+	private void waitingTimedOut(Target target)
+	{
+		synchronized (this) {
+			HostQueue hostQueue = hostQueues.get(target.host);
+			// The target has been dispatched or cancelled.
+			if (hostQueue == null || hostQueue.waitingTargets.remove(target) == false)
+				return;
+			target.timer = null;
+		}
+		ActionBatch batch = target.batch;
+		batch.resultReceived(ActionInvoker.createTimedOutResult(target.inv));
+		if (batch.isDone() == true)
+			batchCompleted(batch);
+	}
+
+	////////////////////////////////////////////////
+	//	cancel
+	////////////////////////////////////////////////
+
+	synchronized void cancel(ActionBatch batch)
+	{
+		Vector<Target> targets = batch.getTargets();
+		int targetCnt = targets.size();
+		for (int n=0; n<targetCnt; n++) {
+			Target target = targets.get(n);
+			HostQueue hostQueue = hostQueues.get(target.host);
+			if (hostQueue != null && hostQueue.waitingTargets.remove(target) == true) {
+				cancelTimeout(target);
+				continue;
+			}
+			Future<ActionResult> future = target.future;
+			// The listener isn't called for the cancelled invocation, so release its host here.
+			if (future != null && future.cancel(true) == true)
+				invocationCompleted(target);
+		}
+		batches.remove(batch);
+	}
+
+	/**
+	 * Cancels all the batches in progress, and stops the threads of the invocations.
+	 */
+	public void stop()
+	{
+		ActionBatch activeBatches[];
+		synchronized (this) {
+			activeBatches = batches.toArray(new ActionBatch[0]);
+		}
+		for (int n=0; n<activeBatches.length; n++)
+			activeBatches[n].cancel();
+		invoker.stop();
+		synchronized (this) {
+			hostQueues.clear();
+		}
+	}
+
+	////////////////////////////////////////////////
+	//	Target
+	////////////////////////////////////////////////
+
+	class Target implements ActionResultListener
+	{
+		private ActionBatch batch;
+		private ActionInvocation inv;
+		private String host;
+		private volatile Future<ActionResult> future = null;
+		// The deadline of the target while it waits for its host.
+		private volatile ScheduledFuture<?> timer = null;
+
+		Target(ActionBatch batch, ActionInvocation inv, String host)
+		{
+			this.batch = batch;
+			this.inv = inv;
+			this.host = host;
+		}
+
+		public void actionResultReceived(ActionResult result)
+		{
+			invocationCompleted(this);
+			batch.resultReceived(result);
+			if (batch.isDone() == true)
+				batchCompleted(batch);
+		}
+	}
+
+	////////////////////////////////////////////////
+	//	HostQueue
+	////////////////////////////////////////////////
+
+	private static class HostQueue
+	{
+		private int activeCount = 0;
+		private LinkedList<Target> waitingTargets = new LinkedList<Target>();
+	}
+}
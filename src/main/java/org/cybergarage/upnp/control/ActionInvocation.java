@@ -0,0 +1,329 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: ActionInvocation.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.control;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cybergarage.upnp.Action;
+import org.cybergarage.upnp.ActionModel;
+import org.cybergarage.upnp.Argument;
+import org.cybergarage.upnp.ArgumentList;
+import org.cybergarage.upnp.UPnPStatus;
+
+/**
+ * A call of an action with its own argument values.
+ * <p>
+ * The action and the input values are fixed when the invocation is created, and the output
+ * values and the status are set only to the invocation. The argument nodes of the action
+ * aren't read nor written, so that the invocations of the same action are handled in
+ * parallel without locking. An invocation is used by one thread at a time.
+ */
+public class ActionInvocation
+{
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	private Action action;
+	private ActionResponseEncoder encoder;
+	private ActionModel model;
+	private String inValues[];
+	private String outValues[];
+
+	private ActionInvocation(Action action)
+	{
+		this.action = action;
+		encoder = action.getResponseEncoder();
+		model = encoder.getActionModel();
+		inValues = new String[model.getNInputArguments()];
+		outValues = new String[model.getNOutputArguments()];
+		for (int n=0; n<outValues.length; n++)
+			outValues[n] = "";
+		setStatus(UPnPStatus.INVALID_ACTION);
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the names don't have one of the input arguments.
+	 */
+	public ActionInvocation(Action action, String names[], String values[])
+	{
+		this(action);
+		Map<String, String> valueMap = new HashMap<String, String>(names.length * 2);
+		for (int n=0; n<names.length; n++) {
+			if (names[n] == null || valueMap.containsKey(names[n]) == true)
+				continue;
+			valueMap.put(names[n], values[n]);
+		}
+		setInputArgumentValues(valueMap);
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the argument list doesn't have one of the input arguments.
+	 */
+	public ActionInvocation(Action action, ArgumentList argList)
+	{
+		this(action);
+		setInputArgumentValues(toValueMap(argList));
+	}
+
+	private static Map<String, String> toValueMap(ArgumentList argList)
+	{
+		int nValues = argList.size();
+		Map<String, String> valueMap = new HashMap<String, String>(nValues * 2);
+		for (int n=0; n<nValues; n++) {
+			Argument arg = argList.getArgument(n);
+			String name = arg.getName();
+			if (name == null || valueMap.containsKey(name) == true)
+				continue;
+			valueMap.put(name, arg.getValue());
+		}
+		return valueMap;
+	}
+
+	private void setInputArgumentValues(Map<String, String> valueMap)
+	{
+		for (int n=0; n<inValues.length; n++) {
+			String argName = model.getInputArgument(n).getName();
+			if (valueMap.containsKey(argName) == false)
+				throw new IllegalArgumentException("Argument \"" + argName + "\" missing.");
+			inValues[n] = valueMap.get(argName);
+		}
+	}
+
+	////////////////////////////////////////////////
+	//	Action
+	////////////////////////////////////////////////
+
+	public Action getAction()
+	{
+		return action;
+	}
+
+	public String getName()
+	{
+		return action.getName();
+	}
+
+	/**
+	 * Returns the arguments of the action when the invocation was created, which are in
+	 * the same order as the argument values of the invocation.
+	 */
+	public ActionModel getActionModel()
+	{
+		return model;
+	}
+
+	ActionResponseEncoder getResponseEncoder()
+	{
+		return encoder;
+	}
+
+	////////////////////////////////////////////////
+	//	Input Argument
+	////////////////////////////////////////////////
+
+	public int getNInputArguments()
+	{
+		return inValues.length;
+	}
+
+	public String getInputArgumentName(int n)
+	{
+		return model.getInputArgument(n).getName();
+	}
+
+	public String getInputArgumentValue(int n)
+	{
+		return inValues[n];
+	}
+
+	@SuppressWarnings("unchecked")
+	public ArgumentList getInputArgumentList()
+	{
+		ArgumentList argList = new ArgumentList();
+		for (int n=0; n<inValues.length; n++)
+			argList.add(new Argument(getInputArgumentName(n), inValues[n]));
+		return argList;
+	}
+
+	////////////////////////////////////////////////
+	//	Output Argument
+	////////////////////////////////////////////////
+
+	public int getNOutputArguments()
+	{
+		return outValues.length;
+	}
+
+	public String getOutputArgumentName(int n)
+	{
+		return model.getOutputArgument(n).getName();
+	}
+
+	public String getOutputArgumentValue(int n)
+	{
+		return outValues[n];
+	}
+
+	public void setOutputArgumentValue(int n, String value)
+	{
+		outValues[n] = value;
+	}
+
+	/**
+	 * Sets the values of the output arguments from the argument list which is matched by the names.
+	 * @throws IllegalArgumentException if the argument list doesn't have one of the output arguments.
+	 */
+	public void setOutputArgumentValues(ArgumentList argList)
+	{
+		Map<String, String> valueMap = toValueMap(argList);
+		for (int n=0; n<outValues.length; n++) {
+			String argName = getOutputArgumentName(n);
+			if (valueMap.containsKey(argName) == false)
+				throw new IllegalArgumentException("Argument \"" + argName + "\" missing.");
+			outValues[n] = valueMap.get(argName);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public ArgumentList getOutputArgumentList()
+	{
+		ArgumentList argList = new ArgumentList();
+		for (int n=0; n<outValues.length; n++)
+			argList.add(new Argument(getOutputArgumentName(n), outValues[n]));
+		return argList;
+	}
+
+	////////////////////////////////////////////////
+	//	Argument
+	////////////////////////////////////////////////
+
+	/**
+	 * Sets the value of the output argument. The value is ignored if the action doesn't have the output argument.
+	 */
+	public void setArgumentValue(String name, String value)
+	{
+		int index = model.getOutputArgumentIndex(name);
+		if (index < 0)
+			return;
+		outValues[index] = value;
+	}
+
+	public void setArgumentValue(String name, int value)
+	{
+		setArgumentValue(name, Integer.toString(value));
+	}
+
+	/**
+	 * Returns the value of the input or the output argument, or "" if the action doesn't have the argument.
+	 */
+	public String getArgumentValue(String name)
+	{
+		int index = model.getInputArgumentIndex(name);
+		if (0 <= index)
+			return inValues[index];
+		index = model.getOutputArgumentIndex(name);
+		if (0 <= index)
+			return outValues[index];
+		return "";
+	}
+
+	public int getArgumentIntegerValue(String name)
+	{
+		try {
+			return Integer.parseInt(getArgumentValue(name));
+		}
+		catch (Exception e) {
+			return 0;
+		}
+	}
+
+	////////////////////////////////////////////////
+	//	UPnPStatus
+	////////////////////////////////////////////////
+
+	private UPnPStatus upnpStatus = new UPnPStatus();
+
+	public void setStatus(int code, String descr)
+	{
+		upnpStatus.setCode(code);
+		upnpStatus.setDescription(descr);
+	}
+
+	public void setStatus(int code)
+	{
+		setStatus(code, UPnPStatus.code2String(code));
+	}
+
+	public UPnPStatus getStatus()
+	{
+		return upnpStatus;
+	}
+
+	////////////////////////////////////////////////
+	//	ControlResponse
+	////////////////////////////////////////////////
+
+	private ControlResponse ctrlRes = null;
+
+	/**
+	 * Sets the response of the invocation posted by a control point.
+	 */
+	public void setControlResponse(ControlResponse res)
+	{
+		ctrlRes = res;
+	}
+
+	/**
+	 * Returns the response of the invocation posted by a control point, or null if the
+	 * invocation hasn't been posted.
+	 */
+	public ControlResponse getControlResponse()
+	{
+		return ctrlRes;
+	}
+
+	public UPnPStatus getControlStatus()
+	{
+		if (ctrlRes == null)
+			return null;
+		return ctrlRes.getUPnPError();
+	}
+
+	/**
+	 * Sets the response of the posted invocation, and sets the status and the output values from it.
+	 * @return true if the action has succeeded and the response has all the output arguments.
+	 */
+	public boolean setActionResponse(ActionResponse ctrlRes)
+	{
+		setControlResponse(ctrlRes);
+		// Thanks for Dimas <cyberrate@users.sourceforge.net> and Stefano Lenzi <kismet-sl@users.sourceforge.net> (07/09/04)
+		int statCode = ctrlRes.getStatusCode();
+		setStatus(statCode);
+		if (ctrlRes.isSuccessful() == false)
+			return false;
+		ArgumentList outArgList = ctrlRes.getResponse();
+		try {
+			setOutputArgumentValues(outArgList);
+		}
+		catch (IllegalArgumentException e) {
+			setStatus(UPnPStatus.INVALID_ARGS, "Action succesfully delivered but invalid arguments returned.");
+			return false;
+		}
+		return true;
+	}
+}
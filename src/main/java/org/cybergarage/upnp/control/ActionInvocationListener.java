@@ -0,0 +1,30 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: ActionInvocationListener.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.control;
+
+/**
+ * Receives the action requests as ActionInvocations. Unlike ActionListener, the listener is
+ * called concurrently for the requests of the same action, so read the input values and set
+ * the output values and the status through the invocation only.
+ */
+public interface ActionInvocationListener
+{
+	/**
+	 * @return true to answer the output values of the invocation, or false to answer the status
+	 *         of the invocation as a fault.
+	 */
+	public boolean actionInvocationReceived(ActionInvocation inv);
+}
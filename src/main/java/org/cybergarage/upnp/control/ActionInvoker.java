@@ -0,0 +1,372 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: ActionInvoker.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.control;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cybergarage.http.HTTPConnectionPool;
+import org.cybergarage.http.HTTPStatus;
+import org.cybergarage.util.Debug;
+
+/**
+ * Posts ActionInvocations asynchronously on the connections kept alive per host.
+ * <p>
+ * Each invocation has a deadline, and the connection is closed when no response has been
+ * received by the deadline or when the returned Future is cancelled. The argument nodes of
+ * the actions aren't changed, so the same action is invoked concurrently.
+ */
+public class ActionInvoker
+{
+	public final static int DEFAULT_MAX_THREADS = 8;
+	public final static long DEFAULT_TIMEOUT = 30000;
+
+	private final static String TIMEOUT_DESCRIPTION = "Action timed out";
+	private final static int TIMER_PURGE_INTERVAL = 64;
+
+	////////////////////////////////////////////////
+	//	Default Invoker
+	////////////////////////////////////////////////
+
+	private static ActionInvoker defaultInvoker = null;
+
+	/**
+	 * Returns the invoker shared by Action.invokeAsync().
+	 */
+	public final static synchronized ActionInvoker getDefaultInvoker()
+	{
+		if (defaultInvoker == null)
+			defaultInvoker = new ActionInvoker();
+		return defaultInvoker;
+	}
+
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	private HTTPConnectionPool connPool = new HTTPConnectionPool();
+
+	public ActionInvoker()
+	{
+	}
+
+	public HTTPConnectionPool getConnectionPool()
+	{
+		return connPool;
+	}
+
+	////////////////////////////////////////////////
+	//	Parameters
+	////////////////////////////////////////////////
+
+	private int maxThreads = DEFAULT_MAX_THREADS;
+	private long timeout = DEFAULT_TIMEOUT;
+
+	/**
+	 * Sets the number of the threads posting the invocations, which is the number of the
+	 * invocations in progress at a time. It is applied after stop().
+	 */
+	public void setMaxThreads(int n)
+	{
+		maxThreads = n;
+	}
+
+	public int getMaxThreads()
+	{
+		return maxThreads;
+	}
+
+	/**
+	 * Sets the default timeout of the invocations including the time waiting for a thread.
+	 */
+	public void setTimeout(long mtime)
+	{
+		timeout = mtime;
+	}
+
+	public long getTimeout()
+	{
+		return timeout;
+	}
+
+	////////////////////////////////////////////////
+	//	Executor
+	////////////////////////////////////////////////
+
+	private ScheduledThreadPoolExecutor executor = null;
+	// The timeouts run in their own thread because all the threads of the executor may be blocked.
+	private ScheduledThreadPoolExecutor timer = null;
+
+	private static ScheduledThreadPoolExecutor createExecutor(int nThreads, final String name)
+	{
+		ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(
+			nThreads,
+			new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, name);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		return pool;
+	}
+
+	private synchronized ScheduledThreadPoolExecutor getExecutor()
+	{
+		if (executor == null) {
+			executor = createExecutor(maxThreads, "Cyber.ActionInvoker");
+			timer = createExecutor(1, "Cyber.ActionInvoker.Timer");
+		}
+		return executor;
+	}
+
+	private synchronized ScheduledThreadPoolExecutor getTimer()
+	{
+		getExecutor();
+		return timer;
+	}
+
+	private AtomicInteger cancelledTimerCount = new AtomicInteger(0);
+
+	/**
+	 * Cancels the timeout of a completed invocation. The cancelled timeouts are removed from
+	 * the queue of the timer in batches, because they stay there until their delays expire.
+	 */
+	void cancelTimer(ScheduledFuture<?> timerTask)
+	{
+		if (timerTask.cancel(false) == false)
+			return;
+		if (cancelledTimerCount.incrementAndGet() % TIMER_PURGE_INTERVAL != 0)
+			return;
+		ScheduledThreadPoolExecutor timerPool;
+		synchronized (this) {
+			timerPool = timer;
+		}
+		if (timerPool != null)
+			timerPool.purge();
+	}
+
+	/**
+	 * Runs the task on the timer after the delay in milliseconds, which is used by ActionFanOut
+	 * for the deadlines of the invocations waiting for their hosts.
+	 */
+	ScheduledFuture<?> schedule(Runnable task, long delay)
+	{
+		return getTimer().schedule(task, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Cancels the invocations in progress and closes the idle connections. The invoker
+	 * starts again at the next invoke().
+	 */
+	public void stop()
+	{
+		ScheduledThreadPoolExecutor pool;
+		ScheduledThreadPoolExecutor timerPool;
+		synchronized (this) {
+			pool = executor;
+			timerPool = timer;
+			executor = null;
+			timer = null;
+		}
+		if (pool != null)
+			pool.shutdownNow();
+		if (timerPool != null)
+			timerPool.shutdownNow();
+		connPool.clear();
+	}
+
+	////////////////////////////////////////////////
+	//	invoke
+	////////////////////////////////////////////////
+
+	/**
+	 * Posts the invocation asynchronously.
+	 * @param timeout The time in milliseconds until the result is returned as timed out.
+	 * @param listener The listener called with the result, or null.
+	 * @return The future of the result. Cancelling it closes the connection of the invocation.
+	 */
+	public Future<ActionResult> invoke(ActionInvocation inv, long timeout, ActionResultListener listener)
+	{
+		Invocation invocation = new Invocation(inv, System.currentTimeMillis() + timeout);
+		InvocationTask task = new InvocationTask(invocation, listener);
+		task.setTimer(getTimer().schedule(new TimeoutTask(task), timeout, TimeUnit.MILLISECONDS));
+		getExecutor().execute(task);
+		return task;
+	}
+
+	public Future<ActionResult> invoke(ActionInvocation inv, ActionResultListener listener)
+	{
+		return invoke(inv, getTimeout(), listener);
+	}
+
+	public Future<ActionResult> invoke(ActionInvocation inv)
+	{
+		return invoke(inv, getTimeout(), null);
+	}
+
+	final static ActionResult createTimedOutResult(ActionInvocation inv)
+	{
+		inv.setStatus(HTTPStatus.INTERNAL_SERVER_ERROR, TIMEOUT_DESCRIPTION);
+		return new ActionResult(inv, false, true);
+	}
+
+	////////////////////////////////////////////////
+	//	Invocation
+	////////////////////////////////////////////////
+
+	private class Invocation implements Callable<ActionResult>
+	{
+		private ActionInvocation inv;
+		private long deadline;
+		private volatile ActionRequest ctrlReq = null;
+		private volatile boolean isAborted = false;
+		private volatile boolean isTimedOut = false;
+		private AtomicBoolean isStarted = new AtomicBoolean(false);
+
+		Invocation(ActionInvocation inv, long deadline)
+		{
+			this.inv = inv;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Returns true only once, for the thread which posts the invocation or completes it as timed out.
+		 */
+		boolean start()
+		{
+			return isStarted.compareAndSet(false, true);
+		}
+
+		public ActionResult call()
+		{
+			// The invocation has been completed as timed out while waiting for a thread.
+			if (start() == false)
+				return null;
+			long remainingTime = deadline - System.currentTimeMillis();
+			if (remainingTime <= 0 || isTimedOut == true)
+				return timedOut();
+			ActionRequest req = new ActionRequest();
+			req.setRequest(inv);
+			if (remainingTime < req.getConnectTimeout())
+				req.setConnectTimeout((int)remainingTime);
+			req.setReadTimeout((int)remainingTime);
+			if (Debug.isOn() == true)
+				req.print();
+			ctrlReq = req;
+			// abort() has been called before the request is set.
+			if (isAborted == true)
+				return (isTimedOut == true) ? timedOut() : null;
+			ActionResponse res = req.post(connPool);
+			ctrlReq = null;
+			if (Debug.isOn() == true)
+				res.print();
+			if (isTimedOut == true || (res.isSuccessful() == false && deadline <= System.currentTimeMillis()))
+				return timedOut();
+			boolean isSucceeded = inv.setActionResponse(res);
+			return new ActionResult(inv, isSucceeded, false);
+		}
+
+		ActionResult timedOut()
+		{
+			return createTimedOutResult(inv);
+		}
+
+		void abort(boolean isTimedOut)
+		{
+			if (isTimedOut == true)
+				this.isTimedOut = true;
+			isAborted = true;
+			ActionRequest req = ctrlReq;
+			if (req != null)
+				req.abortPost();
+		}
+	}
+
+	private class InvocationTask extends FutureTask<ActionResult>
+	{
+		private Invocation invocation;
+		private ActionResultListener listener;
+		private volatile ScheduledFuture<?> timer = null;
+
+		InvocationTask(Invocation invocation, ActionResultListener listener)
+		{
+			super(invocation);
+			this.invocation = invocation;
+			this.listener = listener;
+		}
+
+		void setTimer(ScheduledFuture<?> timer)
+		{
+			this.timer = timer;
+			if (isDone() == true)
+				cancelTimer(timer);
+		}
+
+		void timeout()
+		{
+			invocation.abort(true);
+			// Don't wait for a thread to return the result when all the threads are busy.
+			if (invocation.start() == true)
+				set(invocation.timedOut());
+		}
+
+		public boolean cancel(boolean mayInterruptIfRunning)
+		{
+			boolean isCancelled = super.cancel(mayInterruptIfRunning);
+			if (isCancelled == true)
+				invocation.abort(false);
+			return isCancelled;
+		}
+
+		protected void done()
+		{
+			ScheduledFuture<?> timer = this.timer;
+			if (timer != null)
+				cancelTimer(timer);
+			if (isCancelled() == true || listener == null)
+				return;
+			try {
+				listener.actionResultReceived(get());
+			}
+			catch (Exception e) {
+				Debug.warning(e);
+			}
+		}
+	}
+
+	private static class TimeoutTask implements Runnable
+	{
+		private InvocationTask task;
+
+		TimeoutTask(InvocationTask task)
+		{
+			this.task = task;
+		}
+
+		public void run()
+		{
+			task.timeout();
+		}
+	}
+}
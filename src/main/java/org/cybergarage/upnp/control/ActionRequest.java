@@ -12,6 +12,9 @@
 *		- first revision.
 *	05/09/05
 *		- Changed getActionName() to return when the delimiter is not found.
+*	10/18/26
+*		- Added setRequest(ActionInvocation).
+*		- Added post(HTTPConnectionPool).
 *	
 ******************************************************************/
 
@@ -107,6 +110,11 @@ public class ActionRequest extends ControlRequest
 		setSOAPAction(soapAction);
 	}
 
+	public void setRequest(ActionInvocation inv)
+	{
+		setRequest(inv.getAction(), inv.getInputArgumentList());
+	}
+
 	////////////////////////////////////////////////
 	//	Contents
 	////////////////////////////////////////////////
@@ -141,5 +149,11 @@ public class ActionRequest extends ControlRequest
 		SOAPResponse soapRes = postMessage(getRequestHost(), getRequestPort());
 		return new ActionResponse(soapRes);
 	}
+
+	public ActionResponse post(HTTPConnectionPool connPool)
+	{
+		SOAPResponse soapRes = postMessage(getRequestHost(), getRequestPort(), connPool);
+		return new ActionResponse(soapRes);
+	}
 }
 
@@ -0,0 +1,211 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: ActionRequestDecoder.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.control;
+
+import java.io.ByteArrayInputStream;
+import java.util.Vector;
+
+import org.cybergarage.util.Debug;
+import org.cybergarage.xml.ParserException;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+/**
+ * Decodes the action name and the argument values of a SOAP action request in one pass
+ * of a pull parser, without building the Node tree of the envelope.
+ */
+public class ActionRequestDecoder
+{
+	private final static String BODY = "Body";
+
+	// The depths of the elements in the envelope.
+	private final static int ENVELOPE_DEPTH = 1;
+	private final static int BODY_DEPTH = 2;
+	private final static int ACTION_DEPTH = 3;
+	private final static int ARGUMENT_DEPTH = 4;
+
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	private String actionName;
+	private String argNames[];
+	private String argValues[];
+
+	private ActionRequestDecoder(String actionName, String argNames[], String argValues[])
+	{
+		this.actionName = actionName;
+		this.argNames = argNames;
+		this.argValues = argValues;
+	}
+
+	////////////////////////////////////////////////
+	//	Action
+	////////////////////////////////////////////////
+
+	/**
+	 * Returns the local name of the action element.
+	 */
+	public String getActionName()
+	{
+		return actionName;
+	}
+
+	public int getNArguments()
+	{
+		return argNames.length;
+	}
+
+	public String getArgumentName(int n)
+	{
+		return argNames[n];
+	}
+
+	public String getArgumentValue(int n)
+	{
+		return argValues[n];
+	}
+
+	public String[] getArgumentNames()
+	{
+		return argNames;
+	}
+
+	public String[] getArgumentValues()
+	{
+		return argValues;
+	}
+
+	////////////////////////////////////////////////
+	//	Factory
+	////////////////////////////////////////////////
+
+	private static XmlPullParserFactory parserFactory = null;
+	private static boolean isParserFactoryLoaded = false;
+
+	private synchronized static XmlPullParserFactory getParserFactory()
+	{
+		if (isParserFactoryLoaded == true)
+			return parserFactory;
+		isParserFactoryLoaded = true;
+		try {
+			XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+			factory.setNamespaceAware(true);
+			parserFactory = factory;
+		}
+		catch (Throwable e) {
+			Debug.warning("ActionRequestDecoder: no pull parser is available, " + e);
+		}
+		return parserFactory;
+	}
+
+	/**
+	 * Returns true if a pull parser is available to decode().
+	 */
+	public final static boolean isAvailable()
+	{
+		return (getParserFactory() != null) ? true : false;
+	}
+
+	////////////////////////////////////////////////
+	//	decode
+	////////////////////////////////////////////////
+
+	/**
+	 * Decodes the content of the action request. The parser stops at the end of the action
+	 * element, so the rest of the envelope isn't read.
+	 * @return The decoded action, or null if no pull parser is available.
+	 * @throws ParserException if the content isn't a valid envelope including an action element.
+	 */
+	public final static ActionRequestDecoder decode(byte content[]) throws ParserException
+	{
+		XmlPullParserFactory factory = getParserFactory();
+		if (factory == null)
+			return null;
+		try {
+			XmlPullParser xpp = factory.newPullParser();
+			xpp.setInput(new ByteArrayInputStream(content), null);
+			if (nextStartTag(xpp, ENVELOPE_DEPTH) == false)
+				throw new ParserException("No Envelope element");
+			boolean hasBody = false;
+			while (nextStartTag(xpp, BODY_DEPTH) == true) {
+				if (BODY.equals(xpp.getName()) == true) {
+					hasBody = true;
+					break;
+				}
+			}
+			if (hasBody == false)
+				throw new ParserException("No Body element");
+			if (nextStartTag(xpp, ACTION_DEPTH) == false)
+				throw new ParserException("No action element");
+			String actionName = xpp.getName();
+			Vector<String> nameList = new Vector<String>();
+			Vector<String> valueList = new Vector<String>();
+			while (nextStartTag(xpp, ARGUMENT_DEPTH) == true) {
+				nameList.add(xpp.getName());
+				valueList.add(readText(xpp));
+			}
+			String argNames[] = new String[nameList.size()];
+			nameList.copyInto(argNames);
+			String argValues[] = new String[valueList.size()];
+			valueList.copyInto(argValues);
+			return new ActionRequestDecoder(actionName, argNames, argValues);
+		}
+		catch (ParserException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			throw new ParserException(e);
+		}
+	}
+
+	/**
+	 * Moves to the next start tag at the depth.
+	 * @return false if the parent element or the document ends before it.
+	 */
+	private final static boolean nextStartTag(XmlPullParser xpp, int depth) throws Exception
+	{
+		while (true) {
+			int eventType = xpp.next();
+			if (eventType == XmlPullParser.END_DOCUMENT)
+				return false;
+			if (eventType == XmlPullParser.START_TAG && xpp.getDepth() == depth)
+				return true;
+			if (eventType == XmlPullParser.END_TAG && xpp.getDepth() < depth)
+				return false;
+		}
+	}
+
+	/**
+	 * Reads the text of the current element, the texts of the child elements are skipped.
+	 */
+	private final static String readText(XmlPullParser xpp) throws Exception
+	{
+		int depth = xpp.getDepth();
+		StringBuffer value = new StringBuffer();
+		while (true) {
+			int eventType = xpp.next();
+			if (eventType == XmlPullParser.END_DOCUMENT)
+				throw new ParserException("Unexpected end of the document");
+			if (eventType == XmlPullParser.TEXT && xpp.getDepth() == depth)
+				value.append(xpp.getText());
+			else if (eventType == XmlPullParser.END_TAG && xpp.getDepth() == depth)
+				break;
+		}
+		return value.toString();
+	}
+}
+
@@ -14,6 +14,10 @@
 *		- Giordano Sassaroli <sassarol@cefriel.it>
 *		- Problem : Action Responses do not contain the mandatory header field EXT
 *		- Error : ActionResponse class does not set the EXT header
+*	10/18/26
+*		- Changed createResponseNode() to use the output arguments of the ActionModel.
+*		- Changed setResponse() to encode the response with ActionResponseEncoder instead of the Node tree.
+*		- Added setResponse(ActionInvocation).
 *	
 ******************************************************************/
 
@@ -49,40 +53,13 @@ public class ActionResponse extends ControlResponse
 	public void setResponse(Action action)
 	{
 		setStatusCode(HTTPStatus.OK);
-	
-		Node bodyNode = getBodyNode();
-		Node resNode = createResponseNode(action);
-		bodyNode.addNode(resNode);
-
-		Node envNode = getEnvelopeNode();
-		setContent(envNode);
+		setContent(action.getResponseEncoder().encode());
 	}
 
-	private Node createResponseNode(Action action)
+	public void setResponse(ActionInvocation inv)
 	{
-		String actionName = action.getName();
-		Node actionNameResNode = new Node(SOAP.METHODNS + SOAP.DELIM + actionName + SOAP.RESPONSE);
-		
-		Service service = action.getService();
-		if (service != null) {
-			actionNameResNode.setAttribute(
-				"xmlns:" + SOAP.METHODNS,
-					service.getServiceType());
-		}
-		
-		ArgumentList argList = action.getArgumentList();
-		int nArgs = argList.size();
-		for (int n=0; n<nArgs; n++) {
-			Argument arg = argList.getArgument(n);
-			if (arg.isOutDirection() == false)
-				continue;
-			Node argNode = new Node();
-			argNode.setName(arg.getName());
-			argNode.setValue(arg.getValue());
-			actionNameResNode.addNode(argNode);
-		}
-		
-		return actionNameResNode;
+		setStatusCode(HTTPStatus.OK);
+		setContent(inv.getResponseEncoder().encode(inv));
 	}
 
 	////////////////////////////////////////////////
@@ -0,0 +1,174 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: ActionResponseEncoder.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.control;
+
+import org.cybergarage.soap.SOAP;
+import org.cybergarage.soap.SOAPEncoder;
+import org.cybergarage.upnp.Action;
+import org.cybergarage.upnp.ActionModel;
+import org.cybergarage.upnp.Argument;
+import org.cybergarage.upnp.Service;
+import org.cybergarage.xml.XML;
+
+/**
+ * Encodes the SOAP responses of an action into UTF-8 bytes without building the Node tree.
+ * <p>
+ * The tags of the response element and the output arguments are encoded once per action,
+ * and only the argument values are encoded for each response. The encoder is compiled
+ * from the ActionModel and the serviceType of the action, use {@link #isCompiledFrom(ActionModel, String)}
+ * to check whether it is still valid.
+ */
+public class ActionResponseEncoder
+{
+	private final static int ARGUMENT_VALUE_SIZE = 32;
+
+	private final static byte FAULT_HEAD[] = SOAPEncoder.toBytes(
+		SOAPEncoder.getIndent(2) + "<" + SOAP.XMLNS + SOAP.DELIM + SOAP.FAULT + ">\n" +
+		SOAPEncoder.getIndent(3) + "<" + SOAP.FAULT_CODE + ">" + SOAP.XMLNS + SOAP.DELIM + ControlResponse.FAULT_CODE + "</" + SOAP.FAULT_CODE + ">\n" +
+		SOAPEncoder.getIndent(3) + "<" + SOAP.FAULT_STRING + ">" + ControlResponse.FAULT_STRING + "</" + SOAP.FAULT_STRING + ">\n" +
+		SOAPEncoder.getIndent(3) + "<" + SOAP.DETAIL + ">\n" +
+		SOAPEncoder.getIndent(4) + "<" + SOAP.UPNP_ERROR + " xmlns=\"" + Control.XMLNS + "\">\n" +
+		SOAPEncoder.getIndent(5) + "<" + SOAP.ERROR_CODE + ">");
+	private final static byte FAULT_DESCRIPTION_HEAD[] = SOAPEncoder.toBytes(
+		"</" + SOAP.ERROR_CODE + ">\n" +
+		SOAPEncoder.getIndent(5) + "<" + SOAP.ERROR_DESCRIPTION + ">");
+	private final static byte FAULT_TAIL[] = SOAPEncoder.toBytes(
+		"</" + SOAP.ERROR_DESCRIPTION + ">\n" +
+		SOAPEncoder.getIndent(4) + "</" + SOAP.UPNP_ERROR + ">\n" +
+		SOAPEncoder.getIndent(3) + "</" + SOAP.DETAIL + ">\n" +
+		SOAPEncoder.getIndent(2) + "</" + SOAP.XMLNS + SOAP.DELIM + SOAP.FAULT + ">\n");
+
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	private ActionModel model;
+	private String serviceType;
+	private byte responseHead[];
+	private byte responseTail[];
+	private byte argHeads[][];
+	private byte argTails[][];
+	private int templateSize;
+
+	public ActionResponseEncoder(Action action)
+	{
+		model = action.getActionModel();
+		Service service = action.getService();
+		serviceType = (service != null) ? service.getServiceType() : null;
+
+		String resName = SOAP.METHODNS + SOAP.DELIM + action.getName() + SOAP.RESPONSE;
+		String resHead = SOAPEncoder.getIndent(2) + "<" + resName;
+		if (serviceType != null)
+			resHead += " xmlns" + SOAP.DELIM + SOAP.METHODNS + "=\"" + XML.escapeXMLChars(serviceType) + "\"";
+		resHead += ">";
+		responseHead = SOAPEncoder.toBytes(resHead);
+		int argCnt = model.getNOutputArguments();
+		// The closing tag of a response without output arguments follows the opening tag as Node.output() does.
+		String resTail = "</" + resName + ">\n";
+		if (0 < argCnt)
+			resTail = "\n" + SOAPEncoder.getIndent(2) + resTail;
+		responseTail = SOAPEncoder.toBytes(resTail);
+		templateSize = SOAPEncoder.ENVELOPE_HEAD.length + responseHead.length + responseTail.length + SOAPEncoder.ENVELOPE_TAIL.length;
+
+		argHeads = new byte[argCnt][];
+		argTails = new byte[argCnt][];
+		for (int n=0; n<argCnt; n++) {
+			String argName = model.getOutputArgument(n).getName();
+			argHeads[n] = SOAPEncoder.toBytes("\n" + SOAPEncoder.getIndent(3) + "<" + argName + ">");
+			argTails[n] = SOAPEncoder.toBytes("</" + argName + ">");
+			templateSize += argHeads[n].length + argTails[n].length + ARGUMENT_VALUE_SIZE;
+		}
+	}
+
+	public ActionModel getActionModel()
+	{
+		return model;
+	}
+
+	public boolean isCompiledFrom(ActionModel model, String serviceType)
+	{
+		if (this.model != model)
+			return false;
+		if (this.serviceType == null)
+			return (serviceType == null) ? true : false;
+		return this.serviceType.equals(serviceType);
+	}
+
+	////////////////////////////////////////////////
+	//	Encode
+	////////////////////////////////////////////////
+
+	/**
+	 * Encodes the response with the current values of the output arguments.
+	 */
+	public byte[] encode()
+	{
+		int argCnt = argHeads.length;
+		String values[] = new String[argCnt];
+		for (int n=0; n<argCnt; n++) {
+			Argument arg = model.getOutputArgument(n);
+			values[n] = arg.getValue();
+		}
+		return encode(values);
+	}
+
+	/**
+	 * Encodes the response with the output values of the invocation, which must be created
+	 * from the same ActionModel as this encoder.
+	 */
+	public byte[] encode(ActionInvocation inv)
+	{
+		int argCnt = argHeads.length;
+		String values[] = new String[argCnt];
+		for (int n=0; n<argCnt; n++)
+			values[n] = inv.getOutputArgumentValue(n);
+		return encode(values);
+	}
+
+	private byte[] encode(String values[])
+	{
+		SOAPEncoder enc = new SOAPEncoder(templateSize);
+		enc.write(SOAPEncoder.ENVELOPE_HEAD);
+		enc.write(responseHead);
+		int argCnt = argHeads.length;
+		for (int n=0; n<argCnt; n++) {
+			enc.write(argHeads[n]);
+			enc.writeEscaped(values[n]);
+			enc.write(argTails[n]);
+		}
+		enc.write(responseTail);
+		enc.write(SOAPEncoder.ENVELOPE_TAIL);
+		return enc.toByteArray();
+	}
+
+	/**
+	 * Encodes the fault response with the UPnPError detail.
+	 */
+	public final static byte[] encodeFault(int errCode, String errDescr)
+	{
+		SOAPEncoder enc = new SOAPEncoder(
+			SOAPEncoder.ENVELOPE_HEAD.length + FAULT_HEAD.length + FAULT_DESCRIPTION_HEAD.length +
+			FAULT_TAIL.length + SOAPEncoder.ENVELOPE_TAIL.length + ARGUMENT_VALUE_SIZE * 2);
+		enc.write(SOAPEncoder.ENVELOPE_HEAD);
+		enc.write(FAULT_HEAD);
+		enc.writeEscaped(Integer.toString(errCode));
+		enc.write(FAULT_DESCRIPTION_HEAD);
+		enc.writeEscaped(errDescr);
+		enc.write(FAULT_TAIL);
+		enc.write(SOAPEncoder.ENVELOPE_TAIL);
+		return enc.toByteArray();
+	}
+}
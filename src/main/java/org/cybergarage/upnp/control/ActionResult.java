@@ -0,0 +1,103 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: ActionResult.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.control;
+
+import org.cybergarage.upnp.Action;
+import org.cybergarage.upnp.ArgumentList;
+import org.cybergarage.upnp.UPnPStatus;
+
+/**
+ * The result of an invocation posted by ActionInvoker.
+ */
+public class ActionResult
+{
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	private ActionInvocation inv;
+	private boolean isSucceeded;
+	private boolean isTimedOut;
+
+	public ActionResult(ActionInvocation inv, boolean isSucceeded, boolean isTimedOut)
+	{
+		this.inv = inv;
+		this.isSucceeded = isSucceeded;
+		this.isTimedOut = isTimedOut;
+	}
+
+	public ActionInvocation getInvocation()
+	{
+		return inv;
+	}
+
+	public Action getAction()
+	{
+		return inv.getAction();
+	}
+
+	////////////////////////////////////////////////
+	//	Status
+	////////////////////////////////////////////////
+
+	public boolean isSuccessful()
+	{
+		return isSucceeded;
+	}
+
+	/**
+	 * Returns true if no response has been received within the timeout.
+	 */
+	public boolean isTimedOut()
+	{
+		return isTimedOut;
+	}
+
+	/**
+	 * Returns the HTTP status of the response, or the UPnP status when the output arguments are invalid.
+	 */
+	public UPnPStatus getStatus()
+	{
+		return inv.getStatus();
+	}
+
+	/**
+	 * Returns the UPnPError of the fault response, or null if no response has been received.
+	 */
+	public UPnPStatus getControlStatus()
+	{
+		return inv.getControlStatus();
+	}
+
+	////////////////////////////////////////////////
+	//	Argument
+	////////////////////////////////////////////////
+
+	public String getArgumentValue(String name)
+	{
+		return inv.getArgumentValue(name);
+	}
+
+	public int getArgumentIntegerValue(String name)
+	{
+		return inv.getArgumentIntegerValue(name);
+	}
+
+	public ArgumentList getOutputArgumentList()
+	{
+		return inv.getOutputArgumentList();
+	}
+}
@@ -0,0 +1,25 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: ActionResultListener.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.control;
+
+public interface ActionResultListener
+{
+	/**
+	 * Called in a thread of the ActionInvoker when the invocation has completed or timed out.
+	 * It isn't called when the invocation is cancelled.
+	 */
+	public void actionResultReceived(ActionResult result);
+}
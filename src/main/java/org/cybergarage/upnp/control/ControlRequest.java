@@ -36,6 +36,8 @@
 *	03/20/04
 *		- Thanks for Thomas Schulz <tsroyale at users.sourceforge.net>
 *		- Fixed setRequestHost() for Sony's UPnP stack when the URLBase has the path.
+*	10/18/26
+*		- Added getPostURL() for ActionFanOut.
 *
 ******************************************************************/
 
@@ -102,6 +104,22 @@ public class ControlRequest extends SOAPRequest
 		// Thanks for Giordano Sassaroli <sassarol@cefriel.it> (05/21/03)
 		setURI(ctrlURL, true);
 
+		String postURL = getPostURL(service);
+		String reqHost = HTTP.getHost(postURL);
+		int reqPort = HTTP.getPort(postURL);
+		
+		setHost(reqHost, reqPort);
+		setRequestHost(reqHost);
+		setRequestPort(reqPort);
+	}
+
+	/**
+	 * Returns the URL of which the host and the port the control requests of the service are posted to.
+	 */
+	static String getPostURL(Service service)
+	{
+		String ctrlURL = service.getControlURL();
+
 		// Thanks for Giordano Sassaroli <sassarol@cefriel.it> and Suzan Foster (09/02/03)
 		// Thanks for Andre <andre@antiheld.net> (02/18/04)
 		String postURL = "";
@@ -116,12 +134,7 @@ public class ControlRequest extends SOAPRequest
 		if (postURL == null || postURL.length() <= 0)
 			postURL = service.getRootDevice().getLocation();
 		
-		String reqHost = HTTP.getHost(postURL);
-		int reqPort = HTTP.getPort(postURL);
-		
-		setHost(reqHost, reqPort);
-		setRequestHost(reqHost);
-		setRequestPort(reqPort);
+		return postURL;
 	}
 	
 }
@@ -0,0 +1,297 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: RenewScheduler.java
+*
+*	Revision:
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.control;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.cybergarage.http.HTTPStatus;
+import org.cybergarage.upnp.ControlPoint;
+import org.cybergarage.upnp.Device;
+import org.cybergarage.upnp.Service;
+import org.cybergarage.upnp.event.Subscription;
+import org.cybergarage.upnp.event.SubscriptionResponse;
+import org.cybergarage.util.Debug;
+
+/**
+ * Renews each subscription of a ControlPoint at a fraction of the timeout granted by the
+ * publisher, instead of renewing all subscriptions at a fixed interval like RenewSubscriber.
+ * <p>
+ * The renewals run on a bounded pool. A failed renewal is retried with an exponential
+ * backoff, and a new subscription is made when the publisher answers 412 Precondition Failed
+ * or the retries of the renewal are exhausted.
+ */
+public class RenewScheduler
+{
+	public final static int DEFAULT_MAX_THREADS = 2;
+	public final static float DEFAULT_RENEW_RATIO = 0.5f;
+	public final static long MIN_RENEW_DELAY = 1000;
+	public final static int DEFAULT_MAX_RETRIES = 3;
+	public final static long DEFAULT_RETRY_DELAY = 2000;
+	public final static long MAX_RETRY_DELAY = 60000;
+
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	private ControlPoint ctrlPoint;
+	private ScheduledThreadPoolExecutor executor;
+	private ConcurrentMap<String, RenewTask> taskMap = new ConcurrentHashMap<String, RenewTask>();
+
+	public RenewScheduler(ControlPoint ctrlp, int maxThreads)
+	{
+		ctrlPoint = ctrlp;
+		executor = new ScheduledThreadPoolExecutor(
+			maxThreads,
+			new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "Cyber.RenewScheduler");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+	}
+
+	public RenewScheduler(ControlPoint ctrlp)
+	{
+		this(ctrlp, DEFAULT_MAX_THREADS);
+	}
+
+	public ControlPoint getControlPoint()
+	{
+		return ctrlPoint;
+	}
+
+	////////////////////////////////////////////////
+	//	Renew Ratio
+	////////////////////////////////////////////////
+
+	private float renewRatio = DEFAULT_RENEW_RATIO;
+
+	/**
+	 * Sets the fraction of the granted timeout after which a subscription is renewed.
+	 */
+	public void setRenewRatio(float ratio)
+	{
+		if (ratio <= 0 || 1 < ratio)
+			throw new IllegalArgumentException("renew ratio: " + ratio);
+		renewRatio = ratio;
+	}
+
+	public float getRenewRatio()
+	{
+		return renewRatio;
+	}
+
+	public long getRenewDelay(long timeout)
+	{
+		long delay = (long)(timeout * 1000 * renewRatio);
+		if (delay < MIN_RENEW_DELAY)
+			delay = MIN_RENEW_DELAY;
+		return delay;
+	}
+
+	////////////////////////////////////////////////
+	//	Retry
+	////////////////////////////////////////////////
+
+	private int maxRetries = DEFAULT_MAX_RETRIES;
+
+	public void setMaxRetries(int n)
+	{
+		maxRetries = n;
+	}
+
+	public int getMaxRetries()
+	{
+		return maxRetries;
+	}
+
+	public long getRetryDelay(int retryCnt)
+	{
+		long delay = DEFAULT_RETRY_DELAY;
+		for (int n=0; n<retryCnt && delay < MAX_RETRY_DELAY; n++)
+			delay *= 2;
+		if (MAX_RETRY_DELAY < delay)
+			delay = MAX_RETRY_DELAY;
+		return delay;
+	}
+
+	////////////////////////////////////////////////
+	//	Schedule
+	////////////////////////////////////////////////
+
+	/**
+	 * Schedules the renewal of the subscription, replacing the previous renewal of the SID.
+	 * @param timeout The timeout in seconds granted by the publisher.
+	 */
+	public void schedule(String sid, long timeout)
+	{
+		if (sid == null || sid.length() <= 0)
+			return;
+		if (timeout == Subscription.INFINITE_VALUE || timeout <= 0) {
+			cancel(sid);
+			return;
+		}
+		schedule(new RenewTask(sid, timeout), getRenewDelay(timeout));
+	}
+
+	private synchronized void schedule(RenewTask task, long delay)
+	{
+		if (executor.isShutdown() == true)
+			return;
+		RenewTask oldTask = taskMap.put(task.sid, task);
+		if (oldTask != null && oldTask != task)
+			oldTask.cancel();
+		try {
+			task.future = executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+		}
+		catch (RejectedExecutionException e) {
+			taskMap.remove(task.sid);
+		}
+	}
+
+	public synchronized void cancel(String sid)
+	{
+		if (sid == null)
+			return;
+		RenewTask task = taskMap.remove(sid);
+		if (task != null)
+			task.cancel();
+	}
+
+	public boolean isScheduled(String sid)
+	{
+		if (sid == null)
+			return false;
+		return taskMap.containsKey(sid);
+	}
+
+	public int size()
+	{
+		return taskMap.size();
+	}
+
+	/**
+	 * Stops the scheduler. The running renewals are not interrupted, but no more renewals are run.
+	 */
+	public synchronized void stop()
+	{
+		executor.shutdownNow();
+		taskMap.clear();
+	}
+
+	////////////////////////////////////////////////
+	//	Task
+	////////////////////////////////////////////////
+
+	private class RenewTask implements Runnable
+	{
+		String sid;
+		long timeout;
+		int retryCnt;
+		// The service to subscribe again after the publisher has dropped the SID.
+		Service resubscribeService;
+		ScheduledFuture<?> future;
+
+		RenewTask(String sid, long timeout)
+		{
+			this.sid = sid;
+			this.timeout = timeout;
+		}
+
+		void cancel()
+		{
+			ScheduledFuture<?> f = future;
+			if (f != null)
+				f.cancel(false);
+		}
+
+		public void run()
+		{
+			if (taskMap.get(sid) != this)
+				return;
+			try {
+				if (resubscribeService != null)
+					resubscribe();
+				else
+					renew();
+			}
+			catch (Exception e) {
+				Debug.warning(e);
+			}
+		}
+
+		private void renew()
+		{
+			ControlPoint ctrlp = getControlPoint();
+			Service service = ctrlp.getSubscriberService(sid);
+			if (service == null) {
+				taskMap.remove(sid, this);
+				return;
+			}
+			SubscriptionResponse subRes = ctrlp.renewSubscription(service, timeout);
+			// The next renewal has been scheduled by the new timeout.
+			if (subRes.isSuccessful() == true)
+				return;
+			if (subRes.getStatusCode() == HTTPStatus.PRECONDITION_FAILED || maxRetries <= retryCnt) {
+				retryCnt = 0;
+				resubscribeService = service;
+				resubscribe();
+				return;
+			}
+			// The subscription has been renewed or dropped by another thread.
+			if (taskMap.get(sid) != this)
+				return;
+			retry();
+		}
+
+		private void resubscribe()
+		{
+			ControlPoint ctrlp = getControlPoint();
+			Service service = resubscribeService;
+			// The device has gone or the service has been subscribed by another thread.
+			Device rootDev = service.getRootDevice();
+			if (rootDev == null || ctrlp.getDeviceRegistry().getRootDevice(rootDev.getUDN()) != rootDev || (service.hasSID() == true && sid.equals(service.getSID()) == false)) {
+				taskMap.remove(sid, this);
+				return;
+			}
+			if (ctrlp.resubscribe(service, timeout) == true) {
+				taskMap.remove(sid, this);
+				return;
+			}
+			if (maxRetries <= retryCnt) {
+				Debug.warning("RenewScheduler: failed to subscribe " + service.getEventSubURL() + " again");
+				taskMap.remove(sid, this);
+				return;
+			}
+			retry();
+		}
+
+		private void retry()
+		{
+			long delay = getRetryDelay(retryCnt);
+			retryCnt++;
+			schedule(this, delay);
+		}
+	}
+}
@@ -0,0 +1,27 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: ServiceSelector.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.control;
+
+import org.cybergarage.upnp.Service;
+
+/**
+ * Selects the services an action is invoked on by ControlPoint.invokeAction().
+ * The device of the service is returned by Service.getDevice().
+ */
+public interface ServiceSelector
+{
+	public boolean isSelected(Service service);
+}
@@ -0,0 +1,511 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: DescriptionCache.java
+*
+*	Revision:
+*
+*	10/18/26
+*		- first revision.
+*		- Stores the device descriptions and the SCPDs retrieved by the ControlPoint
+*		  in a directory so that they can be rehydrated at the next start.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.device;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.Vector;
+
+import org.cybergarage.upnp.ssdp.SSDPPacket;
+import org.cybergarage.util.Debug;
+
+/**
+ * Persistent cache of the device descriptions and SCPDs retrieved by a control point.
+ * <p>
+ * Every root device has a directory keyed by its location URL and UDN. The directory holds the
+ * raw description, the SCPD documents and the SSDP packet the device was discovered with. The
+ * BOOTID.UPNP.ORG and CONFIGID.UPNP.ORG values of the packet are stored with the entry, and an
+ * entry is ignored when the device advertises another CONFIGID.
+ * <p>
+ * An entry which hasn't been stored or refreshed within {@link #getMaxAge()} is removed, and the
+ * least recently used entries are removed when there are more than {@link #getMaxEntries()}.
+ */
+public class DescriptionCache
+{
+	public final static int DEFAULT_MAX_ENTRIES = 256;
+	public final static long DEFAULT_MAX_AGE = 30L * 24 * 60 * 60 * 1000;
+
+	private final static String ENTRY_FILE_NAME = "entry.properties";
+	private final static String DESCRIPTION_FILE_NAME = "description.xml";
+	private final static String SCPD_FILE_PREFIX = "scpd-";
+	private final static String SCPD_FILE_SUFFIX = ".xml";
+
+	private final static String LOCATION = "location";
+	private final static String UDN = "udn";
+	private final static String BOOTID = "bootid";
+	private final static String CONFIGID = "configid";
+	private final static String LOCAL_ADDRESS = "localAddress";
+	private final static String SSDP_PACKET = "ssdpPacket";
+	private final static String SCPD_PREFIX = "scpd.";
+
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	public DescriptionCache(File dir)
+	{
+		cacheDir = dir;
+	}
+
+	public DescriptionCache(String dirName)
+	{
+		this(new File(dirName));
+	}
+
+	////////////////////////////////////////////////
+	//	Parameters
+	////////////////////////////////////////////////
+
+	private int maxEntries = DEFAULT_MAX_ENTRIES;
+	private long maxAge = DEFAULT_MAX_AGE;
+
+	public void setMaxEntries(int n)
+	{
+		maxEntries = n;
+	}
+
+	public int getMaxEntries()
+	{
+		return maxEntries;
+	}
+
+	/**
+	 * Sets the time in milliseconds after which an entry which hasn't been stored or refreshed is removed.
+	 */
+	public void setMaxAge(long mtime)
+	{
+		maxAge = mtime;
+	}
+
+	public long getMaxAge()
+	{
+		return maxAge;
+	}
+
+	////////////////////////////////////////////////
+	//	Directory
+	////////////////////////////////////////////////
+
+	private File cacheDir;
+
+	public File getDirectory()
+	{
+		return cacheDir;
+	}
+
+	private File getEntryDirectory(String location, String udn)
+	{
+		return new File(cacheDir, getKey(location, udn));
+	}
+
+	public static String getKey(String location, String udn)
+	{
+		try {
+			MessageDigest md = MessageDigest.getInstance("MD5");
+			byte digest[] = md.digest((location + "\n" + udn).getBytes("UTF-8"));
+			StringBuffer key = new StringBuffer();
+			for (int n=0; n<digest.length; n++) {
+				String hex = Integer.toHexString(digest[n] & 0xff);
+				if (hex.length() < 2)
+					key.append('0');
+				key.append(hex);
+			}
+			return key.toString();
+		}
+		catch (Exception e) {
+			Debug.warning(e);
+		}
+		return Integer.toHexString((location + "\n" + udn).hashCode());
+	}
+
+	////////////////////////////////////////////////
+	//	Description
+	////////////////////////////////////////////////
+
+	/**
+	 * Stores the raw description of the root device advertised by the specified packet.
+	 * The cached SCPDs of the device are dropped when its CONFIGID has changed.
+	 */
+	public synchronized boolean putDescription(SSDPPacket ssdpPacket, byte description[])
+	{
+		String location = ssdpPacket.getLocation();
+		String udn = USN.getUDN(ssdpPacket.getUSN());
+		File entryDir = getEntryDirectory(location, udn);
+
+		Properties entryProp = loadProperties(entryDir);
+		if (entryProp != null) {
+			String cachedConfigId = entryProp.getProperty(CONFIGID, "");
+			if (cachedConfigId.equals(Integer.toString(ssdpPacket.getConfigId())) == false)
+				removeSCPDs(entryDir, entryProp);
+		}
+		else
+			entryProp = new Properties();
+
+		entryProp.setProperty(LOCATION, location);
+		entryProp.setProperty(UDN, udn);
+		entryProp.setProperty(BOOTID, Integer.toString(ssdpPacket.getBootId()));
+		entryProp.setProperty(CONFIGID, Integer.toString(ssdpPacket.getConfigId()));
+		entryProp.setProperty(LOCAL_ADDRESS, ssdpPacket.getLocalAddress());
+		entryProp.setProperty(SSDP_PACKET, new String(ssdpPacket.getData()));
+
+		if (entryDir.exists() == false && entryDir.mkdirs() == false) {
+			Debug.warning("Couldn't create the description cache directory : " + entryDir);
+			return false;
+		}
+		if (writeFile(new File(entryDir, DESCRIPTION_FILE_NAME), description) == false)
+			return false;
+		if (saveProperties(entryDir, entryProp) == false)
+			return false;
+		trim();
+		return true;
+	}
+
+	/**
+	 * Returns the cached description for the specified packet, or null when the device isn't cached
+	 * or advertises another CONFIGID.
+	 */
+	public synchronized byte[] getDescription(SSDPPacket ssdpPacket)
+	{
+		String location = ssdpPacket.getLocation();
+		String udn = USN.getUDN(ssdpPacket.getUSN());
+		File entryDir = getEntryDirectory(location, udn);
+		Properties entryProp = loadProperties(entryDir);
+		if (entryProp == null)
+			return null;
+		if (entryProp.getProperty(CONFIGID, "").equals(Integer.toString(ssdpPacket.getConfigId())) == false)
+			return null;
+		return readFile(new File(entryDir, DESCRIPTION_FILE_NAME));
+	}
+
+	public synchronized void remove(String location, String udn)
+	{
+		removeEntryDirectory(getEntryDirectory(location, udn));
+	}
+
+	/**
+	 * Marks the entry of the device as used now, so that it isn't removed by the age limit.
+	 * It is called when the cached description has been confirmed by the device.
+	 */
+	public synchronized void refresh(String location, String udn)
+	{
+		File entryFile = new File(getEntryDirectory(location, udn), ENTRY_FILE_NAME);
+		if (entryFile.exists() == true)
+			entryFile.setLastModified(System.currentTimeMillis());
+	}
+
+	private static void removeEntryDirectory(File entryDir)
+	{
+		File files[] = entryDir.listFiles();
+		if (files == null)
+			return;
+		for (int n=0; n<files.length; n++)
+			files[n].delete();
+		entryDir.delete();
+	}
+
+	/**
+	 * Removes the entries older than the max age, and the least recently used entries over the max entries.
+	 */
+	private void trim()
+	{
+		File entryDirs[] = cacheDir.listFiles();
+		if (entryDirs == null)
+			return;
+		long now = System.currentTimeMillis();
+		Vector<File> entryFiles = new Vector<File>();
+		for (int n=0; n<entryDirs.length; n++) {
+			if (entryDirs[n].isDirectory() == false)
+				continue;
+			File entryFile = new File(entryDirs[n], ENTRY_FILE_NAME);
+			long lastModified = entryFile.lastModified();
+			if (lastModified <= 0 || maxAge < (now - lastModified)) {
+				removeEntryDirectory(entryDirs[n]);
+				continue;
+			}
+			entryFiles.add(entryFile);
+		}
+		int removeCnt = entryFiles.size() - maxEntries;
+		if (removeCnt <= 0)
+			return;
+		Collections.sort(entryFiles, new Comparator<File>() {
+			public int compare(File file1, File file2) {
+				long lastModified1 = file1.lastModified();
+				long lastModified2 = file2.lastModified();
+				if (lastModified1 == lastModified2)
+					return 0;
+				return (lastModified1 < lastModified2) ? -1 : 1;
+			}
+		});
+		for (int n=0; n<removeCnt; n++)
+			removeEntryDirectory(entryFiles.get(n).getParentFile());
+	}
+
+	////////////////////////////////////////////////
+	//	SCPD
+	////////////////////////////////////////////////
+
+	public synchronized boolean putSCPD(String location, String udn, String scpdURL, byte scpd[])
+	{
+		File entryDir = getEntryDirectory(location, udn);
+		Properties entryProp = loadProperties(entryDir);
+		if (entryProp == null)
+			return false;
+		String fileName = SCPD_FILE_PREFIX + getKey(location, scpdURL) + SCPD_FILE_SUFFIX;
+		if (writeFile(new File(entryDir, fileName), scpd) == false)
+			return false;
+		entryProp.setProperty(SCPD_PREFIX + scpdURL, fileName);
+		return saveProperties(entryDir, entryProp);
+	}
+
+	public synchronized byte[] getSCPD(String location, String udn, String scpdURL)
+	{
+		File entryDir = getEntryDirectory(location, udn);
+		Properties entryProp = loadProperties(entryDir);
+		if (entryProp == null)
+			return null;
+		String fileName = entryProp.getProperty(SCPD_PREFIX + scpdURL);
+		if (fileName == null)
+			return null;
+		return readFile(new File(entryDir, fileName));
+	}
+
+	private void removeSCPDs(File entryDir, Properties entryProp)
+	{
+		Object keys[] = entryProp.keySet().toArray();
+		for (int n=0; n<keys.length; n++) {
+			String key = (String)keys[n];
+			if (key.startsWith(SCPD_PREFIX) == false)
+				continue;
+			new File(entryDir, entryProp.getProperty(key)).delete();
+			entryProp.remove(key);
+		}
+	}
+
+	////////////////////////////////////////////////
+	//	Entry
+	////////////////////////////////////////////////
+
+	/**
+	 * Cached root device which can be rehydrated by the ControlPoint.
+	 */
+	public static class Entry
+	{
+		private String location;
+		private String udn;
+		private SSDPPacket ssdpPacket;
+		private byte description[];
+
+		private Entry(String location, String udn, SSDPPacket ssdpPacket, byte description[])
+		{
+			this.location = location;
+			this.udn = udn;
+			this.ssdpPacket = ssdpPacket;
+			this.description = description;
+		}
+
+		public String getLocation()
+		{
+			return location;
+		}
+
+		public String getUDN()
+		{
+			return udn;
+		}
+
+		/**
+		 * Returns the SSDP packet the device was discovered with. Its time stamp is the time the entry was loaded.
+		 */
+		public SSDPPacket getSSDPPacket()
+		{
+			return ssdpPacket;
+		}
+
+		public byte[] getDescription()
+		{
+			return description;
+		}
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public synchronized Entry[] getEntries()
+	{
+		trim();
+		Vector entryList = new Vector();
+		File entryDirs[] = cacheDir.listFiles();
+		if (entryDirs == null)
+			return new Entry[0];
+		for (int n=0; n<entryDirs.length; n++) {
+			if (entryDirs[n].isDirectory() == false)
+				continue;
+			Properties entryProp = loadProperties(entryDirs[n]);
+			if (entryProp == null)
+				continue;
+			byte description[] = readFile(new File(entryDirs[n], DESCRIPTION_FILE_NAME));
+			if (description == null)
+				continue;
+			String location = entryProp.getProperty(LOCATION, "");
+			String udn = entryProp.getProperty(UDN, "");
+			byte packetData[] = entryProp.getProperty(SSDP_PACKET, "").getBytes();
+			SSDPPacket ssdpPacket = new SSDPPacket(packetData, packetData.length);
+			ssdpPacket.setLocalAddress(entryProp.getProperty(LOCAL_ADDRESS, ""));
+			ssdpPacket.setTimeStamp(System.currentTimeMillis());
+			setRemoteAddress(ssdpPacket, location);
+			entryList.add(new Entry(location, udn, ssdpPacket, description));
+		}
+		Entry entries[] = new Entry[entryList.size()];
+		entryList.copyInto(entries);
+		return entries;
+	}
+
+	private static void setRemoteAddress(SSDPPacket ssdpPacket, String location)
+	{
+		try {
+			URL locationURL = new URL(location);
+			String host = locationURL.getHost();
+			if (host.startsWith("[") == true && host.endsWith("]") == true)
+				host = host.substring(1, host.length()-1);
+			// Only literal addresses, a host name would need a DNS lookup.
+			for (int n=0; n<host.length(); n++) {
+				char c = host.charAt(n);
+				if (Character.digit(c, 16) < 0 && c != '.' && c != ':' && c != '%')
+					return;
+			}
+			ssdpPacket.getDatagramPacket().setAddress(InetAddress.getByName(host));
+		}
+		catch (Exception e) {}
+	}
+
+	////////////////////////////////////////////////
+	//	File
+	////////////////////////////////////////////////
+
+	private Properties loadProperties(File entryDir)
+	{
+		File entryFile = new File(entryDir, ENTRY_FILE_NAME);
+		if (entryFile.exists() == false)
+			return null;
+		InputStream in = null;
+		try {
+			in = new FileInputStream(entryFile);
+			Properties entryProp = new Properties();
+			entryProp.load(in);
+			return entryProp;
+		}
+		catch (IOException e) {
+			Debug.warning(e);
+		}
+		finally {
+			close(in);
+		}
+		return null;
+	}
+
+	private boolean saveProperties(File entryDir, Properties entryProp)
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			entryProp.store(out, null);
+		}
+		catch (IOException e) {
+			Debug.warning(e);
+			return false;
+		}
+		return writeFile(new File(entryDir, ENTRY_FILE_NAME), out.toByteArray());
+	}
+
+	private static byte[] readFile(File file)
+	{
+		if (file.exists() == false)
+			return null;
+		InputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			byte readBuf[] = new byte[4096];
+			int readLen = in.read(readBuf);
+			while (0 <= readLen) {
+				content.write(readBuf, 0, readLen);
+				readLen = in.read(readBuf);
+			}
+			return content.toByteArray();
+		}
+		catch (IOException e) {
+			Debug.warning(e);
+		}
+		finally {
+			close(in);
+		}
+		return null;
+	}
+
+	private static boolean writeFile(File file, byte data[])
+	{
+		File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+		OutputStream out = null;
+		try {
+			out = new FileOutputStream(tmpFile);
+			out.write(data);
+			out.close();
+			out = null;
+			if (tmpFile.renameTo(file) == false) {
+				file.delete();
+				if (tmpFile.renameTo(file) == false)
+					return false;
+			}
+			return true;
+		}
+		catch (IOException e) {
+			Debug.warning(e);
+		}
+		finally {
+			close(out);
+		}
+		tmpFile.delete();
+		return false;
+	}
+
+	private static void close(InputStream in)
+	{
+		try {
+			if (in != null)
+				in.close();
+		}
+		catch (IOException e) {}
+	}
+
+	private static void close(OutputStream out)
+	{
+		try {
+			if (out != null)
+				out.close();
+		}
+		catch (IOException e) {}
+	}
+}
@@ -0,0 +1,606 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: DescriptionFetcher.java
+*
+*	Revision:
+*
+*	10/18/26
+*		- first revision.
+*		- Retrieves the device descriptions of new devices in a bounded thread pool
+*		  instead of the SSDP receive threads of the ControlPoint.
+*		- Added revalidate() and the DescriptionCache support.
+*		- Added refetch().
+*		- Added setSCPDPrefetchEnabled() to retrieve the SCPDs of the new devices in parallel
+*		  before the devices are added.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.device;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.cybergarage.http.HTTP;
+import org.cybergarage.upnp.ControlPoint;
+import org.cybergarage.upnp.Device;
+import org.cybergarage.upnp.DeviceList;
+import org.cybergarage.upnp.Service;
+import org.cybergarage.upnp.ServiceList;
+import org.cybergarage.upnp.UPnP;
+import org.cybergarage.upnp.ssdp.SSDPPacket;
+import org.cybergarage.util.Debug;
+import org.cybergarage.xml.Node;
+import org.cybergarage.xml.Parser;
+
+/**
+ * Fetches the device descriptions of newly discovered root devices asynchronously.
+ * <p>
+ * At most {@link #getMaxThreads()} descriptions are retrieved at the same time and at most
+ * {@link #getMaxHostFetches()} of them from the same host, the other requests of the host
+ * wait in a per-host queue. A request is ignored while a fetch for the same UDN or the same
+ * location is in flight. When a description has been retrieved and parsed, it is handed over to
+ * {@link ControlPoint#descriptionReceived(SSDPPacket, Node)}.
+ * <p>
+ * When the ControlPoint has a {@link DescriptionCache}, the retrieved descriptions are stored in it,
+ * and a cached description is used without a request when the device advertises the same CONFIGID.
+ * <p>
+ * When {@link #isSCPDPrefetchEnabled()} is true, the SCPDs of all services of a new device are retrieved
+ * by up to {@link #getMaxSCPDFetches()} parallel requests before the device is handed over, so the
+ * DeviceChangeListener is notified when the actions and the state variables are available.
+ */
+public class DescriptionFetcher
+{
+	public final static int DEFAULT_MAX_THREADS = 8;
+	public final static int DEFAULT_MAX_HOST_FETCHES = 2;
+	public final static int DEFAULT_MAX_PENDING_FETCHES = 256;
+	public final static int DEFAULT_CONNECT_TIMEOUT = 5000;
+	public final static int DEFAULT_READ_TIMEOUT = 10000;
+	public final static int DEFAULT_MAX_SCPD_FETCHES = 4;
+
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	public DescriptionFetcher(ControlPoint ctrlp)
+	{
+		setControlPoint(ctrlp);
+	}
+
+	////////////////////////////////////////////////
+	//	Member
+	////////////////////////////////////////////////
+
+	private ControlPoint ctrlPoint;
+
+	public void setControlPoint(ControlPoint ctrlp)
+	{
+		ctrlPoint = ctrlp;
+	}
+
+	public ControlPoint getControlPoint()
+	{
+		return ctrlPoint;
+	}
+
+	////////////////////////////////////////////////
+	//	Limits
+	////////////////////////////////////////////////
+
+	private int maxThreads = DEFAULT_MAX_THREADS;
+	private int maxHostFetches = DEFAULT_MAX_HOST_FETCHES;
+	private int maxPendingFetches = DEFAULT_MAX_PENDING_FETCHES;
+
+	public void setMaxThreads(int n)
+	{
+		maxThreads = n;
+	}
+
+	public int getMaxThreads()
+	{
+		return maxThreads;
+	}
+
+	public void setMaxHostFetches(int n)
+	{
+		maxHostFetches = n;
+	}
+
+	public int getMaxHostFetches()
+	{
+		return maxHostFetches;
+	}
+
+	public void setMaxPendingFetches(int n)
+	{
+		maxPendingFetches = n;
+	}
+
+	public int getMaxPendingFetches()
+	{
+		return maxPendingFetches;
+	}
+
+	////////////////////////////////////////////////
+	//	SCPD Prefetch
+	////////////////////////////////////////////////
+
+	private boolean scpdPrefetchEnabled = false;
+	private int maxSCPDFetches = DEFAULT_MAX_SCPD_FETCHES;
+
+	public void setSCPDPrefetchEnabled(boolean flag)
+	{
+		scpdPrefetchEnabled = flag;
+	}
+
+	public boolean isSCPDPrefetchEnabled()
+	{
+		return scpdPrefetchEnabled;
+	}
+
+	/**
+	 * Sets the maximum number of the parallel SCPD requests for a device.
+	 */
+	public void setMaxSCPDFetches(int n)
+	{
+		maxSCPDFetches = n;
+	}
+
+	public int getMaxSCPDFetches()
+	{
+		return maxSCPDFetches;
+	}
+
+	////////////////////////////////////////////////
+	//	Timeout
+	////////////////////////////////////////////////
+
+	private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+	private int readTimeout = DEFAULT_READ_TIMEOUT;
+
+	public void setConnectTimeout(int mtime)
+	{
+		connectTimeout = mtime;
+	}
+
+	public int getConnectTimeout()
+	{
+		return connectTimeout;
+	}
+
+	public void setReadTimeout(int mtime)
+	{
+		readTimeout = mtime;
+	}
+
+	public int getReadTimeout()
+	{
+		return readTimeout;
+	}
+
+	////////////////////////////////////////////////
+	//	start/stop
+	////////////////////////////////////////////////
+
+	private ExecutorService executor = null;
+	private ExecutorService scpdExecutor = null;
+
+	public synchronized void start()
+	{
+		stop();
+		executor = createExecutor(maxThreads, "Cyber.DescriptionFetcher");
+		// The SCPD requests have their own threads because the description threads wait for them.
+		scpdExecutor = createExecutor(maxThreads, "Cyber.DescriptionFetcher.SCPD");
+	}
+
+	private static ExecutorService createExecutor(int nThreads, final String threadName)
+	{
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(
+			nThreads,
+			nThreads,
+			60,
+			TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(),
+			new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, threadName);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	/**
+	 * Stops the fetcher. The running fetches are not interrupted, but their results and the
+	 * queued requests are discarded.
+	 */
+	public synchronized void stop()
+	{
+		if (executor == null)
+			return;
+		executor.shutdown();
+		executor = null;
+		scpdExecutor.shutdown();
+		scpdExecutor = null;
+		inFlightUDNs.clear();
+		inFlightLocations.clear();
+		hostQueues.clear();
+	}
+
+	public synchronized boolean isRunnable()
+	{
+		return (executor != null) ? true : false;
+	}
+
+	private synchronized boolean isRunnable(ExecutorService pool)
+	{
+		return (executor == pool) ? true : false;
+	}
+
+	private synchronized ExecutorService getSCPDExecutor()
+	{
+		return scpdExecutor;
+	}
+
+	////////////////////////////////////////////////
+	//	fetch
+	////////////////////////////////////////////////
+
+	private Map<String, FetchRequest> inFlightUDNs = new HashMap<String, FetchRequest>();
+	private Map<String, FetchRequest> inFlightLocations = new HashMap<String, FetchRequest>();
+	private Map<String, HostQueue> hostQueues = new HashMap<String, HostQueue>();
+
+	/**
+	 * Queues a fetch of the device description advertised by the specified packet.
+	 *
+	 * @return true if a new fetch was queued, false if the fetcher is stopped, an equivalent
+	 * 		fetch is already in flight or too many fetches are pending.
+	 */
+	public boolean fetch(SSDPPacket ssdpPacket)
+	{
+		return fetch(ssdpPacket, null, false);
+	}
+
+	/**
+	 * Queues a fetch of the description of a device which was rehydrated from the DescriptionCache.
+	 * The lease of the device is renewed when the description is still available, and the device is
+	 * replaced through {@link ControlPoint#descriptionChanged(SSDPPacket, Node)} when it has changed.
+	 * The cache entry of the device is removed when the description can't be retrieved.
+	 */
+	public boolean revalidate(SSDPPacket ssdpPacket, byte cachedDescription[])
+	{
+		return fetch(ssdpPacket, cachedDescription, false);
+	}
+
+	/**
+	 * Queues a fetch of the description of a known device which advertises a new CONFIGID.
+	 * The device is replaced through {@link ControlPoint#descriptionChanged(SSDPPacket, Node)}.
+	 */
+	public boolean refetch(SSDPPacket ssdpPacket)
+	{
+		return fetch(ssdpPacket, null, true);
+	}
+
+	private boolean fetch(SSDPPacket ssdpPacket, byte cachedDescription[], boolean isRefetch)
+	{
+		String udn = USN.getUDN(ssdpPacket.getUSN());
+		String location = ssdpPacket.getLocation();
+		if (udn == null || udn.length() <= 0 || location == null || location.length() <= 0)
+			return false;
+
+		URL locationURL;
+		try {
+			locationURL = new URL(location);
+		}
+		catch (Exception e) {
+			Debug.warning(ssdpPacket.toString());
+			Debug.warning(e);
+			return false;
+		}
+
+		FetchRequest req = new FetchRequest(ssdpPacket, udn, locationURL, cachedDescription, isRefetch);
+
+		synchronized (this) {
+			if (executor == null)
+				return false;
+			if (inFlightUDNs.containsKey(udn) == true || inFlightLocations.containsKey(location) == true)
+				return false;
+			if (maxPendingFetches <= inFlightUDNs.size()) {
+				Debug.warning("Too many pending description fetches, ignored : " + location);
+				return false;
+			}
+			inFlightUDNs.put(udn, req);
+			inFlightLocations.put(location, req);
+
+			HostQueue hostQueue = hostQueues.get(req.host);
+			if (hostQueue == null) {
+				hostQueue = new HostQueue();
+				hostQueues.put(req.host, hostQueue);
+			}
+			if (hostQueue.activeCount < maxHostFetches) {
+				hostQueue.activeCount++;
+				req.pool = executor;
+				executor.execute(req);
+			}
+			else
+				hostQueue.waitingRequests.add(req);
+		}
+
+		return true;
+	}
+
+	private synchronized void fetchCompleted(FetchRequest req)
+	{
+		if (isRunnable(req.pool) == false)
+			return;
+
+		inFlightUDNs.remove(req.udn);
+		inFlightLocations.remove(req.location);
+
+		HostQueue hostQueue = hostQueues.get(req.host);
+		if (hostQueue == null)
+			return;
+		FetchRequest nextReq = hostQueue.waitingRequests.poll();
+		if (nextReq != null) {
+			nextReq.pool = executor;
+			executor.execute(nextReq);
+			return;
+		}
+		hostQueue.activeCount--;
+		if (hostQueue.activeCount <= 0)
+			hostQueues.remove(req.host);
+	}
+
+	////////////////////////////////////////////////
+	//	HTTP
+	////////////////////////////////////////////////
+
+	/**
+	 * Retrieves the specified document using the connect and read timeouts of this fetcher.
+	 * The connection is not disconnected explicitly so that it can be reused by the following
+	 * requests to the same host.
+	 */
+	public byte[] getContent(URL url) throws IOException
+	{
+		return getContent(url, getConnectTimeout(), getReadTimeout());
+	}
+
+	/**
+	 * Retrieves the specified document as it is sent by the device.
+	 */
+	public static byte[] getContent(URL url, int connectTimeout, int readTimeout) throws IOException
+	{
+		HttpURLConnection urlCon = (HttpURLConnection)url.openConnection();
+		urlCon.setConnectTimeout(connectTimeout);
+		urlCon.setReadTimeout(readTimeout);
+		urlCon.setRequestMethod(HTTP.GET);
+		urlCon.setRequestProperty(HTTP.CONTENT_LENGTH, "0");
+
+		InputStream urlIn = null;
+		try {
+			int statusCode = urlCon.getResponseCode();
+			if (statusCode != HttpURLConnection.HTTP_OK)
+				throw new IOException("HTTP " + statusCode + " : " + url.toString());
+			urlIn = urlCon.getInputStream();
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			byte readBuf[] = new byte[HTTP.getChunkSize()];
+			int readLen = urlIn.read(readBuf);
+			while (0 <= readLen) {
+				content.write(readBuf, 0, readLen);
+				readLen = urlIn.read(readBuf);
+			}
+			return content.toByteArray();
+		}
+		finally {
+			if (urlIn != null)
+				urlIn.close();
+		}
+	}
+
+	////////////////////////////////////////////////
+	//	SCPD
+	////////////////////////////////////////////////
+
+	/**
+	 * Loads the SCPDs of all services in the description, the SCPDs are retrieved by the parallel
+	 * requests which take the services from a shared queue, so a request reuses the keep-alive
+	 * connection of the previous request to the same host.
+	 */
+	private void prefetchSCPDs(SSDPPacket ssdpPacket, Node rootNode)
+	{
+		ExecutorService pool = getSCPDExecutor();
+		if (pool == null)
+			return;
+		Node devNode = rootNode.getNode(Device.ELEM_NAME);
+		if (devNode == null)
+			return;
+		Device rootDev = new Device(rootNode, devNode);
+		rootDev.setSSDPPacket(ssdpPacket);
+
+		Vector<Service> serviceList = new Vector<Service>();
+		addServices(rootDev, serviceList);
+		if (serviceList.size() <= 0)
+			return;
+		
+		final Device fetchDev = rootDev;
+		final ConcurrentLinkedQueue<Service> serviceQueue = new ConcurrentLinkedQueue<Service>(serviceList);
+		int nWorkers = Math.min(serviceList.size(), Math.max(getMaxSCPDFetches(), 1));
+		Vector<Callable<Object>> workers = new Vector<Callable<Object>>();
+		for (int n=0; n<nWorkers; n++) {
+			workers.add(Executors.callable(new Runnable() {
+				public void run() {
+					Service service = serviceQueue.poll();
+					while (service != null) {
+						fetchSCPD(fetchDev, service);
+						service = serviceQueue.poll();
+					}
+				}
+			}));
+		}
+		try {
+			pool.invokeAll(workers);
+		}
+		catch (Exception e) {
+			Debug.warning(e);
+		}
+	}
+
+	private static void addServices(Device dev, Vector<Service> serviceList)
+	{
+		ServiceList services = dev.getServiceList();
+		int serviceCnt = services.size();
+		for (int n=0; n<serviceCnt; n++)
+			serviceList.add(services.getService(n));
+		DeviceList childDevList = dev.getDeviceList();
+		int childDevCnt = childDevList.size();
+		for (int n=0; n<childDevCnt; n++)
+			addServices(childDevList.getDevice(n), serviceList);
+	}
+
+	private void fetchSCPD(Device rootDev, Service service)
+	{
+		String scpdURL = service.getSCPDURL();
+		if (scpdURL == null || scpdURL.length() <= 0)
+			return;
+		try {
+			DescriptionCache cache = getControlPoint().getDescriptionCache();
+			byte content[] = null;
+			if (cache != null)
+				content = cache.getSCPD(rootDev.getLocation(), rootDev.getUDN(), scpdURL);
+			boolean isCached = (content != null) ? true : false;
+			if (content == null)
+				content = getContent(new URL(rootDev.getAbsoluteURL(scpdURL)));
+			if (service.loadSCPD(new ByteArrayInputStream(content)) == false)
+				return;
+			if (cache != null && isCached == false)
+				cache.putSCPD(rootDev.getLocation(), rootDev.getUDN(), scpdURL, content);
+		}
+		catch (Exception e) {
+			// The SCPD is retrieved again when the service is accessed.
+			Debug.warning(e);
+		}
+	}
+
+	////////////////////////////////////////////////
+	//	FetchRequest
+	////////////////////////////////////////////////
+
+	private class FetchRequest implements Runnable
+	{
+		private SSDPPacket ssdpPacket;
+		private String udn;
+		private URL locationURL;
+		private String location;
+		private String host;
+		private byte cachedDescription[];
+		private boolean isRefetch;
+		private ExecutorService pool;
+
+		public FetchRequest(SSDPPacket ssdpPacket, String udn, URL locationURL, byte cachedDescription[], boolean isRefetch)
+		{
+			this.ssdpPacket = ssdpPacket;
+			this.cachedDescription = cachedDescription;
+			this.isRefetch = isRefetch;
+			this.udn = udn;
+			this.locationURL = locationURL;
+			this.location = ssdpPacket.getLocation();
+			this.host = locationURL.getHost();
+		}
+
+		public void run()
+		{
+			try {
+				if (isRunnable(pool) == false)
+					return;
+				ControlPoint ctrlp = getControlPoint();
+				DescriptionCache cache = ctrlp.getDescriptionCache();
+				
+				byte content[] = null;
+				// The description of a device can't change without a new CONFIGID.
+				if (cache != null && cachedDescription == null && isRefetch == false && 0 <= ssdpPacket.getConfigId())
+					content = cache.getDescription(ssdpPacket);
+				boolean isCached = (content != null) ? true : false;
+				if (content == null)
+					content = getContent(locationURL);
+				
+				Parser parser = UPnP.getXMLParser();
+				Node rootNode = parser.parse(new ByteArrayInputStream(content));
+				if (isRunnable(pool) == false)
+					return;
+				
+				if (cachedDescription != null) {
+					ssdpPacket.setTimeStamp(System.currentTimeMillis());
+					if (Arrays.equals(content, cachedDescription) == true) {
+						if (cache != null)
+							cache.refresh(location, udn);
+						ctrlp.descriptionReceived(ssdpPacket, rootNode);
+						return;
+					}
+					if (cache != null)
+						cache.putDescription(ssdpPacket, content);
+					if (isSCPDPrefetchEnabled() == true)
+						prefetchSCPDs(ssdpPacket, rootNode);
+					ctrlp.descriptionChanged(ssdpPacket, rootNode);
+					return;
+				}
+				
+				if (cache != null && isCached == false)
+					cache.putDescription(ssdpPacket, content);
+				if (isSCPDPrefetchEnabled() == true) {
+					prefetchSCPDs(ssdpPacket, rootNode);
+					if (isRunnable(pool) == false)
+						return;
+				}
+				if (isRefetch == true)
+					ctrlp.descriptionChanged(ssdpPacket, rootNode);
+				else
+					ctrlp.descriptionReceived(ssdpPacket, rootNode);
+			}
+			catch (Exception e) {
+				Debug.warning(ssdpPacket.toString());
+				Debug.warning(e);
+				// The rehydrated device isn't available, don't add it again at the next start.
+				if (cachedDescription != null) {
+					DescriptionCache cache = getControlPoint().getDescriptionCache();
+					if (cache != null)
+						cache.remove(location, udn);
+				}
+			}
+			finally {
+				fetchCompleted(this);
+			}
+		}
+	}
+
+	////////////////////////////////////////////////
+	//	HostQueue
+	////////////////////////////////////////////////
+
+	private static class HostQueue
+	{
+		private int activeCount = 0;
+		private LinkedList<FetchRequest> waitingRequests = new LinkedList<FetchRequest>();
+	}
+}
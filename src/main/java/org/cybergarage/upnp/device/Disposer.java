@@ -10,6 +10,8 @@
 *
 *	01/05/04
 *		- first revision.
+*	10/18/26
+*		- Changed to check the expired devices every ControlPoint::getExpiredDeviceCheckInterval().
 *	
 ******************************************************************/
 
@@ -52,11 +54,10 @@ public class Disposer extends ThreadCore
 	public void run() 
 	{
 		ControlPoint ctrlp = getControlPoint();
-		long monitorInterval = ctrlp.getExpiredDeviceMonitoringInterval() * 1000;
 		
 		while (isRunnable() == true) {
 			try {
-				Thread.sleep(monitorInterval);
+				Thread.sleep(ctrlp.getExpiredDeviceCheckInterval());
 			} catch (InterruptedException e) {}
 			ctrlp.removeExpiredDevices();
 			//ctrlp.print();
@@ -10,6 +10,9 @@
 *
 *	12/09/02
 *		- first revision.
+*	10/18/26
+*		- Added UPDATE and isUpdate().
+*		- Added isPropChange().
 *
 ******************************************************************/
 
@@ -19,6 +22,7 @@ public class NTS
 {
 	public final static String ALIVE = "ssdp:alive";
 	public final static String BYEBYE = "ssdp:byebye";
+	public final static String UPDATE = "ssdp:update";
 	public final static String PROPCHANGE = "upnp:propchange";
 	
 	public final static boolean isAlive(String ntsValue)
@@ -34,5 +38,18 @@ public class NTS
 			return false;
 		return ntsValue.startsWith(NTS.BYEBYE);
 	}
-}
 
+	public final static boolean isUpdate(String ntsValue)
+	{
+		if (ntsValue == null)
+			return false;
+		return ntsValue.startsWith(NTS.UPDATE);
+	}
+
+	public final static boolean isPropChange(String ntsValue)
+	{
+		if (ntsValue == null)
+			return false;
+		return ntsValue.startsWith(NTS.PROPCHANGE);
+	}
+}
@@ -0,0 +1,404 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: EventDispatcher.java
+*
+*	Revision:
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.event;
+
+import java.util.TreeMap;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.cybergarage.upnp.ControlPoint;
+import org.cybergarage.util.Debug;
+
+/**
+ * Delivers the received event messages to the listeners of a ControlPoint asynchronously,
+ * so that the NOTIFY requests are answered without waiting for the listeners.
+ * <p>
+ * The events of a subscription are delivered one by one in the order of the SEQ header.
+ * An event which arrives before the previous events is held until they arrive, and when
+ * they don't arrive within the reorder timeout, the gap is reported to the EventGapListeners
+ * and the held events are delivered.
+ * <p>
+ * The multicast events of a service are ordered in the same way from the first received SEQ.
+ */
+public class EventDispatcher
+{
+	public final static int DEFAULT_MAX_THREADS = 2;
+	public final static long DEFAULT_REORDER_TIMEOUT = 1000;
+	public final static long MAX_SEQ = 4294967295L;
+
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	private ControlPoint ctrlPoint;
+	private ConcurrentMap<String, EventQueue> queueMap = new ConcurrentHashMap<String, EventQueue>();
+
+	public EventDispatcher(ControlPoint ctrlp)
+	{
+		ctrlPoint = ctrlp;
+	}
+
+	public ControlPoint getControlPoint()
+	{
+		return ctrlPoint;
+	}
+
+	////////////////////////////////////////////////
+	//	Parameters
+	////////////////////////////////////////////////
+
+	private int maxThreads = DEFAULT_MAX_THREADS;
+	private long reorderTimeout = DEFAULT_REORDER_TIMEOUT;
+
+	/**
+	 * Sets the number of the threads delivering the events. It is applied at the next start().
+	 */
+	public void setMaxThreads(int n)
+	{
+		maxThreads = n;
+	}
+
+	public int getMaxThreads()
+	{
+		return maxThreads;
+	}
+
+	public void setReorderTimeout(long mtime)
+	{
+		reorderTimeout = mtime;
+	}
+
+	public long getReorderTimeout()
+	{
+		return reorderTimeout;
+	}
+
+	////////////////////////////////////////////////
+	//	start/stop
+	////////////////////////////////////////////////
+
+	private ScheduledThreadPoolExecutor executor = null;
+
+	public synchronized void start()
+	{
+		stop();
+		executor = new ScheduledThreadPoolExecutor(
+			maxThreads,
+			new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "Cyber.EventDispatcher");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+	}
+
+	/**
+	 * Stops the dispatcher. The events which are not delivered yet are discarded.
+	 */
+	public synchronized void stop()
+	{
+		if (executor == null)
+			return;
+		executor.shutdownNow();
+		executor = null;
+		queueMap.clear();
+	}
+
+	public synchronized boolean isRunnable()
+	{
+		return (executor != null) ? true : false;
+	}
+
+	private synchronized ScheduledThreadPoolExecutor getExecutor()
+	{
+		return executor;
+	}
+
+	////////////////////////////////////////////////
+	//	Dispatch
+	////////////////////////////////////////////////
+
+	public final static long getNextSEQ(long seq)
+	{
+		// SEQ wraps to 1 because 0 is used only for the initial event.
+		if (MAX_SEQ <= seq)
+			return 1;
+		return seq + 1;
+	}
+
+	/**
+	 * Queues the event of the subscription. The event is delivered in the calling thread
+	 * when the dispatcher isn't running.
+	 * @param props The properties of the event, or null when nobody listens to the event.
+	 *        Such an event is only used to check the order of the events.
+	 */
+	public void dispatch(String sid, long seq, PropertyList props)
+	{
+		ScheduledThreadPoolExecutor pool = getExecutor();
+		if (pool == null || sid == null) {
+			if (props != null)
+				deliver(sid, seq, props);
+			return;
+		}
+		EventQueue queue = queueMap.get(sid);
+		if (queue == null) {
+			queue = new EventQueue(sid, null, null, 0, pool);
+			EventQueue oldQueue = queueMap.putIfAbsent(sid, queue);
+			if (oldQueue != null)
+				queue = oldQueue;
+		}
+		queue.add(seq, props);
+	}
+
+	/**
+	 * Queues the multicast event of the service. The event is delivered in the calling thread
+	 * when the dispatcher isn't running.
+	 * @param usn The USN header of the event, which identifies the device and the serviceType.
+	 * @param svcid The SVCID header of the event, which is the serviceId.
+	 * @param props The properties of the event, or null when nobody listens to the event.
+	 */
+	public void dispatchMulticast(String usn, String svcid, long seq, PropertyList props)
+	{
+		ScheduledThreadPoolExecutor pool = getExecutor();
+		if (pool == null || usn == null) {
+			if (props != null)
+				deliverMulticast(usn, svcid, seq, props);
+			return;
+		}
+		String key = usn + "#" + svcid;
+		EventQueue queue = queueMap.get(key);
+		if (queue == null) {
+			// The control point joins the group at any time, so the first received SEQ is expected.
+			queue = new EventQueue(key, usn, svcid, seq, pool);
+			EventQueue oldQueue = queueMap.putIfAbsent(key, queue);
+			if (oldQueue != null)
+				queue = oldQueue;
+		}
+		queue.add(seq, props);
+	}
+
+	/**
+	 * Discards the queue of the subscription, call this when the subscription is dropped.
+	 */
+	public void remove(String sid)
+	{
+		if (sid == null)
+			return;
+		queueMap.remove(sid);
+	}
+
+	public int size()
+	{
+		return queueMap.size();
+	}
+
+	private void deliver(String sid, long seq, PropertyList props)
+	{
+		try {
+			getControlPoint().performEventListener(sid, seq, props);
+		}
+		catch (Exception e) {
+			Debug.warning(e);
+		}
+	}
+
+	private void deliverMulticast(String usn, String svcid, long seq, PropertyList props)
+	{
+		try {
+			getControlPoint().performMulticastEventListener(usn, svcid, seq, props);
+		}
+		catch (Exception e) {
+			Debug.warning(e);
+		}
+	}
+
+	private void deliverGap(String sid, long expectedSeq, long receivedSeq)
+	{
+		try {
+			getControlPoint().performEventGapListener(sid, expectedSeq, receivedSeq);
+		}
+		catch (Exception e) {
+			Debug.warning(e);
+		}
+	}
+
+	////////////////////////////////////////////////
+	//	Queue
+	////////////////////////////////////////////////
+
+	private final static PropertyList UNLISTENED_PROPS = new PropertyList();
+
+	private static class Event
+	{
+		long seq;
+		PropertyList props;
+		// The SEQ of the first missed event when this is a gap.
+		long missedSeq;
+
+		Event(long seq, PropertyList props, long missedSeq)
+		{
+			this.seq = seq;
+			this.props = props;
+			this.missedSeq = missedSeq;
+		}
+
+		boolean isGap()
+		{
+			return (props == null) ? true : false;
+		}
+
+		boolean isListened()
+		{
+			return (props != UNLISTENED_PROPS) ? true : false;
+		}
+	}
+
+	private class EventQueue implements Runnable
+	{
+		private String sid;
+		private String usn;
+		private String svcid;
+		private ScheduledThreadPoolExecutor pool;
+		private long nextSeq;
+		private TreeMap<Long, PropertyList> heldEvents = new TreeMap<Long, PropertyList>();
+		private Vector<Event> readyEvents = new Vector<Event>();
+		private boolean isRunning = false;
+		private ScheduledFuture<?> gapTimer = null;
+
+		EventQueue(String sid, String usn, String svcid, long nextSeq, ScheduledThreadPoolExecutor pool)
+		{
+			this.sid = sid;
+			this.usn = usn;
+			this.svcid = svcid;
+			this.nextSeq = nextSeq;
+			this.pool = pool;
+		}
+
+		boolean isMulticast()
+		{
+			return (usn != null) ? true : false;
+		}
+
+		synchronized void add(long seq, PropertyList props)
+		{
+			// The multicast SEQ restarts from 0 when the device is restarted.
+			if (isMulticast() == true && seq == 0 && 0 < nextSeq) {
+				heldEvents.clear();
+				nextSeq = 0;
+			}
+			if (seq < nextSeq) {
+				Debug.warning("EventDispatcher: discarded the late event " + seq + " of " + sid);
+				return;
+			}
+			if (props == null)
+				props = UNLISTENED_PROPS;
+			heldEvents.put(Long.valueOf(seq), props);
+			releaseHeldEvents();
+			if (0 < heldEvents.size() && gapTimer == null)
+				scheduleGapTimer();
+			runIfReady();
+		}
+
+		private void releaseHeldEvents()
+		{
+			while (0 < heldEvents.size()) {
+				PropertyList props = heldEvents.remove(Long.valueOf(nextSeq));
+				if (props == null)
+					break;
+				readyEvents.add(new Event(nextSeq, props, 0));
+				nextSeq = getNextSEQ(nextSeq);
+			}
+			if (heldEvents.size() <= 0 && gapTimer != null) {
+				gapTimer.cancel(false);
+				gapTimer = null;
+			}
+		}
+
+		private void scheduleGapTimer()
+		{
+			try {
+				gapTimer = pool.schedule(new Runnable() {
+					public void run() {
+						skipGap();
+					}
+				}, reorderTimeout, TimeUnit.MILLISECONDS);
+			}
+			catch (Exception e) {
+				// The dispatcher has been stopped.
+				gapTimer = null;
+			}
+		}
+
+		synchronized void skipGap()
+		{
+			gapTimer = null;
+			if (heldEvents.size() <= 0)
+				return;
+			long firstSeq = heldEvents.firstKey().longValue();
+			readyEvents.add(new Event(firstSeq, null, nextSeq));
+			nextSeq = firstSeq;
+			releaseHeldEvents();
+			if (0 < heldEvents.size())
+				scheduleGapTimer();
+			runIfReady();
+		}
+
+		private void runIfReady()
+		{
+			if (isRunning == true || readyEvents.size() <= 0)
+				return;
+			try {
+				pool.execute(this);
+				isRunning = true;
+			}
+			catch (Exception e) {
+				// The dispatcher has been stopped.
+				readyEvents.clear();
+			}
+		}
+
+		public void run()
+		{
+			while (true) {
+				Event event;
+				synchronized (this) {
+					if (readyEvents.size() <= 0) {
+						isRunning = false;
+						return;
+					}
+					event = readyEvents.remove(0);
+				}
+				if (queueMap.get(sid) != this)
+					continue;
+				if (event.isGap() == true)
+					deliverGap((isMulticast() == true) ? usn : sid, event.missedSeq, event.seq);
+				else if (event.isListened() == false)
+					continue;
+				else if (isMulticast() == true)
+					deliverMulticast(usn, svcid, event.seq, event.props);
+				else
+					deliver(sid, event.seq, event.props);
+			}
+		}
+	}
+}
@@ -0,0 +1,25 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: EventGapListener.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.event;
+
+public interface EventGapListener
+{
+	/**
+	 * Called when the events from expectedSeq to receivedSeq - 1 of the subscription have been
+	 * missed. The state variables of the service should be resynchronized.
+	 */
+	public void eventNotifyMissed(String uuid, long expectedSeq, long receivedSeq);
+}
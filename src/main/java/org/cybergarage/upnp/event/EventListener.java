@@ -10,6 +10,8 @@
 *
 *	11/18/02
 *		- first revision.
+*	10/18/26
+*		- Added the comment of the uuid which is the USN for the multicast events.
 *	
 ******************************************************************/
 
@@ -17,5 +19,8 @@ package org.cybergarage.upnp.event;
 
 public interface EventListener
 {
+	/**
+	 * @param uuid The SID of the subscription, or the USN of a multicast event.
+	 */
 	public void eventNotifyReceived(String uuid, long seq, String varName, String value);
 }
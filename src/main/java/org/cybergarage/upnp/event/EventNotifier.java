@@ -0,0 +1,920 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: EventNotifier.java
+*
+*	Revision:
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.event;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cybergarage.http.HTTPResponse;
+import org.cybergarage.util.Debug;
+
+/**
+ * Sends the event messages of a device to the subscribers asynchronously, so that
+ * StateVariable.setValue() returns without waiting for the subscribers.
+ * <p>
+ * Each subscriber has a bounded queue of which the events are sent on a shared pool,
+ * so the events of a subscriber keep the order of SEQ and a slow subscriber delays only
+ * its own events. The events queued within the batch window or while the previous message
+ * is sent are folded into one propertyset with the latest value of each variable. When the
+ * queue is full, the new event is merged into the last queued event.
+ * <p>
+ * The delivery history is kept for each callback address, so that it survives the
+ * re-subscriptions. The timeouts of a delivery are derived from the smoothed latency of
+ * the callback. A message which failed is sent again with its own values and SEQ after a
+ * delay which is doubled at each failure, and the events queued meanwhile are folded into
+ * the next message, so a retry received twice is only dropped as a duplicate. A callback
+ * which fails repeatedly is quarantined for a time which is doubled at each failure, while
+ * its events are held until the quarantine ends. The callbacks which are failing or slow are served by separate threads, so
+ * they don't delay the deliveries to the other subscribers.
+ */
+public class EventNotifier
+{
+	public final static int DEFAULT_MAX_THREADS = 4;
+	public final static int DEFAULT_MAX_QUEUE_SIZE = 64;
+	public final static int DEFAULT_CONNECT_TIMEOUT = 5000;
+	public final static int DEFAULT_READ_TIMEOUT = 10000;
+	public final static long DEFAULT_BATCH_WINDOW = 20;
+	public final static int DEFAULT_MAX_SLOW_THREADS = 2;
+	public final static int DEFAULT_MAX_FAILURES = 3;
+	public final static long DEFAULT_MIN_QUARANTINE_TIME = 5000;
+	public final static long DEFAULT_MAX_QUARANTINE_TIME = 300000;
+	public final static long DEFAULT_MIN_RETRY_DELAY = 1000;
+	public final static int DEFAULT_MIN_TIMEOUT = 1000;
+	public final static long DEFAULT_SLOW_LATENCY = 1000;
+
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	private ConcurrentMap<Subscriber, SubscriberQueue> queueMap = new ConcurrentHashMap<Subscriber, SubscriberQueue>();
+	private ConcurrentMap<String, DeliveryHealth> healthMap = new ConcurrentHashMap<String, DeliveryHealth>();
+
+	public EventNotifier()
+	{
+	}
+
+	////////////////////////////////////////////////
+	//	Parameters
+	////////////////////////////////////////////////
+
+	private int maxThreads = DEFAULT_MAX_THREADS;
+	private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+	private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+	private int readTimeout = DEFAULT_READ_TIMEOUT;
+
+	/**
+	 * Sets the number of the threads sending the events. It is applied at the next start().
+	 */
+	public void setMaxThreads(int n)
+	{
+		maxThreads = n;
+	}
+
+	public int getMaxThreads()
+	{
+		return maxThreads;
+	}
+
+	public void setMaxQueueSize(int n)
+	{
+		maxQueueSize = n;
+	}
+
+	public int getMaxQueueSize()
+	{
+		return maxQueueSize;
+	}
+
+	public void setConnectTimeout(int mtime)
+	{
+		connectTimeout = mtime;
+	}
+
+	public int getConnectTimeout()
+	{
+		return connectTimeout;
+	}
+
+	public void setReadTimeout(int mtime)
+	{
+		readTimeout = mtime;
+	}
+
+	public int getReadTimeout()
+	{
+		return readTimeout;
+	}
+
+	private long batchWindow = DEFAULT_BATCH_WINDOW;
+
+	/**
+	 * Sets the time in milliseconds to wait for the other changes before sending an event,
+	 * the changes within the window are sent in one message.
+	 */
+	public void setBatchWindow(long mtime)
+	{
+		batchWindow = mtime;
+	}
+
+	public long getBatchWindow()
+	{
+		return batchWindow;
+	}
+
+	private int maxSlowThreads = DEFAULT_MAX_SLOW_THREADS;
+	private int maxFailures = DEFAULT_MAX_FAILURES;
+	private long minQuarantineTime = DEFAULT_MIN_QUARANTINE_TIME;
+	private long maxQuarantineTime = DEFAULT_MAX_QUARANTINE_TIME;
+	private long minRetryDelay = DEFAULT_MIN_RETRY_DELAY;
+	private int minTimeout = DEFAULT_MIN_TIMEOUT;
+	private long slowLatency = DEFAULT_SLOW_LATENCY;
+
+	/**
+	 * Sets the number of the threads sending the events to the failing or slow callbacks.
+	 * It is applied at the next start().
+	 */
+	public void setMaxSlowThreads(int n)
+	{
+		maxSlowThreads = n;
+	}
+
+	public int getMaxSlowThreads()
+	{
+		return maxSlowThreads;
+	}
+
+	/**
+	 * Sets the number of the consecutive failures after which a callback is quarantined.
+	 */
+	public void setMaxFailures(int n)
+	{
+		maxFailures = n;
+	}
+
+	public int getMaxFailures()
+	{
+		return maxFailures;
+	}
+
+	/**
+	 * Sets the first and the longest quarantine times in milliseconds. The quarantine time is
+	 * doubled at each failure after the quarantine.
+	 */
+	public void setQuarantineTime(long minTime, long maxTime)
+	{
+		minQuarantineTime = minTime;
+		maxQuarantineTime = maxTime;
+	}
+
+	public long getMinQuarantineTime()
+	{
+		return minQuarantineTime;
+	}
+
+	public long getMaxQuarantineTime()
+	{
+		return maxQuarantineTime;
+	}
+
+	/**
+	 * Sets the delay in milliseconds before a failed message is sent again. The delay is
+	 * doubled at each consecutive failure up to the longest quarantine time.
+	 */
+	public void setMinRetryDelay(long mtime)
+	{
+		minRetryDelay = mtime;
+	}
+
+	public long getMinRetryDelay()
+	{
+		return minRetryDelay;
+	}
+
+	/**
+	 * Sets the shortest timeout in milliseconds derived from the latency of a callback.
+	 * The derived timeouts never exceed the connect and read timeouts.
+	 */
+	public void setMinTimeout(int mtime)
+	{
+		minTimeout = mtime;
+	}
+
+	public int getMinTimeout()
+	{
+		return minTimeout;
+	}
+
+	/**
+	 * Sets the smoothed latency in milliseconds over which a callback is served by the slow threads.
+	 */
+	public void setSlowLatency(long mtime)
+	{
+		slowLatency = mtime;
+	}
+
+	public long getSlowLatency()
+	{
+		return slowLatency;
+	}
+
+	////////////////////////////////////////////////
+	//	start/stop
+	////////////////////////////////////////////////
+
+	private ExecutorService executor = null;
+	private ExecutorService slowExecutor = null;
+	private ScheduledThreadPoolExecutor timer = null;
+
+	public synchronized void start()
+	{
+		stop();
+		timer = new ScheduledThreadPoolExecutor(
+			1,
+			new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "Cyber.EventNotifier.Timer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		timer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		executor = createExecutor(maxThreads, "Cyber.EventNotifier");
+		slowExecutor = createExecutor(maxSlowThreads, "Cyber.EventNotifier.Slow");
+	}
+
+	private final static ExecutorService createExecutor(int nThreads, final String name)
+	{
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(
+			nThreads,
+			nThreads,
+			60,
+			TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(),
+			new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, name);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	/**
+	 * Stops the notifier. The running deliveries are not interrupted, but the queued events are discarded.
+	 */
+	public synchronized void stop()
+	{
+		if (executor == null)
+			return;
+		executor.shutdown();
+		executor = null;
+		slowExecutor.shutdown();
+		slowExecutor = null;
+		timer.shutdownNow();
+		timer = null;
+		queueMap.clear();
+		healthMap.clear();
+		queuedCount.set(0);
+	}
+
+	public synchronized boolean isRunnable()
+	{
+		return (executor != null) ? true : false;
+	}
+
+	private synchronized ExecutorService getExecutor()
+	{
+		return executor;
+	}
+
+	private synchronized ExecutorService getSlowExecutor()
+	{
+		return slowExecutor;
+	}
+
+	////////////////////////////////////////////////
+	//	Notify
+	////////////////////////////////////////////////
+
+	/**
+	 * Queues the event of the state variable to the subscriber.
+	 * @return false if the notifier isn't running.
+	 */
+	public boolean notify(Subscriber sub, String varName, String value)
+	{
+		return notify(sub, toPropertyList(varName, value));
+	}
+
+	/**
+	 * Queues the event of the state variables to the subscriber. The variables are sent in
+	 * one message with the other variables which are queued within the batch window.
+	 * @return false if the notifier isn't running.
+	 */
+	public boolean notify(Subscriber sub, PropertyList props)
+	{
+		ExecutorService pool = getExecutor();
+		if (pool == null)
+			return false;
+		SubscriberQueue queue = queueMap.get(sub);
+		if (queue == null) {
+			queue = new SubscriberQueue(sub, getHealth(sub));
+			SubscriberQueue oldQueue = queueMap.putIfAbsent(sub, queue);
+			if (oldQueue != null)
+				queue = oldQueue;
+		}
+		queue.add(props);
+		return true;
+	}
+
+	/**
+	 * Runs the task after the delay in milliseconds, which is used to send the moderated events.
+	 * @return false if the notifier isn't running.
+	 */
+	public synchronized boolean schedule(Runnable task, long delay)
+	{
+		if (timer == null)
+			return false;
+		try {
+			timer.schedule(task, delay, TimeUnit.MILLISECONDS);
+		}
+		catch (Exception e) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Discards the queue of the subscriber, call this when the subscriber is removed.
+	 */
+	public void remove(Subscriber sub)
+	{
+		SubscriberQueue queue = queueMap.remove(sub);
+		if (queue == null)
+			return;
+		queuedCount.addAndGet(-queue.clear());
+		// The history of a failing callback is kept for its re-subscription.
+		DeliveryHealth health = queue.getHealth();
+		if (health.isExpired(System.currentTimeMillis()) == true)
+			healthMap.remove(health.getCallback(), health);
+	}
+
+	@SuppressWarnings("unchecked")
+	public final static PropertyList toPropertyList(String varName, String value)
+	{
+		PropertyList props = new PropertyList();
+		Property prop = new Property();
+		prop.setName(varName);
+		prop.setValue(value);
+		props.add(prop);
+		return props;
+	}
+
+	@SuppressWarnings("unchecked")
+	private final static PropertyList toPropertyList(Map<String, String> values)
+	{
+		PropertyList props = new PropertyList();
+		Iterator<Map.Entry<String, String>> valueIt = values.entrySet().iterator();
+		while (valueIt.hasNext() == true) {
+			Map.Entry<String, String> entry = valueIt.next();
+			Property prop = new Property();
+			prop.setName(entry.getKey());
+			prop.setValue(entry.getValue());
+			props.add(prop);
+		}
+		return props;
+	}
+
+	/**
+	 * Sends the event to the subscriber in the calling thread.
+	 */
+	public final static boolean post(Subscriber sub, String varName, String value, int connectTimeout, int readTimeout)
+	{
+		return post(sub, toPropertyList(varName, value), connectTimeout, readTimeout);
+	}
+
+	/**
+	 * Sends the event of the state variables to the subscriber in one message in the calling thread.
+	 */
+	public final static boolean post(Subscriber sub, PropertyList props, int connectTimeout, int readTimeout)
+	{
+		NotifyRequest notifyReq = new NotifyRequest();
+		notifyReq.setRequest(sub, props);
+		notifyReq.setConnectTimeout(connectTimeout);
+		notifyReq.setReadTimeout(readTimeout);
+
+		HTTPResponse res = notifyReq.post(sub.getDeliveryHost(), sub.getDeliveryPort());
+		if (res.isSuccessful() == false)
+			return false;
+
+		sub.incrementNotifyCount();
+
+		return true;
+	}
+
+	////////////////////////////////////////////////
+	//	Health
+	////////////////////////////////////////////////
+
+	private final static String getCallback(Subscriber sub)
+	{
+		return sub.getDeliveryHost() + ":" + sub.getDeliveryPort();
+	}
+
+	private DeliveryHealth getHealth(Subscriber sub)
+	{
+		String callback = getCallback(sub);
+		DeliveryHealth health = healthMap.get(callback);
+		if (health != null)
+			return health;
+		health = new DeliveryHealth(callback);
+		DeliveryHealth oldHealth = healthMap.putIfAbsent(callback, health);
+		if (oldHealth != null)
+			return oldHealth;
+		return health;
+	}
+
+	private DeliveryHealth findHealth(Subscriber sub)
+	{
+		return healthMap.get(getCallback(sub));
+	}
+
+	/**
+	 * Returns true if the events to the callback of the subscriber are held because its
+	 * deliveries failed repeatedly.
+	 */
+	public boolean isQuarantined(Subscriber sub)
+	{
+		DeliveryHealth health = findHealth(sub);
+		if (health == null)
+			return false;
+		return (0 < health.getQuarantineRemaining(System.currentTimeMillis())) ? true : false;
+	}
+
+	public int getQuarantinedCount()
+	{
+		long now = System.currentTimeMillis();
+		int quarantinedCnt = 0;
+		Iterator<DeliveryHealth> healthIt = healthMap.values().iterator();
+		while (healthIt.hasNext() == true) {
+			if (0 < healthIt.next().getQuarantineRemaining(now))
+				quarantinedCnt++;
+		}
+		return quarantinedCnt;
+	}
+
+	public int getConsecutiveFailures(Subscriber sub)
+	{
+		DeliveryHealth health = findHealth(sub);
+		if (health == null)
+			return 0;
+		return health.getConsecutiveFailures();
+	}
+
+	/**
+	 * Returns the smoothed latency in milliseconds of the deliveries to the callback of the
+	 * subscriber, or -1 if no event has been delivered yet.
+	 */
+	public long getSmoothedLatency(Subscriber sub)
+	{
+		DeliveryHealth health = findHealth(sub);
+		if (health == null)
+			return -1;
+		return health.getSmoothedLatency();
+	}
+
+	private class DeliveryHealth
+	{
+		private String callback;
+		// The smoothed latency and its variation in the manner of TCP RTO (RFC 6298).
+		private long srtt = -1;
+		private long rttvar = 0;
+		private int consecutiveFailures = 0;
+		private long quarantineTime = 0;
+		private long quarantineEndTime = 0;
+		private long lastUpdateTime = 0;
+
+		DeliveryHealth(String callback)
+		{
+			this.callback = callback;
+		}
+
+		String getCallback()
+		{
+			return callback;
+		}
+
+		synchronized long getSmoothedLatency()
+		{
+			return srtt;
+		}
+
+		synchronized int getConsecutiveFailures()
+		{
+			return consecutiveFailures;
+		}
+
+		synchronized long getQuarantineRemaining(long now)
+		{
+			if (quarantineEndTime <= now)
+				return 0;
+			return quarantineEndTime - now;
+		}
+
+		synchronized boolean isSlow()
+		{
+			if (0 < consecutiveFailures)
+				return true;
+			return (slowLatency < srtt) ? true : false;
+		}
+
+		/**
+		 * Returns true if the history has no use, that is the callback has no failures or
+		 * has not been used for the longest quarantine time.
+		 */
+		synchronized boolean isExpired(long now)
+		{
+			if (consecutiveFailures <= 0)
+				return true;
+			return (lastUpdateTime + maxQuarantineTime < now) ? true : false;
+		}
+
+		private int getTimeout(int maxTimeout)
+		{
+			if (srtt < 0)
+				return maxTimeout;
+			long timeout = srtt + 4 * rttvar;
+			// The timeout is backed off while the deliveries fail, not to give up a callback which has become slower.
+			for (int n=0; n<consecutiveFailures && timeout < maxTimeout; n++)
+				timeout *= 2;
+			if (timeout < minTimeout)
+				timeout = minTimeout;
+			if (maxTimeout < timeout)
+				timeout = maxTimeout;
+			return (int)timeout;
+		}
+
+		synchronized int getConnectTimeout()
+		{
+			return getTimeout(connectTimeout);
+		}
+
+		synchronized int getReadTimeout()
+		{
+			return getTimeout(readTimeout);
+		}
+
+		synchronized void delivered(long latency, long now)
+		{
+			if (srtt < 0) {
+				srtt = latency;
+				rttvar = latency / 2;
+			}
+			else {
+				rttvar = (3 * rttvar + Math.abs(srtt - latency)) / 4;
+				srtt = (7 * srtt + latency) / 8;
+			}
+			consecutiveFailures = 0;
+			quarantineTime = 0;
+			quarantineEndTime = 0;
+			lastUpdateTime = now;
+		}
+
+		/**
+		 * Records the failure, and returns true if the callback is quarantined.
+		 */
+		synchronized boolean failed(long now)
+		{
+			consecutiveFailures++;
+			lastUpdateTime = now;
+			if (consecutiveFailures < maxFailures)
+				return false;
+			if (quarantineTime <= 0)
+				quarantineTime = minQuarantineTime;
+			else
+				quarantineTime = Math.min(quarantineTime * 2, maxQuarantineTime);
+			quarantineEndTime = now + quarantineTime;
+			return true;
+		}
+
+		/**
+		 * Returns the delay before a failed message is sent again, which is not shorter than the quarantine.
+		 */
+		synchronized long getRetryDelay(long now)
+		{
+			long delay = minRetryDelay;
+			for (int n=1; n<consecutiveFailures && delay < maxQuarantineTime; n++)
+				delay *= 2;
+			if (maxQuarantineTime < delay)
+				delay = maxQuarantineTime;
+			return Math.max(delay, getQuarantineRemaining(now));
+		}
+	}
+
+	////////////////////////////////////////////////
+	//	Statistics
+	////////////////////////////////////////////////
+
+	private AtomicLong queuedCount = new AtomicLong();
+	private AtomicLong deliveredCount = new AtomicLong();
+	private AtomicLong failedCount = new AtomicLong();
+	private AtomicLong droppedCount = new AtomicLong();
+	private AtomicLong quarantineCount = new AtomicLong();
+	private AtomicLong totalLatency = new AtomicLong();
+	private AtomicLong maxLatency = new AtomicLong();
+
+	/**
+	 * Returns the number of the events waiting to be sent to all subscribers.
+	 */
+	public long getQueueDepth()
+	{
+		return queuedCount.get();
+	}
+
+	public int getQueueDepth(Subscriber sub)
+	{
+		SubscriberQueue queue = queueMap.get(sub);
+		if (queue == null)
+			return 0;
+		return queue.size();
+	}
+
+	/**
+	 * Returns the largest number of the events waiting to be sent to a subscriber.
+	 */
+	public int getMaxQueueDepth()
+	{
+		int maxDepth = 0;
+		Iterator<SubscriberQueue> queueIt = queueMap.values().iterator();
+		while (queueIt.hasNext() == true) {
+			int depth = queueIt.next().size();
+			if (maxDepth < depth)
+				maxDepth = depth;
+		}
+		return maxDepth;
+	}
+
+	public long getDeliveredCount()
+	{
+		return deliveredCount.get();
+	}
+
+	public long getFailedCount()
+	{
+		return failedCount.get();
+	}
+
+	/**
+	 * Returns the number of the events which were merged into the last queued event because the queue was full.
+	 */
+	public long getDroppedCount()
+	{
+		return droppedCount.get();
+	}
+
+	/**
+	 * Returns the number of the times which the callbacks were quarantined.
+	 */
+	public long getQuarantineCount()
+	{
+		return quarantineCount.get();
+	}
+
+	/**
+	 * Returns the average time in milliseconds from queuing an event to the end of the delivery.
+	 */
+	public long getAverageLatency()
+	{
+		long cnt = deliveredCount.get() + failedCount.get();
+		if (cnt <= 0)
+			return 0;
+		return totalLatency.get() / cnt;
+	}
+
+	public long getMaxLatency()
+	{
+		return maxLatency.get();
+	}
+
+	public void resetStatistics()
+	{
+		deliveredCount.set(0);
+		failedCount.set(0);
+		droppedCount.set(0);
+		quarantineCount.set(0);
+		totalLatency.set(0);
+		maxLatency.set(0);
+	}
+
+	private void updateLatency(long latency)
+	{
+		totalLatency.addAndGet(latency);
+		while (true) {
+			long currMax = maxLatency.get();
+			if (latency <= currMax || maxLatency.compareAndSet(currMax, latency) == true)
+				break;
+		}
+	}
+
+	////////////////////////////////////////////////
+	//	Queue
+	////////////////////////////////////////////////
+
+	private static class Event
+	{
+		Map<String, String> values = new LinkedHashMap<String, String>();
+		long queuedTime;
+		// The values are not changed once the message has been posted, a retry has the same values.
+		boolean isAttempted = false;
+
+		Event(PropertyList props)
+		{
+			merge(props);
+			this.queuedTime = System.currentTimeMillis();
+		}
+
+		void merge(PropertyList props)
+		{
+			int propCnt = props.size();
+			for (int n=0; n<propCnt; n++) {
+				Property prop = props.getProperty(n);
+				values.put(prop.getName(), prop.getValue());
+			}
+		}
+	}
+
+	private class SubscriberQueue implements Runnable
+	{
+		private Subscriber sub;
+		private DeliveryHealth health;
+		private Vector<Event> events = new Vector<Event>();
+		private boolean isRunning = false;
+
+		SubscriberQueue(Subscriber sub, DeliveryHealth health)
+		{
+			this.sub = sub;
+			this.health = health;
+		}
+
+		DeliveryHealth getHealth()
+		{
+			return health;
+		}
+
+		synchronized int size()
+		{
+			return events.size();
+		}
+
+		synchronized int clear()
+		{
+			int cnt = events.size();
+			events.clear();
+			return cnt;
+		}
+
+		synchronized void add(PropertyList props)
+		{
+			if (0 < events.size() && maxQueueSize <= events.size() && events.lastElement().isAttempted == false) {
+				// The queued events are sent in one message, so the latest values are kept.
+				droppedCount.incrementAndGet();
+				events.lastElement().merge(props);
+				return;
+			}
+			events.add(new Event(props));
+			queuedCount.incrementAndGet();
+			if (isRunning == true)
+				return;
+			isRunning = true;
+			long delay = Math.max(batchWindow, health.getQuarantineRemaining(System.currentTimeMillis()));
+			executeLater(delay);
+		}
+
+		private synchronized void executeLater(long delay)
+		{
+			if (0 < delay) {
+				Runnable startTask = new Runnable() {
+					public void run() {
+						execute();
+					}
+				};
+				if (EventNotifier.this.schedule(startTask, delay) == true)
+					return;
+			}
+			execute();
+		}
+
+		private synchronized void execute()
+		{
+			ExecutorService pool = (health.isSlow() == true) ? getSlowExecutor() : getExecutor();
+			try {
+				pool.execute(this);
+			}
+			catch (Exception e) {
+				// The notifier has been stopped.
+				queuedCount.addAndGet(-events.size());
+				events.clear();
+				isRunning = false;
+			}
+		}
+
+		public void run()
+		{
+			while (true) {
+				Event batch[];
+				synchronized (this) {
+					if (events.size() <= 0) {
+						isRunning = false;
+						return;
+					}
+					if (events.firstElement().isAttempted == true) {
+						// The failed message is sent again alone, the newer events follow it.
+						batch = new Event[1];
+						batch[0] = events.remove(0);
+					}
+					else {
+						batch = new Event[events.size()];
+						events.copyInto(batch);
+						events.clear();
+					}
+					queuedCount.addAndGet(-batch.length);
+				}
+				if (queueMap.get(sub) != this)
+					continue;
+				// The events queued while the previous message was sent are folded into one message.
+				Event event = batch[0];
+				for (int n=1; n<batch.length; n++)
+					event.values.putAll(batch[n].values);
+				// Another subscriber of the same callback may have quarantined it.
+				long quarantineRemaining = health.getQuarantineRemaining(System.currentTimeMillis());
+				if (0 < quarantineRemaining) {
+					hold(event, quarantineRemaining);
+					return;
+				}
+				long startTime = System.currentTimeMillis();
+				boolean isDelivered = false;
+				event.isAttempted = true;
+				try {
+					isDelivered = post(sub, toPropertyList(event.values), health.getConnectTimeout(), health.getReadTimeout());
+				}
+				catch (Exception e) {
+					Debug.warning(e);
+				}
+				long endTime = System.currentTimeMillis();
+				updateLatency(endTime - event.queuedTime);
+				if (isDelivered == true) {
+					deliveredCount.incrementAndGet();
+					health.delivered(endTime - startTime, endTime);
+					continue;
+				}
+				failedCount.incrementAndGet();
+				if (health.failed(endTime) == true) {
+					quarantineCount.incrementAndGet();
+					Debug.warning("EventNotifier: quarantined " + health.getCallback() + " for " + health.getQuarantineRemaining(endTime) + " ms");
+				}
+				// The failed event is sent again after the backoff, or after the quarantine.
+				hold(event, health.getRetryDelay(endTime));
+				return;
+			}
+		}
+
+		/**
+		 * Puts back the event in front of the queued events, and sends them after the delay.
+		 */
+		private synchronized void hold(Event event, long delay)
+		{
+			if (queueMap.get(sub) != this) {
+				isRunning = false;
+				return;
+			}
+			events.insertElementAt(event, 0);
+			queuedCount.incrementAndGet();
+			executeLater(delay);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: EventedValue.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.event;
+
+/**
+ * Immutable value of a state variable received in an event message.
+ */
+public class EventedValue
+{
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	private String name;
+	private String value;
+	private long seq;
+	private long timestamp;
+
+	public EventedValue(String name, String value, long seq, long timestamp)
+	{
+		this.name = name;
+		this.value = value;
+		this.seq = seq;
+		this.timestamp = timestamp;
+	}
+
+	////////////////////////////////////////////////
+	//	Member
+	////////////////////////////////////////////////
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public String getValue()
+	{
+		return value;
+	}
+
+	/**
+	 * Returns the SEQ of the event message which carried the value.
+	 */
+	public long getSEQ()
+	{
+		return seq;
+	}
+
+	/**
+	 * Returns the time in milliseconds when the value was received.
+	 */
+	public long getTimestamp()
+	{
+		return timestamp;
+	}
+
+	public boolean hasSameValue(EventedValue other)
+	{
+		if (other == null)
+			return false;
+		return value.equals(other.getValue());
+	}
+}
@@ -0,0 +1,129 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: MulticastNotifyRequest.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.event;
+
+import org.cybergarage.http.*;
+import org.cybergarage.upnp.*;
+import org.cybergarage.upnp.device.*;
+import org.cybergarage.xml.*;
+
+/**
+ * Multicast event message of UPnP Device Architecture 1.1, which is sent to the multicast
+ * group instead of the subscribers.
+ */
+public class MulticastNotifyRequest extends NotifyRequest
+{
+	public final static String LVL_EMERGENCY = "upnp:/emergency";
+	public final static String LVL_FAULT = "upnp:/fault";
+	public final static String LVL_WARNING = "upnp:/warning";
+	public final static String LVL_INFO = "upnp:/info";
+	public final static String LVL_DEBUG = "upnp:/debug";
+	public final static String LVL_GENERAL = "upnp:/general";
+
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+	
+	public MulticastNotifyRequest()
+	{
+		setVersion(HTTP.VERSION_10);
+	}
+
+	////////////////////////////////////////////////
+	//	USN
+	////////////////////////////////////////////////
+
+	public void setUSN(String value)
+	{
+		setHeader(HTTP.USN, value);
+	}
+
+	public String getUSN()
+	{
+		return getHeaderValue(HTTP.USN);
+	}
+
+	////////////////////////////////////////////////
+	//	SVCID
+	////////////////////////////////////////////////
+
+	public void setSVCID(String value)
+	{
+		setHeader(HTTP.SVCID, value);
+	}
+
+	public String getSVCID()
+	{
+		return getHeaderValue(HTTP.SVCID);
+	}
+
+	////////////////////////////////////////////////
+	//	LVL
+	////////////////////////////////////////////////
+
+	public void setLVL(String value)
+	{
+		setHeader(HTTP.LVL, value);
+	}
+
+	public String getLVL()
+	{
+		return getHeaderValue(HTTP.LVL);
+	}
+
+	////////////////////////////////////////////////
+	//	BOOTID.UPNP.ORG
+	////////////////////////////////////////////////
+
+	public void setBootId(int id)
+	{
+		if (id < 0)
+			return;
+		setHeader(HTTP.BOOTID_UPNP_ORG, id);
+	}
+
+	////////////////////////////////////////////////
+	//	Request
+	////////////////////////////////////////////////
+
+	/**
+	 * Sets the event of the state variables of the service. The HOST header is set by
+	 * the socket which sends the message.
+	 */
+	public boolean setRequest(Service service, long seq, String lvl, PropertyList props)
+	{
+		Device dev = service.getDevice();
+		if (dev == null)
+			return false;
+		
+		setMethod(HTTP.NOTIFY);
+		setURI("*");
+		setNT(NT.EVENT);
+		setNTS(NTS.PROPCHANGE);
+		setUSN(dev.getUDN() + "::" + service.getServiceType());
+		setSVCID(service.getServiceID());
+		setLVL(lvl);
+		setSEQ(seq);
+		setBootId(dev.getBootId());
+
+		setContentType(XML.CONTENT_TYPE);
+		Node propSetNode = createPropertySetNode(props);
+		setContent(propSetNode);		
+
+		return true;
+	}
+}
+
@@ -33,6 +33,10 @@
 *		- Error :  the other xml nodes of the message are ignored
 *		- Fix : add two methods to the NotifyRequest for extracting the property array
 *                and modify the httpRequestRecieved method in ControlPoint
+*	10/18/26
+*		- Added setRequest(Subscriber, PropertyList) to send the variables in one propertyset.
+*		- Changed createPropertySetNode() to protected for MulticastNotifyRequest.
+*		- Changed getPropertyList() to return an empty list when the content isn't a valid XML.
 *	
 ******************************************************************/
 
@@ -112,8 +116,13 @@ public class NotifyRequest extends SOAPRequest
 	//	Constructor
 	////////////////////////////////////////////////
 
-	@SuppressWarnings("unused")
 	public boolean setRequest(Subscriber sub, String varName, String value)
+	{
+		return setRequest(sub, EventNotifier.toPropertyList(varName, value));
+	}
+
+	@SuppressWarnings("unused")
+	public boolean setRequest(Subscriber sub, PropertyList props)
 	{
 		String callback = sub.getDeliveryURL();
 		String sid = sub.getSID();
@@ -131,26 +140,31 @@ public class NotifyRequest extends SOAPRequest
 		setSEQ(notifyCnt);
 
 		setContentType(XML.CONTENT_TYPE);
-		Node propSetNode = createPropertySetNode(varName, value);
+		Node propSetNode = createPropertySetNode(props);
 		setContent(propSetNode);		
 
 		return true;			
 	}
 	
-	private Node createPropertySetNode(String varName, String value)
+	protected Node createPropertySetNode(PropertyList props)
 	{
 		Node propSetNode = new Node(/*XMLNS + SOAP.DELIM + */PROPERTYSET);
 		
 		propSetNode.setNameSpace(XMLNS, Subscription.XMLNS);
 
-		Node propNode = new Node(/*XMLNS + SOAP.DELIM + */PROPERTY);
-		propSetNode.addNode(propNode);
-		
-		// Thanks for Giordano Sassaroli <sassarol@cefriel.it> (05/22/03)
-		//Node varNameNode = new Node(XMLNS + SOAP.DELIM + varName);
-		Node varNameNode = new Node(varName);
-		varNameNode.setValue(value);
-		propNode.addNode(varNameNode);
+		int propCnt = props.size();
+		for (int n=0; n<propCnt; n++) {
+			Property prop = props.getProperty(n);
+			
+			Node propNode = new Node(/*XMLNS + SOAP.DELIM + */PROPERTY);
+			propSetNode.addNode(propNode);
+			
+			// Thanks for Giordano Sassaroli <sassarol@cefriel.it> (05/22/03)
+			//Node varNameNode = new Node(XMLNS + SOAP.DELIM + varName);
+			Node varNameNode = new Node(prop.getName());
+			varNameNode.setValue(prop.getValue());
+			propNode.addNode(varNameNode);
+		}
 		
 		return propSetNode;
 	}
@@ -190,6 +204,8 @@ public class NotifyRequest extends SOAPRequest
 	public PropertyList getPropertyList() {
 		PropertyList properties = new PropertyList();
 		Node varSetNode = getEnvelopeNode();
+		if (varSetNode == null)
+			return properties;
 		for (int i = 0; i<varSetNode.getNNodes(); i++){
 			Node propNode = varSetNode.getNode(i);
 			if (propNode == null)
@@ -0,0 +1,145 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: PropertySet.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.event;
+
+import java.util.Collection;
+import java.util.Vector;
+
+import org.cybergarage.upnp.Service;
+
+/**
+ * Immutable properties of an event message with the SID, the SEQ and the subscribed service.
+ */
+public class PropertySet
+{
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	private String sid;
+	private long seq;
+	private Service service;
+	private String names[];
+	private String values[];
+
+	private PropertySet(String sid, long seq, Service service, String names[], String values[])
+	{
+		this.sid = sid;
+		this.seq = seq;
+		this.service = service;
+		this.names = names;
+		this.values = values;
+	}
+
+	public PropertySet(String sid, long seq, Service service, PropertyList props)
+	{
+		this.sid = sid;
+		this.seq = seq;
+		this.service = service;
+		int propCnt = props.size();
+		names = new String[propCnt];
+		values = new String[propCnt];
+		for (int n=0; n<propCnt; n++) {
+			Property prop = props.getProperty(n);
+			names[n] = prop.getName();
+			values[n] = prop.getValue();
+		}
+	}
+
+	////////////////////////////////////////////////
+	//	Subscription
+	////////////////////////////////////////////////
+
+	public String getSID()
+	{
+		return sid;
+	}
+
+	public long getSEQ()
+	{
+		return seq;
+	}
+
+	/**
+	 * Returns the subscribed service, or null if the event is received before the
+	 * subscription has been completed.
+	 */
+	public Service getService()
+	{
+		return service;
+	}
+
+	////////////////////////////////////////////////
+	//	Properties
+	////////////////////////////////////////////////
+
+	public int size()
+	{
+		return names.length;
+	}
+
+	public String getName(int n)
+	{
+		return names[n];
+	}
+
+	public String getValue(int n)
+	{
+		return values[n];
+	}
+
+	/**
+	 * Returns the last value of the specified variable in the event, or null if the event
+	 * doesn't include the variable.
+	 */
+	public String getValue(String name)
+	{
+		for (int n=names.length-1; 0<=n; n--) {
+			if (names[n].equals(name) == true)
+				return values[n];
+		}
+		return null;
+	}
+
+	public boolean hasProperty(String name)
+	{
+		return (getValue(name) != null) ? true : false;
+	}
+
+	/**
+	 * Returns the properties of the specified variables, or null if the event includes none of them.
+	 */
+	public PropertySet filter(Collection<String> varNames)
+	{
+		Vector<String> nameList = new Vector<String>();
+		Vector<String> valueList = new Vector<String>();
+		for (int n=0; n<names.length; n++) {
+			if (varNames.contains(names[n]) == false)
+				continue;
+			nameList.add(names[n]);
+			valueList.add(values[n]);
+		}
+		if (nameList.size() <= 0)
+			return null;
+		if (nameList.size() == names.length)
+			return this;
+		String filteredNames[] = new String[nameList.size()];
+		nameList.copyInto(filteredNames);
+		String filteredValues[] = new String[valueList.size()];
+		valueList.copyInto(filteredValues);
+		return new PropertySet(sid, seq, service, filteredNames, filteredValues);
+	}
+}
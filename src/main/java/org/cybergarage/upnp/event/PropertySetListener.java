@@ -0,0 +1,24 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: PropertySetListener.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.event;
+
+public interface PropertySetListener
+{
+	/**
+	 * Called once for each event message with all the properties of the message.
+	 */
+	public void propertySetReceived(PropertySet propSet);
+}
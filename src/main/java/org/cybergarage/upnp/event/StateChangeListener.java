@@ -0,0 +1,27 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: StateChangeListener.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.event;
+
+import org.cybergarage.upnp.Service;
+
+public interface StateChangeListener
+{
+	/**
+	 * Called when an event message changes the cached value of a state variable.
+	 * @param oldValue The previous value, or null if the value wasn't received yet.
+	 */
+	public void stateVariableChanged(Service service, EventedValue oldValue, EventedValue newValue);
+}
@@ -0,0 +1,166 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: SubscriberRegistry.java
+*
+*	Revision:
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.event;
+
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.cybergarage.util.TimerWheel;
+
+/**
+ * Subscribers of a service indexed by SID, with the expiry deadlines in a TimerWheel.
+ * <p>
+ * The subscribers are iterated over an array snapshot which is rebuilt only after
+ * the subscribers are changed, and the expired subscribers are found without checking
+ * all subscribers.
+ */
+public class SubscriberRegistry
+{
+	private final static Subscriber EMPTY_SUBSCRIBERS[] = new Subscriber[0];
+	private final static long EXPIRY_TICK_TIME = 1000;
+	private final static int EXPIRY_SLOTS = 512;
+
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	private ConcurrentMap<Subscriber, Subscriber> subMap = new ConcurrentHashMap<Subscriber, Subscriber>();
+	private ConcurrentMap<String, Subscriber> sidMap = new ConcurrentHashMap<String, Subscriber>();
+	private TimerWheel<Subscriber> expiryWheel = new TimerWheel<Subscriber>(EXPIRY_TICK_TIME, EXPIRY_SLOTS);
+	private volatile Subscriber snapshot[] = EMPTY_SUBSCRIBERS;
+	private volatile boolean isSnapshotValid = true;
+
+	public SubscriberRegistry()
+	{
+	}
+
+	////////////////////////////////////////////////
+	//	Subscriber
+	////////////////////////////////////////////////
+
+	public void add(Subscriber sub)
+	{
+		if (subMap.putIfAbsent(sub, sub) != null)
+			return;
+		String sid = sub.getSID();
+		if (sid != null)
+			sidMap.put(sid, sub);
+		schedule(sub);
+		isSnapshotValid = false;
+	}
+
+	public boolean remove(Subscriber sub)
+	{
+		if (subMap.remove(sub) == null)
+			return false;
+		String sid = sub.getSID();
+		if (sid != null)
+			sidMap.remove(sid, sub);
+		expiryWheel.cancel(sub);
+		isSnapshotValid = false;
+		return true;
+	}
+
+	public void clear()
+	{
+		subMap.clear();
+		sidMap.clear();
+		expiryWheel.clear();
+		isSnapshotValid = false;
+	}
+
+	public Subscriber getSubscriber(String sid)
+	{
+		if (sid == null)
+			return null;
+		return sidMap.get(sid);
+	}
+
+	public int size()
+	{
+		return subMap.size();
+	}
+
+	/**
+	 * Returns the subscribers at this moment. The returned array isn't changed
+	 * by the later additions and removals.
+	 */
+	public Subscriber[] getSubscribers()
+	{
+		if (isSnapshotValid == true)
+			return snapshot;
+		synchronized (this) {
+			if (isSnapshotValid == true)
+				return snapshot;
+			// Set the flag before copying so that a change during the copy invalidates the snapshot again.
+			isSnapshotValid = true;
+			snapshot = subMap.keySet().toArray(EMPTY_SUBSCRIBERS);
+			return snapshot;
+		}
+	}
+
+	/**
+	 * Returns a new list of the subscribers, which isn't changed with the registry.
+	 */
+	@SuppressWarnings("unchecked")
+	public SubscriberList getSubscriberList()
+	{
+		Subscriber subs[] = getSubscribers();
+		SubscriberList subList = new SubscriberList();
+		for (int n=0; n<subs.length; n++)
+			subList.add(subs[n]);
+		return subList;
+	}
+
+	////////////////////////////////////////////////
+	//	Expiry
+	////////////////////////////////////////////////
+
+	/**
+	 * Updates the expiry deadline of the subscriber, call this after the subscription is renewed.
+	 */
+	public void schedule(Subscriber sub)
+	{
+		if (subMap.containsKey(sub) == false)
+			return;
+		if (sub.getTimeOut() == Subscription.INFINITE_VALUE) {
+			expiryWheel.cancel(sub);
+			return;
+		}
+		expiryWheel.schedule(sub, sub.getSubscriptionTime() + sub.getTimeOut() * 1000);
+	}
+
+	/**
+	 * Removes and returns the subscribers of which the subscriptions have expired.
+	 */
+	public Vector<Subscriber> removeExpired(long now)
+	{
+		Vector<Subscriber> expiredSubs = expiryWheel.expire(now);
+		int expiredCnt = expiredSubs.size();
+		for (int n=expiredCnt-1; 0<=n; n--) {
+			Subscriber sub = expiredSubs.get(n);
+			// The subscription has been renewed without schedule().
+			if (sub.isExpired() == false) {
+				schedule(sub);
+				expiredSubs.remove(n);
+				continue;
+			}
+			remove(sub);
+		}
+		return expiredSubs;
+	}
+}
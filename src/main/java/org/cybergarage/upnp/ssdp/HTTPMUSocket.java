@@ -24,6 +24,10 @@
 *		- Changed receive() to throw IOException.
 *	01/10/08
 *		- Changed getLocalAddress() to return a brank string when the ssdpMultiGroup or ssdpMultiIf is null on Android m3-rc37a.
+*	10/18/26
+*		- Added receive(int) for the messages larger than SSDP.RECV_MESSAGE_BUFSIZE.
+*		- Changed send() to bind an ephemeral port of the address when the port is 0,
+*		  and to send the encoded length of the message.
 *	
 ******************************************************************/
 
@@ -197,13 +201,14 @@ public class HTTPMUSocket
 	{
 		try {
 			MulticastSocket msock;
-			if ((bindAddr) != null && (0 < bindPort)) {
+			if ((bindAddr) != null && (0 <= bindPort)) {
 				msock = new MulticastSocket(null);
 				msock.bind(new InetSocketAddress(bindAddr, bindPort));
 			}else{ 
 				msock = new MulticastSocket();
 			}
-			DatagramPacket dgmPacket = new DatagramPacket(msg.getBytes(), msg.length(), ssdpMultiGroup);
+			byte msgBytes[] = msg.getBytes();
+			DatagramPacket dgmPacket = new DatagramPacket(msgBytes, msgBytes.length, ssdpMultiGroup);
 			// Thnaks for Theo Beisch (11/09/04)
 			msock.setTimeToLive(UPnP.getTimeToLive());
 			msock.send(dgmPacket);
@@ -241,7 +246,12 @@ public class HTTPMUSocket
 
 	public SSDPPacket receive() throws IOException
 	{
-		byte ssdvRecvBuf[] = new byte[SSDP.RECV_MESSAGE_BUFSIZE];
+		return receive(SSDP.RECV_MESSAGE_BUFSIZE);
+	}
+
+	public SSDPPacket receive(int bufSize) throws IOException
+	{
+		byte ssdvRecvBuf[] = new byte[bufSize];
  		SSDPPacket recvPacket = new SSDPPacket(ssdvRecvBuf, ssdvRecvBuf.length);
 		recvPacket.setLocalAddress(getLocalAddress());
 
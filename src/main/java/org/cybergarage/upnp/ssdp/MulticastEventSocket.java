@@ -0,0 +1,143 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: MulticastEventSocket.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.ssdp;
+
+import java.net.*;
+import java.io.IOException;
+
+import org.cybergarage.http.*;
+import org.cybergarage.net.*;
+import org.cybergarage.upnp.*;
+import org.cybergarage.util.*;
+
+/**
+ * 
+ * This class identifies a socket of the multicast event messages of UPnP Device Architecture 1.1.<br>
+ * A device sends the events of the multicast state variables over it, and a control point
+ * receives them.
+ *
+ */
+public class MulticastEventSocket extends HTTPMUSocket implements Runnable
+{
+	private boolean useIPv6Address;
+	
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+	
+	public MulticastEventSocket(String bindAddr)
+	{
+		String addr = SSDP.MULTICAST_EVENT_ADDRESS;
+		useIPv6Address = false;
+		if (HostInterface.isIPv6Address(bindAddr) == true) {
+			addr = SSDP.IPV6_MULTICAST_EVENT_ADDRESS;
+			useIPv6Address = true;
+		}
+		open(addr, SSDP.MULTICAST_EVENT_PORT, bindAddr);
+		setControlPoint(null);
+	}
+
+	////////////////////////////////////////////////
+	//	ControlPoint	
+	////////////////////////////////////////////////
+
+	private ControlPoint controlPoint = null;
+	
+	public void setControlPoint(ControlPoint ctrlp)
+	{
+		this.controlPoint = ctrlp;
+	}
+
+	public ControlPoint getControlPoint()
+	{
+		return controlPoint;
+	}
+
+	/**
+	 * Sends the event message to the multicast group from the interface of the socket.
+	 * 
+	 * @return true if and only if the trasmission succeced
+	 */
+	public boolean post(HTTPRequest req)
+	{
+		String eventAddr = SSDP.MULTICAST_EVENT_ADDRESS;
+		if (useIPv6Address == true)
+			eventAddr = SSDP.IPV6_MULTICAST_EVENT_ADDRESS;
+		req.setHost(eventAddr, SSDP.MULTICAST_EVENT_PORT);
+		String localAddr = getLocalAddress();
+		if (localAddr == null || localAddr.length() <= 0)
+			return post(req, null, -1);
+		return post(req, localAddr, 0);
+	}
+
+	////////////////////////////////////////////////
+	//	run	
+	////////////////////////////////////////////////
+
+	private Thread eventThread = null;
+		
+	public void run()
+	{
+		Thread thisThread = Thread.currentThread();
+		
+		ControlPoint ctrlPoint = getControlPoint();
+		
+		while (eventThread == thisThread) {
+			Thread.yield();
+
+			SSDPPacket packet = null;
+			try {
+				packet = receive(SSDP.MULTICAST_EVENT_RECV_MESSAGE_BUFSIZE);
+			}
+			catch (IOException e) { 
+				break;
+			}
+			
+			if (packet == null)
+				continue;
+			
+			InetAddress maddr = getMulticastInetAddress();
+			InetAddress pmaddr = packet.getHostInetAddress();
+			if (maddr.equals(pmaddr) == false) {
+				Debug.warning("Invalidate Multicast Recieved from IP " + maddr + " on " + pmaddr);
+				continue;
+			}
+			if (ctrlPoint != null)
+				ctrlPoint.multicastEventReceived(packet); 
+		}
+	}
+	
+	public void start(){
+		StringBuffer name = new StringBuffer("Cyber.MulticastEventSocket/");
+		String localAddr = this.getLocalAddress();
+		if (localAddr != null && 0 < localAddr.length()) {
+			name.append(this.getLocalAddress()).append(':');
+			name.append(this.getLocalPort()).append(" -> ");
+			name.append(this.getMulticastAddress()).append(':');
+			name.append(this.getMulticastPort());
+		}
+		eventThread = new Thread(this,name.toString());
+		eventThread.start();
+	}
+	
+	public void stop()
+	{
+		close();
+		
+		eventThread = null;
+	}
+}
+
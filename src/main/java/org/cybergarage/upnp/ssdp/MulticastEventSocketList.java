@@ -0,0 +1,178 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: MulticastEventSocketList.java
+*
+*	Revision;
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.ssdp;
+
+import java.net.InetAddress;
+import java.util.*;
+
+import org.cybergarage.http.*;
+import org.cybergarage.net.*;
+import org.cybergarage.upnp.*;
+
+@SuppressWarnings({ "serial", "rawtypes" })
+public class MulticastEventSocketList extends Vector 
+{
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+	
+	private InetAddress[] binds = null;
+	private Hashtable<String, MulticastEventSocket> ifSocketMap = new Hashtable<String, MulticastEventSocket>();
+
+	public MulticastEventSocketList() {
+	}
+	
+	/**
+	 * 
+	 * @param binds The host to bind the service <tt>null</tt> means to bind to default.
+	 */
+	public MulticastEventSocketList(InetAddress[] binds){
+		this.binds=binds;
+	}
+
+	////////////////////////////////////////////////
+	//	Methods
+	////////////////////////////////////////////////
+	
+	public MulticastEventSocket getMulticastEventSocket(int n)
+	{
+		return (MulticastEventSocket)get(n);
+	}
+
+	////////////////////////////////////////////////
+	//	ControlPoint
+	////////////////////////////////////////////////
+
+	public void setControlPoint(ControlPoint ctrlPoint)
+	{
+		int nSockets = size();
+		for (int n=0; n<nSockets; n++) {
+			MulticastEventSocket sock = getMulticastEventSocket(n);
+			sock.setControlPoint(ctrlPoint);
+		}
+	}
+
+	////////////////////////////////////////////////
+	//	Methods
+	////////////////////////////////////////////////
+	
+	@SuppressWarnings("unchecked")
+	public synchronized boolean open(){
+		InetAddress[] binds=this.binds ;
+		String[] bindAddresses;
+		if(binds!=null){			
+			bindAddresses = new String[binds.length];
+			for (int i = 0; i < binds.length; i++) {
+				bindAddresses[i] = binds[i].getHostAddress();
+			}
+		}else{
+			int nHostAddrs = HostInterface.getNHostAddresses();
+			bindAddresses = new String[nHostAddrs]; 
+			for (int n=0; n<nHostAddrs; n++) {
+				bindAddresses[n] = HostInterface.getHostAddress(n);
+			}
+		}		
+		
+		for (int i = 0; i < bindAddresses.length; i++) {
+			if(bindAddresses[i]!=null){
+				MulticastEventSocket eventSocket = new MulticastEventSocket(bindAddresses[i]);
+				add(eventSocket);
+				ifSocketMap.put(bindAddresses[i], eventSocket);
+			}
+		}
+		return true;
+	}
+	
+	public synchronized void close()
+	{
+		int nSockets = size();
+		for (int n=0; n<nSockets; n++) {
+			MulticastEventSocket sock = getMulticastEventSocket(n);
+			sock.close();
+		}
+		clear();
+		ifSocketMap.clear();
+	}
+
+	/**
+	 * Opens a socket for an interface address which has been added after open().
+	 * @return The new socket which isn't started yet, or null if the address has a socket already.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized MulticastEventSocket openInterface(String bindAddr)
+	{
+		if (ifSocketMap.containsKey(bindAddr) == true)
+			return null;
+		MulticastEventSocket eventSocket = new MulticastEventSocket(bindAddr);
+		add(eventSocket);
+		ifSocketMap.put(bindAddr, eventSocket);
+		return eventSocket;
+	}
+
+	public synchronized boolean closeInterface(String bindAddr)
+	{
+		MulticastEventSocket sock = ifSocketMap.remove(bindAddr);
+		if (sock == null)
+			return false;
+		sock.stop();
+		sock.close();
+		remove(sock);
+		return true;
+	}
+	
+	////////////////////////////////////////////////
+	//	Methods
+	////////////////////////////////////////////////
+	
+	public void start()
+	{
+		int nSockets = size();
+		for (int n=0; n<nSockets; n++) {
+			MulticastEventSocket sock = getMulticastEventSocket(n);
+			sock.start();
+		}
+	}
+
+	public void stop()
+	{
+		int nSockets = size();
+		for (int n=0; n<nSockets; n++) {
+			MulticastEventSocket sock = getMulticastEventSocket(n);
+			sock.stop();
+		}
+	}
+
+	////////////////////////////////////////////////
+	//	post
+	////////////////////////////////////////////////
+
+	/**
+	 * Sends the event message from all interfaces.
+	 * @return true if the message is sent from any interface.
+	 */
+	public synchronized boolean post(HTTPRequest req)
+	{
+		boolean isPosted = false;
+		int nSockets = size();
+		for (int n=0; n<nSockets; n++) {
+			MulticastEventSocket sock = getMulticastEventSocket(n);
+			if (sock.post(req) == true)
+				isPosted = true;
+		}
+		return isPosted;
+	}
+}
+
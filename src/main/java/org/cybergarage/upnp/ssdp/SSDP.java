@@ -16,6 +16,8 @@
 *		- Thanks for Stefano Lenzi <kismet-sl at users.sourceforge.net>
 *		  and Mikael <mhakman at users.sourceforge.net>
 *		- Fixed getLeaseTime() to parse normally when the value includes extra strings such as white space.
+*	10/18/26
+*		- Added the constants for the multicast events of UPnP Device Architecture 1.1.
 *	
 ******************************************************************/
 
@@ -71,6 +73,15 @@ public class SSDP
 
 	public static final int RECV_MESSAGE_BUFSIZE = 1024;
 
+	/**
+	 * Destination port and addresses of the multicast event messages
+	 */
+	public static final int MULTICAST_EVENT_PORT = 7900;
+	public static final String MULTICAST_EVENT_ADDRESS = "239.255.255.246";
+	public static final String IPV6_MULTICAST_EVENT_ADDRESS = "FF02::130";
+
+	public static final int MULTICAST_EVENT_RECV_MESSAGE_BUFSIZE = 8192;
+
 	////////////////////////////////////////////////
 	//	Initialize
 	////////////////////////////////////////////////
@@ -10,6 +10,8 @@
 *
 *	05/11/03
 *		- first revision.
+*	10/18/26
+*		- Added openInterface() and closeInterface().
 *
 ******************************************************************/
 
@@ -29,6 +31,7 @@ public class SSDPNotifySocketList extends Vector
 	////////////////////////////////////////////////
 	
 	private InetAddress[] binds = null;
+	private Hashtable<String, SSDPNotifySocket> ifSocketMap = new Hashtable<String, SSDPNotifySocket>();
 
 	public SSDPNotifySocketList() {
 	}
@@ -89,6 +92,7 @@ public class SSDPNotifySocketList extends Vector
 			if(bindAddresses[i]!=null){
 				SSDPNotifySocket ssdpNotifySocket = new SSDPNotifySocket(bindAddresses[i]);
 				add(ssdpNotifySocket);
+				ifSocketMap.put(bindAddresses[i], ssdpNotifySocket);
 			}
 		}
 		return true;
@@ -102,6 +106,33 @@ public class SSDPNotifySocketList extends Vector
 			sock.close();
 		}
 		clear();
+		ifSocketMap.clear();
+	}
+
+	/**
+	 * Opens a socket for an interface address which has been added after open().
+	 * @return The new socket which isn't started yet, or null if the address has a socket already.
+	 */
+	@SuppressWarnings("unchecked")
+	public SSDPNotifySocket openInterface(String bindAddr)
+	{
+		if (ifSocketMap.containsKey(bindAddr) == true)
+			return null;
+		SSDPNotifySocket ssdpNotifySocket = new SSDPNotifySocket(bindAddr);
+		add(ssdpNotifySocket);
+		ifSocketMap.put(bindAddr, ssdpNotifySocket);
+		return ssdpNotifySocket;
+	}
+
+	public boolean closeInterface(String bindAddr)
+	{
+		SSDPNotifySocket sock = ifSocketMap.remove(bindAddr);
+		if (sock == null)
+			return false;
+		sock.stop();
+		sock.close();
+		remove(sock);
+		return true;
 	}
 	
 	////////////////////////////////////////////////
@@ -18,6 +18,9 @@
 *	11/19/04
 *		- Theo Beisch <theo.beisch@gmx.de>
 *		- Changed getRemoteAddress() to return the adresss instead of the host name.
+*	10/18/26
+*		- Added getBootId(), getConfigId(), getNextBootId() and isUpdate().
+*		- Added getSVCID(), getLVL(), getSEQ() and isPropChange() for the multicast events.
 *
 ******************************************************************/
 
@@ -176,6 +179,75 @@ public class SSDPPacket
 		return HTTPHeader.getIntegerValue(getData(), HTTP.MX);
 	}
 
+	private int getIntegerValue(String name, int defaultValue)
+	{
+		try {
+			return Integer.parseInt(HTTPHeader.getValue(getData(), name).trim());
+		}
+		catch (Exception e) {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * @return The value of the BOOTID.UPNP.ORG header, or -1 when the packet has no valid one.
+	 */
+	public int getBootId()
+	{
+		return getIntegerValue(HTTP.BOOTID_UPNP_ORG, -1);
+	}
+
+	/**
+	 * @return The value of the CONFIGID.UPNP.ORG header, or -1 when the packet has no valid one.
+	 */
+	public int getConfigId()
+	{
+		return getIntegerValue(HTTP.CONFIGID_UPNP_ORG, -1);
+	}
+
+	/**
+	 * @return The value of the NEXTBOOTID.UPNP.ORG header of a ssdp:update, or -1 when the packet has no valid one.
+	 */
+	public int getNextBootId()
+	{
+		return getIntegerValue(HTTP.NEXTBOOTID_UPNP_ORG, -1);
+	}
+
+	public String getSVCID()
+	{
+		return HTTPHeader.getValue(getData(), HTTP.SVCID);
+	}
+
+	public String getLVL()
+	{
+		return HTTPHeader.getValue(getData(), HTTP.LVL);
+	}
+
+	/**
+	 * @return The value of the SEQ header of a multicast event, or -1 when the packet has no valid one.
+	 */
+	public long getSEQ()
+	{
+		try {
+			return Long.parseLong(HTTPHeader.getValue(getData(), HTTP.SEQ).trim());
+		}
+		catch (Exception e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns the content of the packet such as the propertyset of a multicast event.
+	 */
+	public String getContent()
+	{
+		String packetData = new String(getData());
+		int contentIdx = packetData.indexOf(HTTP.CRLF + HTTP.CRLF);
+		if (contentIdx < 0)
+			return "";
+		return packetData.substring(contentIdx + (HTTP.CRLF.length() * 2));
+	}
+
 	////////////////////////////////////////////////
 	//	Access Methods
 	////////////////////////////////////////////////
@@ -225,6 +297,16 @@ public class SSDPPacket
 		return NTS.isByeBye(getNTS());
 	}
 
+	public boolean isUpdate()
+	{
+		return NTS.isUpdate(getNTS());
+	}
+
+	public boolean isPropChange()
+	{
+		return NTS.isPropChange(getNTS());
+	}
+
 	public int getLeaseTime()
 	{
 		return SSDP.getLeaseTime(getCacheControl());
@@ -13,6 +13,8 @@
 *	03/16/04
 *		- Thanks for Darrell Young
 *		- Fixed to set v1.1 to the HTTP version.;
+*	10/18/26
+*		- Added setBootId(), setConfigId() and setNextBootId().
 *	
 ******************************************************************/
 
@@ -94,6 +96,52 @@ public class SSDPRequest extends HTTPRequest
 		return getHeaderValue(HTTP.USN);
 	}
 
+	////////////////////////////////////////////////
+	//	BOOTID.UPNP.ORG/CONFIGID.UPNP.ORG
+	////////////////////////////////////////////////
+
+	/**
+	 * Sets the BOOTID.UPNP.ORG header. A negative value, which means that the id is unknown, is ignored.
+	 */
+	public void setBootId(int id)
+	{
+		if (id < 0)
+			return;
+		setHeader(HTTP.BOOTID_UPNP_ORG, id);
+	}
+
+	public int getBootId()
+	{
+		return getIntegerHeaderValue(HTTP.BOOTID_UPNP_ORG);
+	}
+
+	/**
+	 * Sets the CONFIGID.UPNP.ORG header. A negative value, which means that the id is unknown, is ignored.
+	 */
+	public void setConfigId(int id)
+	{
+		if (id < 0)
+			return;
+		setHeader(HTTP.CONFIGID_UPNP_ORG, id);
+	}
+
+	public int getConfigId()
+	{
+		return getIntegerHeaderValue(HTTP.CONFIGID_UPNP_ORG);
+	}
+
+	public void setNextBootId(int id)
+	{
+		if (id < 0)
+			return;
+		setHeader(HTTP.NEXTBOOTID_UPNP_ORG, id);
+	}
+
+	public int getNextBootId()
+	{
+		return getIntegerHeaderValue(HTTP.NEXTBOOTID_UPNP_ORG);
+	}
+
 	////////////////////////////////////////////////
 	//	CacheControl
 	////////////////////////////////////////////////
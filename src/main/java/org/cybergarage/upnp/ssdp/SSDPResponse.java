@@ -19,6 +19,8 @@
 *	10/20/04 
 *		- Brent Hills <bhills@openshores.com>
 *		- Added setMYNAME() and getMYNAME().
+*	10/18/26
+*		- Added setBootId() and setConfigId().
 *	
 ******************************************************************/
 
@@ -100,6 +102,40 @@ public class SSDPResponse extends HTTPResponse
 		return getHeaderValue(HTTP.MYNAME);
 	}
 	
+	////////////////////////////////////////////////
+	//	BOOTID.UPNP.ORG/CONFIGID.UPNP.ORG
+	////////////////////////////////////////////////
+
+	/**
+	 * Sets the BOOTID.UPNP.ORG header. A negative value, which means that the id is unknown, is ignored.
+	 */
+	public void setBootId(int id)
+	{
+		if (id < 0)
+			return;
+		setHeader(HTTP.BOOTID_UPNP_ORG, id);
+	}
+
+	public int getBootId()
+	{
+		return getIntegerHeaderValue(HTTP.BOOTID_UPNP_ORG);
+	}
+
+	/**
+	 * Sets the CONFIGID.UPNP.ORG header. A negative value, which means that the id is unknown, is ignored.
+	 */
+	public void setConfigId(int id)
+	{
+		if (id < 0)
+			return;
+		setHeader(HTTP.CONFIGID_UPNP_ORG, id);
+	}
+
+	public int getConfigId()
+	{
+		return getIntegerHeaderValue(HTTP.CONFIGID_UPNP_ORG);
+	}
+
 	////////////////////////////////////////////////
 	//	CacheControl
 	////////////////////////////////////////////////
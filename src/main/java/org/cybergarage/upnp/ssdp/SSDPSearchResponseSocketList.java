@@ -12,6 +12,8 @@
 *		- first revision.
 *	05/28/03
 *		- Added post() to send a SSDPSearchRequest.
+*	10/18/26
+*		- Added openInterface() and closeInterface().
 *
 ******************************************************************/
 
@@ -31,6 +33,7 @@ public class SSDPSearchResponseSocketList extends Vector
 	////////////////////////////////////////////////
 	
 	private InetAddress[] binds = null;
+	private Hashtable<String, SSDPSearchResponseSocket> ifSocketMap = new Hashtable<String, SSDPSearchResponseSocket>();
 	
 	public SSDPSearchResponseSocketList() {
 	}
@@ -93,6 +96,7 @@ public class SSDPSearchResponseSocketList extends Vector
 			for (int j = 0; j < bindAddresses.length; j++) {				
 				SSDPSearchResponseSocket socket = new SSDPSearchResponseSocket(bindAddresses[j], port);
 				add(socket);
+				ifSocketMap.put(bindAddresses[j], socket);
 			}
 		}catch (Exception e) {
 			stop();
@@ -116,6 +120,38 @@ public class SSDPSearchResponseSocketList extends Vector
 			sock.close();
 		}
 		clear();
+		ifSocketMap.clear();
+	}
+
+	/**
+	 * Opens a socket for an interface address which has been added after open().
+	 * @return The new socket which isn't started yet, or null if the address has a socket already or the socket couldn't be opened.
+	 */
+	@SuppressWarnings("unchecked")
+	public SSDPSearchResponseSocket openInterface(String bindAddr, int port)
+	{
+		if (ifSocketMap.containsKey(bindAddr) == true)
+			return null;
+		try {
+			SSDPSearchResponseSocket socket = new SSDPSearchResponseSocket(bindAddr, port);
+			add(socket);
+			ifSocketMap.put(bindAddr, socket);
+			return socket;
+		}
+		catch (Exception e) {
+			return null;
+		}
+	}
+
+	public boolean closeInterface(String bindAddr)
+	{
+		SSDPSearchResponseSocket sock = ifSocketMap.remove(bindAddr);
+		if (sock == null)
+			return false;
+		sock.stop();
+		sock.close();
+		remove(sock);
+		return true;
 	}
 
 	////////////////////////////////////////////////
@@ -13,12 +13,15 @@
 *	05/28/03
 *		- Moved post() for SSDPSearchRequest to SSDPResponseSocket.
 *		- Removed open(int).
+*	10/18/26
+*		- Added openInterface() and closeInterface().
 *
 ******************************************************************/
 
 package org.cybergarage.upnp.ssdp;
 
 import java.net.InetAddress;
+import java.util.Hashtable;
 import java.util.Vector;
 
 import org.cybergarage.net.HostInterface;
@@ -35,6 +38,7 @@ public class SSDPSearchSocketList extends Vector
 	private String multicastIPv4 = SSDP.ADDRESS;
 	private String multicastIPv6 = SSDP.getIPv6Address();
 	private int port = SSDP.PORT;
+	private Hashtable<String, SSDPSearchSocket> ifSocketMap = new Hashtable<String, SSDPSearchSocket>();
 
 	public SSDPSearchSocketList() 
 	{
@@ -112,6 +116,7 @@ public class SSDPSearchSocketList extends Vector
 				else
 					ssdpSearchSocket = new SSDPSearchSocket(bindAddresses[i],port,multicastIPv4 );
 				add(ssdpSearchSocket);
+				ifSocketMap.put(bindAddresses[i], ssdpSearchSocket);
 			}
 		}
 		return true;
@@ -125,6 +130,37 @@ public class SSDPSearchSocketList extends Vector
 			sock.close();
 		}
 		clear();
+		ifSocketMap.clear();
+	}
+
+	/**
+	 * Opens a socket for an interface address which has been added after open().
+	 * @return The new socket which isn't started yet, or null if the address has a socket already.
+	 */
+	@SuppressWarnings("unchecked")
+	public SSDPSearchSocket openInterface(String bindAddr)
+	{
+		if (ifSocketMap.containsKey(bindAddr) == true)
+			return null;
+		SSDPSearchSocket ssdpSearchSocket;
+		if(HostInterface.isIPv6Address(bindAddr))
+			ssdpSearchSocket = new SSDPSearchSocket(bindAddr,port ,multicastIPv6 );
+		else
+			ssdpSearchSocket = new SSDPSearchSocket(bindAddr,port,multicastIPv4 );
+		add(ssdpSearchSocket);
+		ifSocketMap.put(bindAddr, ssdpSearchSocket);
+		return ssdpSearchSocket;
+	}
+
+	public boolean closeInterface(String bindAddr)
+	{
+		SSDPSearchSocket sock = ifSocketMap.remove(bindAddr);
+		if (sock == null)
+			return false;
+		sock.stop();
+		sock.close();
+		remove(sock);
+		return true;
 	}
 	
 	////////////////////////////////////////////////
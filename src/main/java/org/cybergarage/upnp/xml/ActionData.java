@@ -10,11 +10,17 @@
 *
 *	03/28/03
 *		- first revision.
+*	10/18/26
+*		- Added getArgumentListCache().
+*		- Added setActionModel() and getActionModel().
+*		- Added setResponseEncoder() and getResponseEncoder().
+*		- Added setActionInvocationListener() and getActionInvocationListener().
 *
 ******************************************************************/
 
 package org.cybergarage.upnp.xml;
 
+import org.cybergarage.upnp.ActionModel;
 import org.cybergarage.upnp.control.*;
 
 public class ActionData extends NodeData
@@ -37,6 +43,20 @@ public class ActionData extends NodeData
 		this.actionListener = actionListener;
 	}
 
+	////////////////////////////////////////////////
+	// ActionInvocationListener
+	////////////////////////////////////////////////
+
+	private volatile ActionInvocationListener actionInvocationListener = null;
+
+	public ActionInvocationListener getActionInvocationListener() {
+		return actionInvocationListener;
+	}
+
+	public void setActionInvocationListener(ActionInvocationListener listener) {
+		actionInvocationListener = listener;
+	}
+
 	////////////////////////////////////////////////
 	// ControlResponse
 	////////////////////////////////////////////////
@@ -53,5 +73,47 @@ public class ActionData extends NodeData
 		ctrlRes = res;
 	}
 
-}
+	////////////////////////////////////////////////
+	// Wrapper Cache
+	////////////////////////////////////////////////
+
+	private WrapperListCache argumentListCache = new WrapperListCache();
+	
+	public WrapperListCache getArgumentListCache() 
+	{
+		return argumentListCache;
+	}
 
+	////////////////////////////////////////////////
+	// ActionModel
+	////////////////////////////////////////////////
+
+	private volatile ActionModel actionModel = null;
+	
+	public ActionModel getActionModel() 
+	{
+		return actionModel;
+	}
+	
+	public void setActionModel(ActionModel model) 
+	{
+		actionModel = model;
+	}
+
+	////////////////////////////////////////////////
+	// ActionResponseEncoder
+	////////////////////////////////////////////////
+
+	private volatile ActionResponseEncoder responseEncoder = null;
+	
+	public ActionResponseEncoder getResponseEncoder() 
+	{
+		return responseEncoder;
+	}
+	
+	public void setResponseEncoder(ActionResponseEncoder encoder) 
+	{
+		responseEncoder = encoder;
+	}
+
+}
@@ -12,6 +12,13 @@
 *		- first revision.
 *	12/25/03
 *		- Added Advertiser functions.
+*	10/18/26
+*		- Added setDescriptionCache() and getDescriptionCache().
+*		- Added setBootId(), getBootId(), setConfigId() and getConfigId().
+*		- Added setConfigIdDerived() and isConfigIdDerived().
+*		- Added getDeviceListCache() and getServiceListCache().
+*		- Added setEventNotifier() and getEventNotifier().
+*		- Added getMulticastEventSocketList().
 *
 ******************************************************************/
 
@@ -23,6 +30,7 @@ import java.net.InetAddress;
 import org.cybergarage.http.*;
 import org.cybergarage.upnp.*;
 import org.cybergarage.upnp.device.*;
+import org.cybergarage.upnp.event.*;
 import org.cybergarage.upnp.ssdp.*;
 import org.cybergarage.util.*;
 
@@ -239,7 +247,7 @@ public class DeviceData extends NodeData
 	// SSDPPacket
 	////////////////////////////////////////////////
 	
-	private SSDPPacket ssdpPacket = null;
+	private volatile SSDPPacket ssdpPacket = null;
 	
 	public SSDPPacket getSSDPPacket() {
 		return ssdpPacket;
@@ -249,6 +257,56 @@ public class DeviceData extends NodeData
 		ssdpPacket = packet;
 	}
 
+	////////////////////////////////////////////////
+	// BOOTID.UPNP.ORG/CONFIGID.UPNP.ORG
+	////////////////////////////////////////////////
+	
+	private volatile int bootId = -1;
+	private volatile int configId = -1;
+	
+	public int getBootId() {
+		return bootId;
+	}
+
+	public void setBootId(int id) {
+		bootId = id;
+	}
+
+	public int getConfigId() {
+		return configId;
+	}
+
+	public void setConfigId(int id) {
+		configId = id;
+	}
+
+	private volatile boolean isConfigIdDerived = false;
+	
+	/**
+	 * Returns true if the CONFIGID has been derived from the description by Device.start().
+	 */
+	public boolean isConfigIdDerived() {
+		return isConfigIdDerived;
+	}
+
+	public void setConfigIdDerived(boolean flag) {
+		isConfigIdDerived = flag;
+	}
+
+	////////////////////////////////////////////////
+	// DescriptionCache
+	////////////////////////////////////////////////
+	
+	private DescriptionCache descriptionCache = null;
+	
+	public DescriptionCache getDescriptionCache() {
+		return descriptionCache;
+	}
+
+	public void setDescriptionCache(DescriptionCache cache) {
+		descriptionCache = cache;
+	}
+
 	////////////////////////////////////////////////
 	// Advertiser
 	////////////////////////////////////////////////
@@ -265,6 +323,50 @@ public class DeviceData extends NodeData
 		return advertiser;
 	}
 
+	////////////////////////////////////////////////
+	// Wrapper Cache
+	////////////////////////////////////////////////
 
-}
+	private WrapperListCache deviceListCache = new WrapperListCache();
+	private WrapperListCache serviceListCache = new WrapperListCache();
+	
+	public WrapperListCache getDeviceListCache() 
+	{
+		return deviceListCache;
+	}
+	
+	public WrapperListCache getServiceListCache() 
+	{
+		return serviceListCache;
+	}
 
+	////////////////////////////////////////////////
+	// EventNotifier
+	////////////////////////////////////////////////
+
+	private EventNotifier eventNotifier = null;
+	
+	public void setEventNotifier(EventNotifier notifier) 
+	{
+		eventNotifier = notifier;
+	}
+	
+	public EventNotifier getEventNotifier() 
+	{
+		return eventNotifier;
+	}
+
+	////////////////////////////////////////////////
+	// MulticastEventSocket
+	////////////////////////////////////////////////
+
+	private MulticastEventSocketList multicastEventSocketList = null;
+	
+	public synchronized MulticastEventSocketList getMulticastEventSocketList() 
+	{
+		if (multicastEventSocketList == null)
+			multicastEventSocketList = new MulticastEventSocketList(httpBinds);
+		return multicastEventSocketList;
+	}
+
+}
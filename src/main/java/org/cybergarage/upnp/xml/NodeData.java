@@ -10,6 +10,8 @@
 *
 *	03/28/03
 *		- first revision.
+*	10/18/26
+*		- Added setWrapper() and getWrapper() to keep the wrapper object of the node.
 *
 ******************************************************************/
 
@@ -39,5 +41,25 @@ public class NodeData
 	{
 		return node;	
 	}
+
+	////////////////////////////////////////////////
+	// Wrapper
+	////////////////////////////////////////////////
+
+	private Object wrapper = null;
+	
+	/**
+	 * Sets the Device, Service, Action, Argument or StateVariable object which is
+	 * reused for the node instead of creating a new object for each access.
+	 */
+	public void setWrapper(Object obj)
+	{
+		wrapper = obj;
+	}
+	
+	public Object getWrapper()
+	{
+		return wrapper;
+	}
 }
 
@@ -14,11 +14,23 @@
 *		- Moved setQueryListener() and getQueryListener() to StateVariableData class.
 *	03/30/05
 *		- Removed setDescriptionURL() and getDescriptionURL().
+*	10/18/26
+*		- Added getActionListCache() and getServiceStateTableCache().
+*		- Added setServiceModel() and getServiceModel().
+*		- Added getEventedValueMap().
+*		- Changed to keep the subscribers in SubscriberRegistry, and getSubscriberList()
+*		  to return a copy of the subscribers.
+*		- Added getNextMulticastSEQ().
+*		- Deprecated getSubscriberList(), which returns a copy of the subscribers.
 *
 ******************************************************************/
 
 package org.cybergarage.upnp.xml;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.cybergarage.upnp.ServiceModel;
 import org.cybergarage.upnp.event.*;
 import org.cybergarage.util.*;
 import org.cybergarage.xml.*;
@@ -57,10 +69,19 @@ public class ServiceData extends NodeData
 	// SubscriberList
 	////////////////////////////////////////////////
 
-	private SubscriberList subscriberList = new SubscriberList();
+	private SubscriberRegistry subscriberRegistry = new SubscriberRegistry();
 	
+	public SubscriberRegistry getSubscriberRegistry() {
+		return subscriberRegistry;
+	}
+
+	/**
+	 * Returns a snapshot of the subscribers, changing it doesn't change the subscribers.
+	 * @deprecated Use getSubscriberRegistry() to change the subscribers.
+	 */
+	@Deprecated
 	public SubscriberList getSubscriberList() {
-		return subscriberList;
+		return subscriberRegistry.getSubscriberList();
 	}
 
 	////////////////////////////////////////////////
@@ -107,5 +128,65 @@ public class ServiceData extends NodeData
 		timeout = value;
 	}
 
-}
+	////////////////////////////////////////////////
+	// Wrapper Cache
+	////////////////////////////////////////////////
+
+	private WrapperListCache actionListCache = new WrapperListCache();
+	private WrapperListCache stateTableCache = new WrapperListCache();
+	
+	public WrapperListCache getActionListCache() 
+	{
+		return actionListCache;
+	}
+	
+	public WrapperListCache getServiceStateTableCache() 
+	{
+		return stateTableCache;
+	}
+
+	////////////////////////////////////////////////
+	// ServiceModel
+	////////////////////////////////////////////////
+
+	private volatile ServiceModel serviceModel = null;
+	
+	public ServiceModel getServiceModel() 
+	{
+		return serviceModel;
+	}
+	
+	public void setServiceModel(ServiceModel model) 
+	{
+		serviceModel = model;
+	}
+
+	////////////////////////////////////////////////
+	// EventedValue
+	////////////////////////////////////////////////
 
+	private Map<String, EventedValue> eventedValueMap = new ConcurrentHashMap<String, EventedValue>();
+	
+	public Map<String, EventedValue> getEventedValueMap() 
+	{
+		return eventedValueMap;
+	}
+
+	////////////////////////////////////////////////
+	// Multicast SEQ
+	////////////////////////////////////////////////
+
+	private final static long MAX_SEQ = 4294967295L;
+
+	private long multicastSeq = 0;
+	
+	/**
+	 * Returns the SEQ of the next multicast event, which wraps to 1 after 4294967295.
+	 */
+	public synchronized long getNextMulticastSEQ() 
+	{
+		long seq = multicastSeq;
+		multicastSeq = (MAX_SEQ <= seq) ? 1 : seq + 1;
+		return seq;
+	}
+}
@@ -12,6 +12,9 @@
 *		- first revision.
 *	01/06/04
 *		- Added setQueryListener() and getQueryListener().
+*	10/18/26
+*		- Added the moderation parameters and the state of the last event.
+*		- Added clearNotified().
 *
 ******************************************************************/
 
@@ -69,5 +72,75 @@ public class StateVariableData extends NodeData
 		queryRes = res;
 	}
 
+	////////////////////////////////////////////////
+	// Moderation
+	////////////////////////////////////////////////
+
+	private long maximumRate = -1;
+	private double minimumDelta = -1;
+
+	public long getMaximumRate() 
+	{
+		return maximumRate;
+	}
+
+	public void setMaximumRate(long mtime) 
+	{
+		maximumRate = mtime;
+	}
+
+	public double getMinimumDelta() 
+	{
+		return minimumDelta;
+	}
+
+	public void setMinimumDelta(double delta) 
+	{
+		minimumDelta = delta;
+	}
+
+	////////////////////////////////////////////////
+	// Last Event
+	////////////////////////////////////////////////
+
+	private String notifiedValue = null;
+	private long notifiedTime = 0;
+	private boolean isNotifyPending = false;
+
+	public String getNotifiedValue() 
+	{
+		return notifiedValue;
+	}
+
+	public long getNotifiedTime() 
+	{
+		return notifiedTime;
+	}
+
+	public void setNotified(String value, long time) 
+	{
+		notifiedValue = value;
+		notifiedTime = time;
+	}
+
+	public boolean isNotifyPending() 
+	{
+		return isNotifyPending;
+	}
+
+	public void setNotifyPending(boolean flag) 
+	{
+		isNotifyPending = flag;
+	}
+
+	/**
+	 * Forgets the last event and the pending event, whose task has been discarded by the stopped EventNotifier.
+	 */
+	public synchronized void clearNotified() 
+	{
+		notifiedValue = null;
+		notifiedTime = 0;
+		isNotifyPending = false;
+	}
 }
 
@@ -0,0 +1,65 @@
+/******************************************************************
+*
+*	CyberUPnP for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: WrapperListCache.java
+*
+*	Revision:
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.upnp.xml;
+
+import org.cybergarage.xml.Node;
+
+/**
+ * Wrapper objects of the child nodes of a list node such as serviceList or actionList.
+ * The objects are valid until the child nodes of the list node are added or removed.
+ */
+public class WrapperListCache
+{
+	public WrapperListCache()
+	{
+	}
+
+	////////////////////////////////////////////////
+	// Wrappers
+	////////////////////////////////////////////////
+
+	private Node listNode = null;
+	private int modCount = 0;
+	private Object wrappers[] = null;
+
+	/**
+	 * Returns the cached wrapper objects, or null if the list node or the child nodes have been changed.
+	 */
+	public synchronized Object[] get(Node listNode)
+	{
+		if (wrappers == null || this.listNode != listNode)
+			return null;
+		if (modCount != listNode.getModCount())
+			return null;
+		return wrappers;
+	}
+
+	/**
+	 * Sets the wrapper objects, the modCount must be read from the list node before the objects are created.
+	 */
+	public synchronized void set(Node listNode, int modCount, Object wrappers[])
+	{
+		this.listNode = listNode;
+		this.modCount = modCount;
+		this.wrappers = wrappers;
+	}
+
+	public synchronized void clear()
+	{
+		listNode = null;
+		wrappers = null;
+	}
+}
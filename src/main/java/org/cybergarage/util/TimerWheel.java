@@ -0,0 +1,179 @@
+/******************************************************************
+*
+*	CyberUtil for Java
+*
+*	Copyright (C) Satoshi Konno 2002-2004
+*
+*	File: TimerWheel.java
+*
+*	Revision:
+*
+*	10/18/26
+*		- first revision.
+*
+******************************************************************/
+
+package org.cybergarage.util;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * Hashed timing wheel of keys with deadlines.
+ * <p>
+ * schedule() only records the new deadline when it is later than the slot of the key,
+ * so refreshing a deadline is O(1). The key is moved to the slot of the new deadline
+ * lazily when its old slot comes around. expire() visits only the slots of the elapsed
+ * ticks and returns the keys of which the deadlines have passed.
+ */
+public class TimerWheel<K>
+{
+	////////////////////////////////////////////////
+	//	Constructor
+	////////////////////////////////////////////////
+
+	private long tickTime;
+	private Set<K> slots[];
+	private Map<K, Entry> entryMap = new HashMap<K, Entry>();
+	private long lastTickTime;
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public TimerWheel(long tickTime, int nSlots)
+	{
+		this.tickTime = tickTime;
+		slots = new Set[nSlots];
+		for (int n=0; n<nSlots; n++)
+			slots[n] = new HashSet<K>();
+		lastTickTime = getSlotTime(System.currentTimeMillis()) - tickTime;
+	}
+
+	public long getTickTime()
+	{
+		return tickTime;
+	}
+
+	////////////////////////////////////////////////
+	//	Schedule
+	////////////////////////////////////////////////
+
+	private static class Entry
+	{
+		long deadline;
+		long slotTime;
+	}
+
+	private long getSlotTime(long time)
+	{
+		return ((time + tickTime - 1) / tickTime) * tickTime;
+	}
+
+	private Set<K> getSlot(long slotTime)
+	{
+		return slots[(int)((slotTime / tickTime) % slots.length)];
+	}
+
+	/**
+	 * Sets the deadline of the key in milliseconds, replacing the previous deadline.
+	 */
+	public synchronized void schedule(K key, long deadline)
+	{
+		Entry entry = entryMap.get(key);
+		if (entry == null) {
+			entry = new Entry();
+			entryMap.put(key, entry);
+		}
+		entry.deadline = deadline;
+		if (entry.slotTime != 0 && entry.slotTime <= getSlotTime(deadline))
+			return;
+		long slotTime = getSlotTime(deadline);
+		if (slotTime <= lastTickTime)
+			slotTime = lastTickTime + tickTime;
+		if (entry.slotTime != 0)
+			getSlot(entry.slotTime).remove(key);
+		entry.slotTime = slotTime;
+		getSlot(slotTime).add(key);
+	}
+
+	public synchronized void cancel(K key)
+	{
+		Entry entry = entryMap.remove(key);
+		if (entry == null)
+			return;
+		getSlot(entry.slotTime).remove(key);
+	}
+
+	public synchronized boolean contains(K key)
+	{
+		return entryMap.containsKey(key);
+	}
+
+	public synchronized int size()
+	{
+		return entryMap.size();
+	}
+
+	public synchronized void clear()
+	{
+		for (int n=0; n<slots.length; n++)
+			slots[n].clear();
+		entryMap.clear();
+	}
+
+	////////////////////////////////////////////////
+	//	Expire
+	////////////////////////////////////////////////
+
+	/**
+	 * Removes and returns the keys of which the deadlines are before the specified time.
+	 */
+	public synchronized Vector<K> expire(long now)
+	{
+		Vector<K> expiredKeys = new Vector<K>();
+		long nowSlotTime = getSlotTime(now);
+		if (now < nowSlotTime)
+			nowSlotTime -= tickTime;
+		if (nowSlotTime <= lastTickTime)
+			return expiredKeys;
+
+		long nTicks = (nowSlotTime - lastTickTime) / tickTime;
+		if (slots.length < nTicks)
+			nTicks = slots.length;
+		Vector<K> movedKeys = new Vector<K>();
+		for (long t=0; t<nTicks; t++) {
+			Set<K> slot = getSlot(nowSlotTime - (t * tickTime));
+			Iterator<K> keyIt = slot.iterator();
+			while (keyIt.hasNext() == true) {
+				K key = keyIt.next();
+				Entry entry = entryMap.get(key);
+				// The key is in a later round of the wheel.
+				if (nowSlotTime < entry.slotTime)
+					continue;
+				keyIt.remove();
+				if (entry.deadline <= now) {
+					entryMap.remove(key);
+					expiredKeys.add(key);
+					continue;
+				}
+				movedKeys.add(key);
+			}
+		}
+		lastTickTime = nowSlotTime;
+
+		int movedCnt = movedKeys.size();
+		for (int n=0; n<movedCnt; n++) {
+			K key = movedKeys.get(n);
+			Entry entry = entryMap.get(key);
+			long slotTime = getSlotTime(entry.deadline);
+			if (slotTime <= lastTickTime)
+				slotTime = lastTickTime + tickTime;
+			entry.slotTime = slotTime;
+			getSlot(slotTime).add(key);
+		}
+
+		return expiredKeys;
+	}
+}
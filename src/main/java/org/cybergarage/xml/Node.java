@@ -26,6 +26,8 @@
 *		- Changed toString() to return as utf-8 string.
 *	02/08/08
 *		- Added addValue().
+*	10/18/26
+*		- Added getModCount() to know whether the child nodes have been changed.
 *
 ******************************************************************/
 
@@ -245,6 +247,14 @@ public class Node
 	////////////////////////////////////////////////
 
 	private NodeList nodeList = new NodeList();
+	private int modCount = 0;
+
+	/**
+	 * Returns a counter which is increased whenever a child node is added or removed.
+	 */
+	public int getModCount() {
+		return modCount;
+	}
 
 	public int getNNodes() {
 		return nodeList.size();
@@ -267,11 +277,13 @@ public class Node
 	public void addNode(Node node) {
 		node.setParentNode(this);
 		nodeList.add(node);
+		modCount++;
 	}
 
 	public void insertNode(Node node, int index) {
 		node.setParentNode(this);
 		nodeList.insertElementAt(node, index);
+		modCount++;
 	}
 
 	@SuppressWarnings("rawtypes")
@@ -288,15 +300,18 @@ public class Node
 
 	public boolean removeNode(Node node) {
 		node.setParentNode(null);
+		modCount++;
 		return nodeList.remove(node);
 	}
 
 	public boolean removeNode(String name) {
+		modCount++;
 		return nodeList.remove(getNode(name));
 	}
 
 	public void removeAllNodes()
 	{
+		modCount++;
 		nodeList.clear();
 	}
 	